@@ -27,6 +27,13 @@ android {
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
         vectorDrawables.useSupportLibrary = true
+
+        // Room 把資料表結構匯出到 app/schemas，預建資料庫 (prebuild<Variant>StoreDatabase) 會照它建表
+        javaCompileOptions {
+            annotationProcessorOptions {
+                arguments += mapOf("room.schemaLocation" to "$projectDir/schemas")
+            }
+        }
     }
 
     buildTypes {
@@ -58,6 +65,62 @@ android {
     packaging {
         resources.excludes += "/META-INF/{AL2.0,LGPL2.1}"
     }
+    // Robolectric 的單元測試 (例如 in-memory Room) 要讀得到 App 的資源
+    testOptions {
+        unitTests.isIncludeAndroidResources = true
+    }
+}
+
+// ✨ 預建資料庫：建置時把 assets/stores_info_normalized.json 編譯成 SQLite，
+//    放進 assets/databases/stores_prebuilt.db，App 用 Room.createFromAsset 直接打開。
+//    編譯器 com.example.fmap.data.CatalogCompiler 放在 src/catalogCompiler/java (一般 JVM 程式，用 JDBC)，
+//    只在這裡另外編譯 (classpath 是 App 編譯後的 class，共用轉換邏輯)，不會打包進 APK。
+val catalogCompiler: Configuration by configurations.creating
+
+abstract class PrebuildStoreDatabase : JavaExec() {
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.RELATIVE)
+    abstract val catalogJson: RegularFileProperty
+
+    @get:InputDirectory
+    @get:PathSensitive(PathSensitivity.RELATIVE)
+    abstract val schemaDir: DirectoryProperty
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    override fun exec() {
+        val out = outputDir.get().file("databases/stores_prebuilt.db").asFile
+        out.parentFile.mkdirs()
+        args(catalogJson.get().asFile.absolutePath, schemaDir.get().asFile.absolutePath, out.absolutePath)
+        super.exec()
+    }
+}
+
+androidComponents {
+    onVariants { variant ->
+        val cap = variant.name.replaceFirstChar { it.uppercase() }
+        val appClasses = tasks.named<JavaCompile>("compile${cap}JavaWithJavac").flatMap { it.destinationDirectory }
+        val compileCompiler = tasks.register<JavaCompile>("compile${cap}CatalogCompiler") {
+            description = "Compiles the JVM-only CatalogCompiler against the ${variant.name} app classes."
+            source(layout.projectDirectory.dir("src/catalogCompiler/java"))
+            classpath = files(appClasses) + catalogCompiler
+            destinationDirectory.set(layout.buildDirectory.dir("intermediates/catalogCompiler/${variant.name}"))
+            sourceCompatibility = JavaVersion.VERSION_17.toString()
+            targetCompatibility = JavaVersion.VERSION_17.toString()
+            options.encoding = "UTF-8"
+        }
+        val prebuild = tasks.register<PrebuildStoreDatabase>("prebuild${cap}StoreDatabase") {
+            group = "build"
+            description = "Compiles the bundled store catalog into a prebuilt Room database for ${variant.name}."
+            // 需要 App 編譯後的 class (StoreMappers / Converters...)、編譯器本身和 Room 匯出的 schema
+            classpath(compileCompiler.flatMap { it.destinationDirectory }, appClasses, catalogCompiler)
+            mainClass.set("com.example.fmap.data.CatalogCompiler")
+            catalogJson.set(layout.projectDirectory.file("src/main/assets/stores_info_normalized.json"))
+            schemaDir.set(layout.projectDirectory.dir("schemas/com.example.fmap.data.local.StoreDatabase"))
+        }
+        variant.sources.assets?.addGeneratedSourceDirectory(prebuild, PrebuildStoreDatabase::outputDir)
+    }
 }
 
 dependencies {
@@ -95,6 +158,8 @@ dependencies {
 
     // --- 測試 ---
     testImplementation("junit:junit:4.13.2")
+    testImplementation("org.robolectric:robolectric:4.14.1")
+    testImplementation("androidx.test:core:1.6.1")
     androidTestImplementation("androidx.test.ext:junit:1.2.1")
     androidTestImplementation("androidx.test.espresso:espresso-core:3.6.1")
 
@@ -106,7 +171,16 @@ dependencies {
 
     implementation ("androidx.room:room-runtime:2.6.1")
     annotationProcessor ("androidx.room:room-compiler:2.6.1")
+
+    // --- Home 卡片牌堆分頁 (Paging 3；Java 寫 PagingSource 用 ListenableFuture 版本) ---
+    implementation ("androidx.paging:paging-runtime:3.3.2")
+    implementation ("androidx.paging:paging-guava:3.3.2")
+    implementation ("com.google.guava:guava:33.2.1-android")
     implementation ("com.google.code.gson:gson:2.11.0")
     implementation ("androidx.lifecycle:lifecycle-viewmodel:2.8.4")
     coreLibraryDesugaring ("com.android.tools:desugar_jdk_libs:2.1.2")
+
+    // --- 預建資料庫 (只在建置時使用，不會打包進 APK) ---
+    catalogCompiler("com.google.code.gson:gson:2.11.0")
+    catalogCompiler("org.xerial:sqlite-jdbc:3.46.0.0")
 }
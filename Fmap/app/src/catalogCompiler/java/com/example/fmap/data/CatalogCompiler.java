@@ -0,0 +1,266 @@
+package com.example.fmap.data;
+
+import com.example.fmap.data.local.CatalogMetaEntity;
+import com.example.fmap.data.local.Converters;
+import com.example.fmap.data.local.StoreEntity;
+import com.example.fmap.data.local.StoreHoursEntity;
+import com.example.fmap.data.local.StoreMappers;
+import com.example.fmap.data.local.StoreTermEntity;
+import com.example.fmap.data.local.TermDictEntity;
+import com.example.fmap.data.local.TermDictionary;
+import com.example.fmap.model.Store;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 「建置時」的資料庫編譯器。
+ * 由 Gradle task (prebuild&lt;Variant&gt;StoreDatabase) 在電腦上執行，
+ * 把 assets/stores_info_normalized.json 預先轉成一個 Room 可以直接開啟的 SQLite 檔，
+ * App 再用 createFromAsset 打開它，第一次啟動就不用在手機上匯入。
+ *
+ * - 資料表結構：讀 Room 匯出的 schema JSON (schemas/.../N.json)，跟 App 編譯出來的完全一致。
+ * - 欄位內容：跟 App 一樣經過 StoreMappers.toEntity + Converters 轉換，編碼不會對不上。
+ * - 目錄版本：寫進 catalog_meta，跟 App 用同一個 CatalogReader.catalogVersion 計算。
+ * - 不寫 room_master_table：Room 第一次打開時會逐表驗證結構，對了才記下自己的 identity hash，
+ *   schema JSON 裡的 hash 跟 App 編譯出來的不一致也不會打不開。
+ *
+ * 注意：這個類別放在 src/catalogCompiler (一般 JVM 程式，用 JDBC 寫 SQLite)，
+ * 只有 prebuild task 會編譯、執行它，不會打包進 APK；只能用到 App 裡「不依賴 Android」的類別。
+ */
+public final class CatalogCompiler {
+
+    private CatalogCompiler() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("usage: CatalogCompiler <catalog.json> <room-schema-dir> <out.db>");
+            System.exit(2);
+        }
+        File catalog = new File(args[0]);
+        File schemaDir = new File(args[1]);
+        File out = new File(args[2]);
+
+        JsonObject database = readLatestSchema(schemaDir).getAsJsonObject("database");
+        if (out.exists() && !out.delete()) {
+            throw new IllegalStateException("無法刪除舊檔：" + out);
+        }
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + out.getAbsolutePath())) {
+            conn.setAutoCommit(false);
+            RowWriter writer = createSchema(conn, database);
+
+            int count = 0;
+            TermDictionary dict = new TermDictionary(null);
+            try (InputStream in = new FileInputStream(catalog);
+                 CatalogReader reader = new CatalogReader(in, new Gson())) {
+                Store s;
+                while ((s = reader.next()) != null) {
+                    StoreEntity e = StoreMappers.toEntity(s);
+                    if (e == null) continue;
+                    dict.apply(Collections.singletonList(e)); // 分配字典 id、算出 category_mask
+                    writer.insert("stores", e);
+                    writer.insert("stores_fts", StoreMappers.toFts(e));
+                    for (StoreTermEntity t : StoreMappers.toTerms(e)) writer.insert("store_terms", t);
+                    for (StoreHoursEntity h : StoreMappers.toHours(e)) writer.insert("store_hours", h);
+                    count++;
+                }
+            }
+
+            for (TermDictEntity t : dict.drainNew()) writer.insert("term_dict", t);
+
+            // 記下目錄版本：App 第一次啟動時版本相同，就不會再同步一次
+            CatalogMetaEntity meta = new CatalogMetaEntity();
+            meta.key = CatalogMetaEntity.KEY_CATALOG_VERSION;
+            try (InputStream in = new FileInputStream(catalog)) {
+                meta.value = CatalogReader.catalogVersion(in);
+            }
+            writer.insert("catalog_meta", meta);
+
+            conn.commit();
+            System.out.println("CatalogCompiler: 寫入 " + count + " 家店 → " + out
+                    + " (schema v" + database.get("version").getAsInt() + ", catalog " + meta.value + ")");
+        }
+    }
+
+    /** 在 schema 資料夾裡找版本號最大的 N.json (也就是 App 目前的資料庫版本)。 */
+    private static JsonObject readLatestSchema(File schemaDir) throws Exception {
+        File[] files = schemaDir.listFiles((dir, name) -> name.matches("\\d+\\.json"));
+        if (files == null || files.length == 0) {
+            throw new IllegalStateException("找不到 Room schema：" + schemaDir);
+        }
+        File latest = files[0];
+        for (File f : files) {
+            if (versionOf(f) > versionOf(latest)) latest = f;
+        }
+        try (Reader r = new InputStreamReader(new FileInputStream(latest), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(r).getAsJsonObject();
+        }
+    }
+
+    private static int versionOf(File f) {
+        String name = f.getName();
+        return Integer.parseInt(name.substring(0, name.length() - ".json".length()));
+    }
+
+    /** 照 Room schema 建立所有資料表、索引，並寫入版本號。 */
+    private static RowWriter createSchema(Connection conn, JsonObject database) throws SQLException {
+        Map<String, JsonObject> entities = new HashMap<>();
+        try (Statement st = conn.createStatement()) {
+            for (JsonElement el : database.getAsJsonArray("entities")) {
+                JsonObject entity = el.getAsJsonObject();
+                String table = entity.get("tableName").getAsString();
+                st.execute(entity.get("createSql").getAsString().replace("${TABLE_NAME}", table));
+                for (String sql : strings(entity.getAsJsonArray("indices"), "createSql")) {
+                    st.execute(sql.replace("${TABLE_NAME}", table));
+                }
+                for (String sql : strings(entity.getAsJsonArray("contentSyncTriggers"), null)) {
+                    st.execute(sql);
+                }
+                entities.put(table, entity);
+            }
+            for (JsonElement el : optArray(database, "views")) {
+                JsonObject view = el.getAsJsonObject();
+                st.execute(view.get("createSql").getAsString()
+                        .replace("${VIEW_NAME}", view.get("viewName").getAsString()));
+            }
+            // setupQueries (room_master_table) 故意不跑，見類別說明
+            st.execute("PRAGMA user_version = " + database.get("version").getAsInt());
+        }
+        return new RowWriter(conn, entities);
+    }
+
+    private static JsonArray optArray(JsonObject obj, String key) {
+        return obj.has(key) && obj.get(key).isJsonArray() ? obj.getAsJsonArray(key) : new JsonArray();
+    }
+
+    /** 把 JSON 陣列轉成字串清單；key 不是 null 時取每個物件裡的那個欄位。 */
+    private static List<String> strings(JsonArray arr, String key) {
+        List<String> out = new ArrayList<>();
+        if (arr == null) return out;
+        for (JsonElement el : arr) {
+            out.add(key == null ? el.getAsString() : el.getAsJsonObject().get(key).getAsString());
+        }
+        return out;
+    }
+
+    /**
+     * 用 JDBC 寫入 Room Entity 的小工具。
+     * 欄位對應 (Java 欄位名稱 → 資料表欄位) 來自 schema JSON 的 fields[].fieldPath / columnName，
+     * 非基本型別則找 Converters 裡對應的 @TypeConverter 方法轉換，跟 Room 產生的程式碼行為一致。
+     */
+    static final class RowWriter {
+        private final Connection conn;
+        private final Map<String, JsonObject> entities;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private final Map<String, List<Column>> columns = new HashMap<>();
+
+        RowWriter(Connection conn, Map<String, JsonObject> entities) {
+            this.conn = conn;
+            this.entities = entities;
+        }
+
+        void insert(String table, Object row) throws Exception {
+            List<Column> cols = columnsFor(table, row.getClass());
+            PreparedStatement ps = statementFor(table, cols);
+            for (int i = 0; i < cols.size(); i++) {
+                Column c = cols.get(i);
+                Object value = c.field.get(row);
+                if (value != null && c.converter != null) value = c.converter.invoke(null, value);
+                if (value instanceof Boolean) value = ((Boolean) value) ? 1 : 0;
+                ps.setObject(i + 1, value);
+            }
+            ps.executeUpdate();
+        }
+
+        private PreparedStatement statementFor(String table, List<Column> cols) throws SQLException {
+            PreparedStatement ps = statements.get(table);
+            if (ps != null) return ps;
+            StringBuilder names = new StringBuilder();
+            StringBuilder marks = new StringBuilder();
+            for (Column c : cols) {
+                if (names.length() > 0) { names.append(", "); marks.append(", "); }
+                names.append('`').append(c.name).append('`');
+                marks.append('?');
+            }
+            ps = conn.prepareStatement("INSERT OR REPLACE INTO `" + table + "` (" + names + ") VALUES (" + marks + ")");
+            statements.put(table, ps);
+            return ps;
+        }
+
+        private List<Column> columnsFor(String table, Class<?> type) throws Exception {
+            List<Column> cached = columns.get(table);
+            if (cached != null) return cached;
+            JsonObject entity = entities.get(table);
+            if (entity == null) throw new IllegalArgumentException("schema 裡沒有資料表：" + table);
+
+            List<Column> out = new ArrayList<>();
+            for (JsonElement el : entity.getAsJsonArray("fields")) {
+                JsonObject f = el.getAsJsonObject();
+                Field field = type.getField(f.get("fieldPath").getAsString());
+                out.add(new Column(f.get("columnName").getAsString(), field, converterFor(field.getType())));
+            }
+            // FTS 表的 rowid 是隱藏欄位，schema 的 fields 裡不一定會列出來，要自己補上
+            boolean hasRowId = false;
+            for (Column c : out) hasRowId |= c.name.equals("rowid");
+            if (!hasRowId && entity.has("ftsVersion")) {
+                Field rowid = type.getField("rowid");
+                out.add(new Column("rowid", rowid, null));
+            }
+            columns.put(table, out);
+            return out;
+        }
+
+        /** 基本型別直接寫；其他型別 (List、Map...) 找 Converters 裡「吃這個型別」的方法。 */
+        private static Method converterFor(Class<?> type) {
+            if (type.isPrimitive() || type == String.class || type == byte[].class
+                    || Number.class.isAssignableFrom(type) || type == Boolean.class) {
+                return null;
+            }
+            for (Method m : Converters.class.getMethods()) {
+                if (!Modifier.isStatic(m.getModifiers()) || m.getParameterCount() != 1) continue;
+                if (!m.getParameterTypes()[0].isAssignableFrom(type)) continue;
+                Class<?> r = m.getReturnType();
+                if (r == String.class || r == byte[].class || r == Long.class || r == long.class
+                        || r == Integer.class || r == int.class) {
+                    return m;
+                }
+            }
+            throw new IllegalStateException("Converters 沒有可以處理 " + type + " 的方法");
+        }
+    }
+
+    private static final class Column {
+        final String name;
+        final Field field;
+        final Method converter;
+
+        Column(String name, Field field, Method converter) {
+            this.name = name;
+            this.field = field;
+            this.converter = converter;
+        }
+    }
+}
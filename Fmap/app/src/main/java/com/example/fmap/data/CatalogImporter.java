@@ -0,0 +1,309 @@
+package com.example.fmap.data;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.fmap.data.local.CatalogMetaEntity;
+import com.example.fmap.data.local.StoreDao;
+import com.example.fmap.data.local.StoreDatabase;
+import com.example.fmap.data.local.StoreEntity;
+import com.example.fmap.data.local.StoreHash;
+import com.example.fmap.data.local.StoreMappers;
+import com.example.fmap.model.Store;
+import com.google.gson.Gson;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 店家資料的「串流同步器」。
+ * 流程：CatalogReader 一筆一筆解析 → 背景 worker 平行轉換成 StoreEntity → 單一寫入執行緒比對後寫入資料庫。
+ *
+ * 增量同步：每筆 StoreEntity 都帶著 content_hash，寫入執行緒每一批只查「這一批 id」在資料庫裡的雜湊，
+ * 只寫入「新增或雜湊不同」的店；看過的 id 記在暫存表 catalog_seen (TEMP，只存在這條連線上)，
+ * 最後用 SQL 找出「stores 有、catalog_seen 沒有」的店，依 id 分段刪掉。
+ *
+ * 記憶體上限：比對跟刪除都交給 SQLite，Java 這邊同時只會拿著 MAX_IN_FLIGHT_BATCHES 批 Store / StoreEntity
+ * 加上一段 DELETE_CHUNK 的 id，跟目錄大小無關。Result 記下的 id 最多 MAX_TRACKED_IDS 筆，
+ * 超過 (例如第一次安裝，整份目錄都是新的) 就只留筆數、標記 truncated，讓呼叫端整個重建索引。
+ * 整個同步在「同一個 transaction」裡完成 (由寫入執行緒從頭持有到尾)，中途失敗就整個還原，不會留下半套資料。
+ */
+public class CatalogImporter {
+
+    /** 同步進度回呼：每處理完一批就回報一次「目前已處理的總筆數」。 */
+    public interface ProgressListener {
+        void onProgress(int processed);
+    }
+
+    /**
+     * 同步結果：掃過幾筆、實際寫入 / 刪除了幾家店，以及是哪些店 (給記憶體裡的索引做增量更新)。
+     * 變動超過 MAX_TRACKED_IDS 筆時 truncated = true，upsertedIds / deletedIds 不完整，
+     * 這時請整個重建索引，不要拿清單做增量更新。
+     */
+    public static final class Result {
+        public final int scanned;
+        public final int upsertedCount;
+        public final int deletedCount;
+        public final boolean truncated;
+        public final List<String> upsertedIds;
+        public final List<String> deletedIds;
+
+        Result(int scanned, ChangeLog changes) {
+            this.scanned = scanned;
+            this.upsertedCount = changes.upserted;
+            this.deletedCount = changes.deleted;
+            this.truncated = changes.truncated;
+            this.upsertedIds = changes.upsertedIds;
+            this.deletedIds = changes.deletedIds;
+        }
+    }
+
+    /** 寫入執行緒記錄的變動 (只在寫入執行緒上讀寫)。清單最多記 MAX_TRACKED_IDS 筆，超過就丟掉改成只數筆數。 */
+    private static final class ChangeLog {
+        int upserted;
+        int deleted;
+        boolean truncated;
+        List<String> upsertedIds = new ArrayList<>();
+        List<String> deletedIds = new ArrayList<>();
+
+        void addUpserted(List<StoreEntity> changed) {
+            upserted += changed.size();
+            if (!track(changed.size())) return;
+            for (StoreEntity e : changed) upsertedIds.add(e.id);
+        }
+
+        void addDeleted(List<String> ids) {
+            deleted += ids.size();
+            if (track(ids.size())) deletedIds.addAll(ids);
+        }
+
+        /** 再記 n 筆還在上限內就回傳 true；超過就把清單清掉，之後都只數筆數。 */
+        private boolean track(int n) {
+            if (truncated) return false;
+            if (upsertedIds.size() + deletedIds.size() + n <= MAX_TRACKED_IDS) return true;
+            truncated = true;
+            upsertedIds = new ArrayList<>();
+            deletedIds = new ArrayList<>();
+            return false;
+        }
+    }
+
+    // 每一批處理的筆數
+    static final int BATCH_SIZE = 500;
+    // 一次 DELETE ... IN (...) 最多帶幾個 id (SQLite 參數上限是 999)
+    private static final int DELETE_CHUNK = 500;
+    // Result 最多記幾個變動的 id；再多就請呼叫端整個重建，不在記憶體裡堆一份跟目錄一樣大的清單
+    static final int MAX_TRACKED_IDS = 5000;
+    // 這次同步看過的 id (TEMP 表，不在 Room 的 schema 裡，所以用原生 SQL 操作)
+    private static final String SEEN_TABLE = "temp.catalog_seen";
+    // 最多同時有幾批在「轉換中 / 等待寫入」，超過就讓讀檔的執行緒等一下
+    private static final int MAX_IN_FLIGHT_BATCHES = 4;
+    // 負責轉換的 worker 數量（保留一顆核心給 UI）
+    private static final int MAPPER_THREADS =
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private final StoreDatabase db;
+    private final StoreDao storeDao;
+    private final Gson gson = new Gson();
+
+    public CatalogImporter(StoreDatabase db) {
+        this.db = db;
+        this.storeDao = db.storeDao();
+    }
+
+    /**
+     * 把資料庫同步成 JSON 目錄的內容。這個方法會阻塞到全部做完為止，請在背景執行緒呼叫。
+     * @param in             JSON 檔案的輸入流 (最外層必須是陣列)
+     * @param catalogVersion 這份目錄的版本 (CatalogReader.catalogVersion)，成功後寫進 catalog_meta
+     * @param listener       進度回呼，可為 null
+     * @return 同步結果
+     */
+    public Result sync(InputStream in, String catalogVersion, ProgressListener listener) throws Exception {
+        ExecutorService mappers = Executors.newFixedThreadPool(MAPPER_THREADS);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_BATCHES);
+        AtomicInteger scanned = new AtomicInteger();
+        // 寫入 / 刪除了哪些店 (只在寫入執行緒上讀寫)
+        ChangeLog changes = new ChangeLog();
+        // 寫入 catalog_seen 的預編譯語句 (在寫入執行緒上建立、使用、關閉)
+        AtomicReference<SupportSQLiteStatement> markSeen = new AtomicReference<>();
+
+        // transaction 是否已經開始 (只在寫入執行緒上讀寫)
+        AtomicBoolean inTransaction = new AtomicBoolean();
+
+        // 第一步 (寫入執行緒)：開 transaction，準備好空的 catalog_seen
+        // (建在 transaction 裡，失敗還原時會跟著消失)
+        CompletableFuture<Void> begin = CompletableFuture.runAsync(() -> {
+            db.beginTransaction();
+            inTransaction.set(true);
+            SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+            sql.execSQL("CREATE TEMP TABLE IF NOT EXISTS catalog_seen (id TEXT PRIMARY KEY NOT NULL)");
+            sql.execSQL("DELETE FROM " + SEEN_TABLE);
+            markSeen.set(sql.compileStatement("INSERT OR IGNORE INTO " + SEEN_TABLE + " (id) VALUES (?)"));
+        }, writer);
+
+        // 所有寫入都串在這條 future 鏈上，確保依照讀取順序、一次只有一個執行緒在寫
+        CompletableFuture<Void> tail = begin;
+        CompletableFuture<Void> done = null;
+
+        try (CatalogReader reader = new CatalogReader(in, gson)) {
+            List<Store> batch = new ArrayList<>(BATCH_SIZE);
+            Store s;
+            while ((s = reader.next()) != null) {
+                // 前面的批次已經失敗，就不用再讀下去了
+                if (tail.isCompletedExceptionally()) break;
+
+                batch.add(s);
+                if (batch.size() >= BATCH_SIZE) {
+                    tail = submitBatch(batch, tail, markSeen, mappers, writer, inFlight, scanned, changes, listener);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                tail = submitBatch(batch, tail, markSeen, mappers, writer, inFlight, scanned, changes, listener);
+            }
+
+            // 最後一步 (寫入執行緒)：刪掉目錄裡已經沒有的店、記下版本，然後提交
+            CompletableFuture<Void> finish = tail.thenRunAsync(() -> {
+                deleteUnseen(changes);
+                db.getOpenHelper().getWritableDatabase().execSQL("DROP TABLE IF EXISTS " + SEEN_TABLE);
+                CatalogMetaEntity meta = new CatalogMetaEntity();
+                meta.key = CatalogMetaEntity.KEY_CATALOG_VERSION;
+                meta.value = catalogVersion;
+                db.catalogMetaDao().put(meta);
+                db.setTransactionSuccessful();
+            }, writer);
+
+            // 不論成功失敗都要在「同一個」寫入執行緒上結束 transaction (沒呼叫 setTransactionSuccessful 就會還原)
+            done = finish.whenCompleteAsync((v, t) -> endTransaction(inTransaction, markSeen), writer);
+
+            try {
+                done.join();
+            } catch (CompletionException e) {
+                // 把包在外面的 CompletionException 拆掉，讓呼叫端看到真正的錯誤
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw e;
+            }
+        } finally {
+            if (done == null) {
+                // 讀檔途中就出錯 (或等背壓時被中斷)：還是要讓寫入執行緒收尾 (還原 transaction)。
+                // 一定要「等它做完」才能關掉 writer，不然排在後面的批次和收尾都會被拒絕執行，
+                // transaction 就一直開在一條已經結束的執行緒上，之後整個 App 的寫入都會卡住。
+                tail.handle((v, t) -> null)
+                        .thenRunAsync(() -> endTransaction(inTransaction, markSeen), writer)
+                        .join();
+            }
+            mappers.shutdown();
+            writer.shutdown();
+        }
+        return new Result(scanned.get(), changes);
+    }
+
+    /**
+     * 把一批資料交給 worker 轉換，轉換完再排到寫入執行緒比對、寫入。
+     * 如果在途批次已滿，這裡會先等到有批次寫完 (背壓)。
+     */
+    private CompletableFuture<Void> submitBatch(List<Store> batch,
+                                                CompletableFuture<Void> previous,
+                                                AtomicReference<SupportSQLiteStatement> markSeen,
+                                                ExecutorService mappers,
+                                                ExecutorService writer,
+                                                Semaphore inFlight,
+                                                AtomicInteger scanned,
+                                                ChangeLog changes,
+                                                ProgressListener listener) throws InterruptedException {
+        inFlight.acquire();
+
+        CompletableFuture<List<StoreEntity>> mapped =
+                CompletableFuture.supplyAsync(() -> mapBatch(batch), mappers);
+
+        CompletableFuture<Void> next = previous.thenCombineAsync(mapped, (ignored, entities) -> {
+            // 只查這一批 id 的舊雜湊 (一批不超過 BATCH_SIZE，在 SQLite 參數上限內)
+            List<String> ids = new ArrayList<>(entities.size());
+            for (StoreEntity e : entities) ids.add(e.id);
+            Map<String, String> existing = new HashMap<>();
+            if (!ids.isEmpty()) {
+                for (StoreHash h : storeDao.getContentHashesByIds(ids)) existing.put(h.id, h.contentHash);
+            }
+
+            // 只留下「新增」或「雜湊不同」的店，沒變的完全不碰
+            List<StoreEntity> changed = new ArrayList<>();
+            SupportSQLiteStatement seen = markSeen.get();
+            for (StoreEntity e : entities) {
+                seen.bindString(1, e.id);
+                seen.executeInsert();
+                String oldHash = existing.get(e.id);
+                if (oldHash == null || !Objects.equals(oldHash, e.contentHash)) changed.add(e);
+            }
+            if (!changed.isEmpty()) storeDao.upsertStores(changed);
+            changes.addUpserted(changed);
+            int total = scanned.addAndGet(entities.size());
+            if (listener != null) listener.onProgress(total);
+            return null;
+        }, writer);
+
+        // 不論成功或失敗都要歸還名額，避免讀檔執行緒永遠卡住
+        next.whenComplete((v, t) -> inFlight.release());
+        return next;
+    }
+
+    /** 結束 transaction (有開始才結束)，順便關掉預編譯語句。必須在寫入執行緒上呼叫。 */
+    private void endTransaction(AtomicBoolean inTransaction, AtomicReference<SupportSQLiteStatement> markSeen) {
+        SupportSQLiteStatement seen = markSeen.getAndSet(null);
+        if (seen != null) {
+            try {
+                seen.close();
+            } catch (Exception ignored) {
+                // 關不掉也不影響 transaction 的結果
+            }
+        }
+        if (inTransaction.getAndSet(false)) db.endTransaction();
+    }
+
+    /**
+     * 刪掉「stores 有、這次目錄沒有」的店。在寫入執行緒上跑。
+     * 依 id 順序一次取 DELETE_CHUNK 筆 (keyset，從上一段的最後一個 id 接著找)，
+     * 交給 StoreDao.deleteStores 連同 FTS / 分類 / 營業時間一起刪，記憶體裡只有一段 id。
+     */
+    private void deleteUnseen(ChangeLog changes) {
+        SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+        String last = "";
+        while (true) {
+            List<String> ids = new ArrayList<>(DELETE_CHUNK);
+            try (Cursor c = sql.query("SELECT id FROM stores WHERE id > ? "
+                    + "AND id NOT IN (SELECT id FROM " + SEEN_TABLE + ") ORDER BY id LIMIT " + DELETE_CHUNK,
+                    new Object[]{last})) {
+                while (c.moveToNext()) ids.add(c.getString(0));
+            }
+            if (ids.isEmpty()) return;
+            storeDao.deleteStores(ids);
+            changes.addDeleted(ids);
+            last = ids.get(ids.size() - 1);
+        }
+    }
+
+    /** Store (網路模型) → StoreEntity (資料庫模型)，在 worker 執行緒上跑。 */
+    private static List<StoreEntity> mapBatch(List<Store> batch) {
+        List<StoreEntity> out = new ArrayList<>(batch.size());
+        for (Store s : batch) {
+            StoreEntity e = StoreMappers.toEntity(s);
+            if (e != null) out.add(e);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.fmap.data;
+
+import com.example.fmap.data.local.StoreMappers;
+import com.example.fmap.model.Store;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 店家 JSON 的「逐筆讀取器」。
+ * 檔案最外層是一個陣列，這裡用 JsonReader 一次只解析一筆，不會把整份檔案讀進記憶體。
+ * 不依賴任何 Android 類別，App 匯入 (CatalogImporter) 和建置時的 CatalogCompiler 共用同一份解析邏輯。
+ */
+public class CatalogReader implements Closeable {
+
+    private final Gson gson;
+    private final JsonReader reader;
+
+    public CatalogReader(InputStream in, Gson gson) throws IOException {
+        this.gson = gson;
+        this.reader = new JsonReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        this.reader.beginArray();
+    }
+
+    /**
+     * 讀取下一筆店家資料。
+     * @return 下一筆 Store；全部讀完就回傳 null
+     */
+    public Store next() throws IOException {
+        while (reader.hasNext()) {
+            Store s = gson.fromJson(reader, Store.class);
+            if (s != null) return s; // JSON 裡的 null 元素直接跳過
+        }
+        return null;
+    }
+
+    /**
+     * 計算整份目錄檔的「版本」：檔案內容的 SHA-256 + StoreMappers.MAPPING_VERSION。
+     * 只讀位元組、不解析 JSON，所以很快；版本沒變就代表資料庫已經是最新的。
+     * App (StoresRepository) 和 CatalogCompiler 都用這個方法，兩邊算出來的版本一定一致。
+     */
+    public static String catalogVersion(InputStream in) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            md.update(buf, 0, n);
+        }
+        return String.format("%064x", new BigInteger(1, md.digest())) + "-m" + StoreMappers.MAPPING_VERSION;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.fmap.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingSource;
+import androidx.paging.PagingState;
+
+import com.example.fmap.data.local.FavoriteDao;
+import com.example.fmap.data.local.FavoriteRow;
+import com.example.fmap.data.local.StoreDatabase;
+import com.example.fmap.data.local.StoreMappers;
+import com.example.fmap.model.Place;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 收藏頁的 PagingSource：用 keyset (added_at, store_id) 從 favorites 一頁一頁讀，
+ * 每一頁是一個 JOIN stores 的查詢 (店家內容直接從目錄來)。做法跟 HomeDeckPagingSource 一樣：
+ *
+ * - 往後翻 (APPEND)：上一頁最後一筆之後；往前翻 (PREPEND)：第一筆之前。
+ * - 重新整理 (REFRESH，例如取消收藏一家) 從畫面附近那一頁的第一筆「開始」讀 (含它本身)，列表不會跳回最上面。
+ * - favorites 有寫入時自己 invalidate，Pager 會換一個新的來讀 (觀察者在第一次 load 時才註冊，見 LazyTableObserver)。
+ *   stores 不看：目錄同步每寫一批就會通知一次，收藏列表會跟著一直重讀；店家內容下次進來 (或重新整理) 時就是新的。
+ *
+ * 不管收藏幾千筆，一次只讀畫面附近那幾頁。
+ */
+public class FavoritesPagingSource extends ListenableFuturePagingSource<FavoritesPagingSource.Key, Place> {
+
+    /** 收藏列表裡一筆的位置。 */
+    public static final class Key {
+        final long addedAt;
+        @NonNull final String storeId;
+
+        Key(long addedAt, @NonNull String storeId) {
+            this.addedAt = addedAt;
+            this.storeId = storeId;
+        }
+
+        static Key of(@NonNull FavoriteRow row) {
+            return new Key(row.addedAt, row.storeId);
+        }
+    }
+
+    private final FavoriteDao dao;
+    private final ListeningExecutorService executor;
+    private final LazyTableObserver observer;
+
+    public FavoritesPagingSource(@NonNull StoreDatabase db, @NonNull ListeningExecutorService executor) {
+        this.dao = db.favoriteDao();
+        this.executor = executor;
+        this.observer = new LazyTableObserver(db, executor, this::invalidate, "favorites");
+        registerInvalidatedCallback(() -> {
+            observer.close();
+            return kotlin.Unit.INSTANCE;
+        });
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<Key, Place>> loadFuture(@NonNull LoadParams<Key> params) {
+        return executor.submit(() -> {
+            observer.registerIfNecessary();
+            try {
+                return load(params);
+            } catch (Exception e) {
+                return new LoadResult.Error<>(e);
+            }
+        });
+    }
+
+    private LoadResult<Key, Place> load(LoadParams<Key> params) {
+        Key key = params.getKey();
+        int size = params.getLoadSize();
+        List<FavoriteRow> rows;
+        boolean full;
+
+        if (params instanceof LoadParams.Prepend) {
+            if (key == null) return page(Collections.emptyList(), null, null);
+            rows = new ArrayList<>(dao.before(key.addedAt, key.storeId, size));
+            full = rows.size() >= size;
+            Collections.reverse(rows);
+            if (rows.isEmpty()) return page(rows, null, null);
+            return page(rows, full ? Key.of(rows.get(0)) : null, key);
+        }
+
+        if (params instanceof LoadParams.Append) {
+            if (key == null) return page(Collections.emptyList(), null, null);
+            rows = dao.after(key.addedAt, key.storeId, false, size);
+            full = rows.size() >= size;
+            if (rows.isEmpty()) return page(rows, null, null);
+            // prevKey 記第一筆的位置：之後重新整理 (getRefreshKey) 從這一頁開始讀
+            return page(rows, Key.of(rows.get(0)), full ? Key.of(rows.get(rows.size() - 1)) : null);
+        }
+
+        // REFRESH：沒有 key 從頭讀；有 key 從那一筆 (含) 開始讀，前面的交給 PREPEND
+        rows = key == null ? dao.first(size) : dao.after(key.addedAt, key.storeId, true, size);
+        full = rows.size() >= size;
+        if (rows.isEmpty()) return page(rows, key, null);
+        Key prev = key == null ? null : Key.of(rows.get(0));
+        Key next = full ? Key.of(rows.get(rows.size() - 1)) : null;
+        return page(rows, prev, next);
+    }
+
+    private static LoadResult<Key, Place> page(List<FavoriteRow> rows, @Nullable Key prev, @Nullable Key next) {
+        List<Place> places = new ArrayList<>(rows.size());
+        for (FavoriteRow r : rows) places.add(toPlace(r));
+        return new LoadResult.Page<>(places, prev, next);
+    }
+
+    /** 收藏列 → Place；店家已經不在目錄裡的話只有 id (還是可以取消收藏)。 */
+    @NonNull
+    public static Place toPlace(@NonNull FavoriteRow row) {
+        Place p = row.store != null ? StoreMappers.toPlace(row.store) : null;
+        if (p == null) p = new Place();
+        if (p.id == null) p.id = row.storeId;
+        return p;
+    }
+
+    /** 重新整理時從畫面附近那一頁的第一筆開始讀 (那一頁的 prevKey 就是它的位置)。 */
+    @Nullable
+    @Override
+    public Key getRefreshKey(@NonNull PagingState<Key, Place> state) {
+        Integer anchor = state.getAnchorPosition();
+        if (anchor == null) return null;
+        PagingSource.LoadResult.Page<Key, Place> page = state.closestPageToPosition(anchor);
+        return page != null ? page.getPrevKey() : null;
+    }
+}
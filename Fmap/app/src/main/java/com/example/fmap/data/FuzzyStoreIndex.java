@@ -0,0 +1,348 @@
+package com.example.fmap.data;
+
+import com.example.fmap.data.local.StoreSearchFields;
+import com.example.fmap.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 「打錯字也找得到」的店家模糊搜尋索引 (放在記憶體裡)。
+ * 例如輸入 "麵屋武" 找到「麵屋武藏」、輸入 "泰式料哩" 找到「泰式料理」。
+ *
+ * 作法：
+ * 1. 把每家店的店名、標籤、菜單正規化 (TextNormalizer.norm) 後切成 bigram，建一個「bigram → 店家」的倒排索引。
+ * 2. 查詢時先用倒排索引算出每家店和查詢字串「共有幾個 bigram」，只留下重疊最多的一小批候選。
+ * 3. 再對候選的每個詞算「子字串編輯距離」(查詢字串最少改幾個字能出現在這個詞裡)，
+ *    綜合重疊比例、編輯距離和欄位權重 (店名 > 標籤 > 菜單) 打分數，取前 K 名。
+ * 只有第 3 步是比較貴的計算，而且只對少量候選做，所以店家很多時也能在幾毫秒內回應。
+ *
+ * 索引可以增量更新 (upsert / remove)：目錄同步只改了幾家店，就只更新那幾家，不用整個重建。
+ * 整個 App 共用一份 (getInstance)，讀寫用讀寫鎖保護。
+ */
+public class FuzzyStoreIndex {
+
+    /** 一筆搜尋結果：店家 id + 分數 (越高越相關)。 */
+    public static final class Match {
+        public final String id;
+        public final double score;
+
+        Match(String id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    // 欄位種類與權重：店名命中比標籤、菜單命中重要
+    private static final byte NAME = 0, TAG = 1, MENU = 2;
+    private static final double[] FIELD_WEIGHTS = {1.0, 0.8, 0.6};
+    // 第 2 步最多留下幾家候選 (至少是 K 的幾倍)
+    private static final int MIN_CANDIDATES = 200;
+    private static final int CANDIDATES_PER_RESULT = 8;
+    // 刪除的空位超過這個比例就整理一次倒排索引
+    private static final double COMPACT_RATIO = 0.25;
+
+    private static volatile FuzzyStoreIndex INSTANCE;
+
+    public static FuzzyStoreIndex getInstance() {
+        if (INSTANCE == null) {
+            synchronized (FuzzyStoreIndex.class) {
+                if (INSTANCE == null) INSTANCE = new FuzzyStoreIndex();
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 一家店在索引裡的資料：所有可搜尋的詞 (已正規化、去掉空白標點) 和它們的欄位種類。
+     * 詞直接存成 code point 陣列，算編輯距離時不用每次再拆一次字串。
+     */
+    private static final class Doc {
+        final String id;
+        final int[][] terms;
+        final byte[] kinds;
+
+        Doc(String id, int[][] terms, byte[] kinds) {
+            this.id = id;
+            this.terms = terms;
+            this.kinds = kinds;
+        }
+    }
+
+    /** 可以一直往後加的 int 陣列 (倒排索引的清單)，比 List<Integer> 省很多記憶體。 */
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object buildLock = new Object();
+    // 位置 (slot) → 店家；被刪除或更新的舊位置設成 null，倒排索引裡指到它的項目查詢時直接跳過
+    private final List<Doc> slots = new ArrayList<>();
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+    private final ThreadLocal<int[]> overlapScratch = new ThreadLocal<>();
+    private int deadSlots;
+    private volatile boolean built;
+
+    FuzzyStoreIndex() {}
+
+    /** 索引是否已經建好 (還沒建好之前 search 一律回傳空清單)。 */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * 還沒建好就用 loader 提供的資料建一次；已經建好就什麼都不做。
+     * 多個執行緒同時呼叫時只會建一次。請在背景執行緒呼叫。
+     */
+    public void ensureBuilt(Supplier<List<StoreSearchFields>> loader) {
+        if (built) return;
+        synchronized (buildLock) {
+            if (!built) rebuild(loader.get());
+        }
+    }
+
+    /** 清空後用整份資料重建索引。 */
+    public void rebuild(List<StoreSearchFields> all) {
+        lock.writeLock().lock();
+        try {
+            slots.clear();
+            slotById.clear();
+            postings.clear();
+            deadSlots = 0;
+            if (all != null) {
+                for (StoreSearchFields f : all) addLocked(toDoc(f));
+            }
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** 新增或更新一批店家 (增量更新)。 */
+    public void upsert(List<StoreSearchFields> changed) {
+        if (changed == null || changed.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            for (StoreSearchFields f : changed) {
+                Doc d = toDoc(f);
+                if (d == null) continue;
+                removeLocked(d.id);
+                addLocked(d);
+            }
+            compactIfNeededLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** 移除一批店家 (增量更新)。 */
+    public void remove(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) removeLocked(id);
+            compactIfNeededLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 模糊搜尋。
+     * @param query 使用者輸入 (會先正規化)
+     * @param k     最多回傳幾筆
+     * @return 依分數由高到低排好的結果
+     */
+    public List<Match> search(String query, int k) {
+        String q = compact(TextNormalizer.norm(query));
+        if (q.isEmpty() || k <= 0) return Collections.emptyList();
+        Set<String> qGrams = grams(q);
+        int[] qCps = q.codePoints().toArray();
+        // 容許的錯字數：每 3 個字容許 1 個，至少 1 個 (但不能把整個查詢都改掉)
+        int maxEdits = Math.min(Math.max(1, qCps.length / 3), Math.max(0, qCps.length - 1));
+
+        lock.readLock().lock();
+        try {
+            // --- 第 2 步：用倒排索引算每個位置的 bigram 重疊數 ---
+            // (計數陣列每個執行緒重複使用，用完只把碰過的位置歸零，不用每次配置一個大陣列)
+            int[] overlap = scratch(slots.size());
+            IntList touched = new IntList();
+            for (String g : qGrams) {
+                IntList list = postings.get(g);
+                if (list == null) continue;
+                for (int i = 0; i < list.size; i++) {
+                    int slot = list.data[i];
+                    if (overlap[slot]++ == 0) touched.add(slot);
+                }
+            }
+            if (touched.size == 0) return Collections.emptyList();
+
+            int maxCandidates = Math.max(MIN_CANDIDATES, k * CANDIDATES_PER_RESULT);
+            PriorityQueue<Match> top = new PriorityQueue<>(k + 1, (a, b) -> Double.compare(a.score, b.score));
+            try {
+                // --- 第 3 步：從重疊最多的開始取候選 (不用整個排序)，算編輯距離、打分數，保留前 K 名 ---
+                int examined = 0;
+                for (int o = qGrams.size(); o >= 1 && examined < maxCandidates; o--) {
+                    for (int i = 0; i < touched.size && examined < maxCandidates; i++) {
+                        int slot = touched.data[i];
+                        if (overlap[slot] != o) continue;
+                        Doc d = slots.get(slot);
+                        if (d == null) continue;
+                        examined++;
+                        double score = scoreDoc(d, qCps, maxEdits, (double) o / qGrams.size());
+                        if (score <= 0) continue;
+                        top.add(new Match(d.id, score));
+                        if (top.size() > k) top.poll();
+                    }
+                }
+            } finally {
+                for (int i = 0; i < touched.size; i++) overlap[touched.data[i]] = 0;
+            }
+
+            List<Match> out = new ArrayList<>(top);
+            out.sort((a, b) -> Double.compare(b.score, a.score));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 取得這個執行緒的計數陣列 (全部是 0)，長度不夠就換一個大的。 */
+    private int[] scratch(int size) {
+        int[] a = overlapScratch.get();
+        if (a == null || a.length < size) {
+            a = new int[Math.max(size, 16)];
+            overlapScratch.set(a);
+        }
+        return a;
+    }
+
+    // --- 打分數 ---
+
+    /** 一家店的分數 = 所有詞裡最好的那個 (欄位權重 × (編輯距離相似度 + bigram 重疊比例))。 */
+    private static double scoreDoc(Doc d, int[] q, int maxEdits, double overlapRatio) {
+        double best = 0;
+        for (int i = 0; i < d.terms.length; i++) {
+            int edits = substringEditDistance(q, d.terms[i], maxEdits);
+            if (edits > maxEdits) continue;
+            double similarity = 1.0 - (double) edits / q.length;
+            double s = FIELD_WEIGHTS[d.kinds[i]] * (0.6 * similarity + 0.4 * overlapRatio);
+            if (s > best) best = s;
+        }
+        return best;
+    }
+
+    /**
+     * 子字串編輯距離：pattern 最少要改幾個字 (增 / 刪 / 換) 才會出現在 text 的某個位置。
+     * 例如 ("麵屋武", "麵屋武藏") = 0、("泰式料哩", "泰式料理") = 1。
+     * 超過 limit 就提早放棄 (回傳 limit + 1)。
+     */
+    static int substringEditDistance(int[] p, int[] t, int limit) {
+        // prev[j]：pattern 前 i 個字對到 text 結尾在 j 的最小編輯數；第 0 列全是 0 (可以從 text 任何位置開始)
+        int[] prev = new int[t.length + 1];
+        int[] cur = new int[t.length + 1];
+        for (int i = 1; i <= p.length; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= t.length; j++) {
+                int cost = p[i - 1] == t[j - 1] ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                if (cur[j] < rowMin) rowMin = cur[j];
+            }
+            if (rowMin > limit) return limit + 1;
+            int[] tmp = prev; prev = cur; cur = tmp;
+        }
+        int best = Integer.MAX_VALUE;
+        for (int v : prev) best = Math.min(best, v);
+        return best;
+    }
+
+    // --- 索引維護 (都要在 writeLock 裡呼叫) ---
+
+    private void addLocked(Doc d) {
+        if (d == null) return;
+        int slot = slots.size();
+        slots.add(d);
+        slotById.put(d.id, slot);
+        Set<String> docGrams = new LinkedHashSet<>();
+        for (int[] term : d.terms) docGrams.addAll(grams(new String(term, 0, term.length)));
+        for (String g : docGrams) {
+            IntList list = postings.get(g);
+            if (list == null) postings.put(g, list = new IntList());
+            list.add(slot);
+        }
+    }
+
+    private void removeLocked(String id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) return;
+        slots.set(slot, null);
+        deadSlots++;
+    }
+
+    /** 空位太多時，用還活著的店家重建倒排索引，把記憶體收回來。 */
+    private void compactIfNeededLocked() {
+        if (deadSlots <= slots.size() * COMPACT_RATIO) return;
+        List<Doc> live = new ArrayList<>(slots.size() - deadSlots);
+        for (Doc d : slots) if (d != null) live.add(d);
+        slots.clear();
+        slotById.clear();
+        postings.clear();
+        deadSlots = 0;
+        for (Doc d : live) addLocked(d);
+    }
+
+    // --- 文字處理 ---
+
+    private static Doc toDoc(StoreSearchFields f) {
+        if (f == null || f.id == null) return null;
+        List<int[]> terms = new ArrayList<>();
+        List<Byte> kinds = new ArrayList<>();
+        addTerm(terms, kinds, f.nameNorm, NAME);
+        if (f.tagsNorm != null) for (String t : f.tagsNorm) addTerm(terms, kinds, t, TAG);
+        if (f.menuNorm != null) for (String m : f.menuNorm) addTerm(terms, kinds, m, MENU);
+        byte[] k = new byte[kinds.size()];
+        for (int i = 0; i < k.length; i++) k[i] = kinds.get(i);
+        return new Doc(f.id, terms.toArray(new int[0][]), k);
+    }
+
+    /** normalized 是寫入時就正規化好的欄位 (StoreSearchFields)，這裡只要去掉空白和標點。 */
+    private static void addTerm(List<int[]> terms, List<Byte> kinds, String normalized, byte kind) {
+        if (normalized == null) return;
+        String t = compact(normalized);
+        if (t.isEmpty()) return;
+        terms.add(t.codePoints().toArray());
+        kinds.add(kind);
+    }
+
+    /** 去掉空白和標點，只留文字和數字 ("麵屋 武藏" → "麵屋武藏")，打字時多一個空白也不影響。 */
+    private static String compact(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        s.codePoints().filter(Character::isLetterOrDigit).forEach(sb::appendCodePoint);
+        return sb.toString();
+    }
+
+    /** 切 bigram；只有一個字就用那個字本身。 */
+    private static Set<String> grams(String s) {
+        Set<String> out = new LinkedHashSet<>(TextNormalizer.bigrams(s));
+        if (out.isEmpty() && !s.isEmpty()) out.add(s);
+        return out;
+    }
+}
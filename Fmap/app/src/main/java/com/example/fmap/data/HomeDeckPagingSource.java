@@ -0,0 +1,140 @@
+package com.example.fmap.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingSource;
+import androidx.paging.PagingState;
+
+import com.example.fmap.data.local.HomeDeckRow;
+import com.example.fmap.data.local.StoreDao;
+import com.example.fmap.data.local.StoreDatabase;
+import com.example.fmap.data.local.StoreFilter;
+import com.example.fmap.data.local.StoreMappers;
+import com.example.fmap.model.Place;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Home 卡片牌堆的 PagingSource：直接對 stores 下篩選條件 (StoreFilter)，用 keyset (sort_key, id) 一頁一頁讀出店家。
+ * 篩選結果不會先整份讀出來或寫到別的表，每一頁就是一個帶 LIMIT 的查詢。
+ *
+ * - 往後翻 (APPEND)：上一頁最後一張卡的 key 之後；往前翻 (PREPEND)：第一張卡的 key 之前。
+ * - 重新整理 (REFRESH，例如滑掉一張卡) 從畫面附近那一頁的第一張卡「開始」讀 (含它本身)，
+ *   那張卡已經被排除也沒關係，keyset 條件會直接接到下一張，畫面不會跳回最上面。
+ *   篩選條件換了 (fromTop = true) 就從頭讀。
+ * - stores / dislikes / favorites 有寫入時 (InvalidationTracker 通知) 自己 invalidate，Pager 會換一個新的來讀。
+ *   觀察者在第一次 load 時才註冊 (見 LazyTableObserver)：建構子是 Pager 在主執行緒上呼叫的，不能碰資料庫。
+ */
+public class HomeDeckPagingSource extends ListenableFuturePagingSource<HomeDeckPagingSource.Key, Place> {
+
+    /** 牌堆裡一張卡的位置。 */
+    public static final class Key {
+        final double sortKey;
+        @NonNull final String storeId;
+
+        Key(double sortKey, @NonNull String storeId) {
+            this.sortKey = sortKey;
+            this.storeId = storeId;
+        }
+
+        static Key of(@NonNull HomeDeckRow row) {
+            return new Key(row.sortKey, row.store.id);
+        }
+    }
+
+    private final StoreDao dao;
+    private final StoreFilter filter;
+    private final boolean fromTop;
+    private final ListeningExecutorService executor;
+    private final LazyTableObserver observer;
+
+    HomeDeckPagingSource(@NonNull StoreDatabase db, @NonNull StoreFilter filter, boolean fromTop,
+                         @NonNull ListeningExecutorService executor) {
+        this.dao = db.storeDao();
+        this.filter = filter;
+        this.fromTop = fromTop;
+        this.executor = executor;
+        this.observer = new LazyTableObserver(db, executor, this::invalidate, "stores", "dislikes", "favorites");
+        registerInvalidatedCallback(() -> {
+            observer.close();
+            return kotlin.Unit.INSTANCE;
+        });
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<Key, Place>> loadFuture(@NonNull LoadParams<Key> params) {
+        return executor.submit(() -> {
+            observer.registerIfNecessary();
+            try {
+                return load(params);
+            } catch (Exception e) {
+                return new LoadResult.Error<>(e);
+            }
+        });
+    }
+
+    private LoadResult<Key, Place> load(LoadParams<Key> params) {
+        Key key = params.getKey();
+        int size = params.getLoadSize();
+        List<HomeDeckRow> rows;
+        boolean full;
+
+        if (params instanceof LoadParams.Prepend) {
+            if (key == null) return page(Collections.emptyList(), null, null);
+            rows = new ArrayList<>(dao.getDeckByRawQuery(filter.deckBefore(key.sortKey, key.storeId, size)));
+            full = rows.size() >= size;
+            Collections.reverse(rows);
+            if (rows.isEmpty()) return page(rows, null, null);
+            // 前面還有就繼續往前；往後接的是原本的第一張卡之後 (已經載入過，Pager 不會再用到)
+            return page(rows, full ? Key.of(rows.get(0)) : null, key);
+        }
+
+        if (params instanceof LoadParams.Append) {
+            if (key == null) return page(Collections.emptyList(), null, null);
+            rows = dao.getDeckByRawQuery(filter.deckAfter(key.sortKey, key.storeId, false, size));
+            full = rows.size() >= size;
+            if (rows.isEmpty()) return page(rows, null, null);
+            // prevKey 記第一張卡的位置：之後重新整理 (getRefreshKey) 從這一頁開始讀
+            return page(rows, Key.of(rows.get(0)), full ? Key.of(rows.get(rows.size() - 1)) : null);
+        }
+
+        // REFRESH：沒有 key 從頭讀；有 key 從那張卡 (含) 開始讀，前面的交給 PREPEND
+        rows = dao.getDeckByRawQuery(key == null
+                ? filter.deckFirst(size)
+                : filter.deckAfter(key.sortKey, key.storeId, true, size));
+        full = rows.size() >= size;
+        if (rows.isEmpty()) {
+            // 從中間開始讀卻是空的 (後面的卡都被滑掉了)：前面可能還有，交給 PREPEND
+            return page(rows, key, null);
+        }
+        Key prev = key == null ? null : Key.of(rows.get(0));
+        Key next = full ? Key.of(rows.get(rows.size() - 1)) : null;
+        return page(rows, prev, next);
+    }
+
+    private static LoadResult<Key, Place> page(List<HomeDeckRow> rows, @Nullable Key prev, @Nullable Key next) {
+        List<Place> places = new ArrayList<>(rows.size());
+        for (HomeDeckRow r : rows) places.add(StoreMappers.toPlace(r.store));
+        return new LoadResult.Page<>(places, prev, next);
+    }
+
+    /**
+     * 重新整理時從畫面附近那一頁的第一張卡開始讀 (那一頁的 prevKey 就是它的位置)。
+     * Paging 是拿「新的」PagingSource 來算上一代的位置，篩選條件換過的話上一代的位置沒有意義，從頭讀。
+     */
+    @Nullable
+    @Override
+    public Key getRefreshKey(@NonNull PagingState<Key, Place> state) {
+        if (fromTop) return null;
+        Integer anchor = state.getAnchorPosition();
+        if (anchor == null) return null;
+        PagingSource.LoadResult.Page<Key, Place> page = state.closestPageToPosition(anchor);
+        return page != null ? page.getPrevKey() : null;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.fmap.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.example.fmap.data.local.StoreDatabase;
+
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * PagingSource 用的「這幾張表有寫入就通知」觀察者，註冊和取消都在讀取執行緒上做。
+ *
+ * InvalidationTracker 的 addObserver / removeObserver 可能要同步 trigger，會碰到資料庫；
+ * 但 Pager 是在主執行緒建立 PagingSource 的，invalidate 也可能從主執行緒來 (例如滑掉一張卡)。
+ * 所以跟 Room 自己的 PagingSource 一樣，第一次 load 時 (在讀取執行緒上) 才註冊，
+ * invalidate 之後的取消也排到同一個執行緒池去做。
+ */
+final class LazyTableObserver {
+
+    private final InvalidationTracker tracker;
+    private final Executor executor;
+    private final InvalidationTracker.Observer observer;
+
+    // 兩個旗標都只在持有 this 的時候讀寫
+    private boolean registered;
+    private boolean closed;
+
+    LazyTableObserver(@NonNull StoreDatabase db, @NonNull Executor executor,
+                      @NonNull Runnable onInvalidated, @NonNull String... tables) {
+        this.tracker = db.getInvalidationTracker();
+        this.executor = executor;
+        this.observer = new InvalidationTracker.Observer(tables) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> changed) {
+                onInvalidated.run();
+            }
+        };
+    }
+
+    /** 還沒註冊就註冊 (已經 close 過就不再註冊)。請在讀取執行緒上呼叫。 */
+    synchronized void registerIfNecessary() {
+        if (registered || closed) return;
+        registered = true;
+        tracker.addObserver(observer);
+    }
+
+    /** PagingSource 失效時呼叫 (哪個執行緒都可以)：把取消註冊排到背景去做。 */
+    void close() {
+        executor.execute(() -> {
+            synchronized (this) {
+                closed = true;
+                if (!registered) return;
+                registered = false;
+                tracker.removeObserver(observer);
+            }
+        });
+    }
+}
@@ -2,26 +2,30 @@ package com.example.fmap.data;
 
 import android.app.Application;
 import android.content.Context;
-import android.content.res.AssetManager;
+import android.location.Location;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.fmap.data.local.CatalogMetaEntity;
+import com.example.fmap.data.local.CategoryMask;
+import com.example.fmap.data.local.StoreBounds;
 import com.example.fmap.data.local.StoreDao;
 import com.example.fmap.data.local.StoreDatabase;
 import com.example.fmap.data.local.StoreEntity;
-import com.example.fmap.data.local.StoreMappers;
-import com.example.fmap.model.Store;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.example.fmap.data.local.StoreFilter;
+import com.example.fmap.data.local.StoreLocation;
+import com.example.fmap.data.local.StoreTermEntity;
+import com.example.fmap.util.GeoHash;
+import com.example.fmap.util.TextNormalizer;
+import com.example.fmap.util.WeekTime;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -35,14 +39,27 @@ public class StoresRepository {
     private static final String TAG = "StoresRepository"; // Logcat 用的標籤
     // 指定要讀取的 App 內建資料檔案名稱
     private static final String ASSET_FILE = "stores_info_normalized.json";
+    // 一次 IN (...) 查詢最多帶幾個 id (SQLite 參數上限是 999)
+    private static final int ID_CHUNK = 500;
+    // 全文檢索結果少於這個數量時，用模糊搜尋補上最多這麼多家
+    private static final int TYPO_TOP_K = 20;
+
+    // 同一個進程裡可能有好幾個 Repository 同時呼叫 initFromAssets，用這把鎖確保只匯入一次
+    private static final Object IMPORT_LOCK = new Object();
 
     // 一個可以被觀察的狀態，用來通知 App「資料庫是否準備好了」。
     private final MutableLiveData<Boolean> dbReady = new MutableLiveData<>(false);
-    private final Gson gson = new Gson();
+    // 匯入進度：目前已處理的店家筆數 (同步完成前 dbReady 會維持 false)
+    private final MutableLiveData<Integer> importProgress = new MutableLiveData<>(0);
 
-    // 持有「資料庫管家」(DAO) 和「背景工作執行緒池」的引用
+    // 持有「資料庫」、「資料庫管家」(DAO) 和「背景工作執行緒池」的引用
+    private final StoreDatabase db;
     private final StoreDao storeDao;
     private final ExecutorService databaseExecutor;
+    // Home 牌堆翻頁 (HomeDeckPagingSource) 用的讀取執行緒
+    private final ListeningExecutorService deckExecutor;
+    // 打錯字也找得到的模糊搜尋索引 (整個 App 共用一份)
+    private final FuzzyStoreIndex fuzzyIndex = FuzzyStoreIndex.getInstance();
 
     /**
      * Repository 的建構子，在 App 啟動時會被呼叫。
@@ -50,11 +67,12 @@ public class StoresRepository {
      */
     public StoresRepository(Application app) {
         // 1. 取得資料庫的唯一實例
-        StoreDatabase db = StoreDatabase.getDatabase(app);
+        this.db = StoreDatabase.getDatabase(app);
         // 2. 從資料庫實例中，拿到「店家資料庫的管家」
         this.storeDao = db.storeDao();
         // 3. 從 StoreDatabase 取得共用的「背景工作執行緒池」
         this.databaseExecutor = StoreDatabase.databaseWriteExecutor;
+        this.deckExecutor = MoreExecutors.listeningDecorator(databaseExecutor);
     }
 
     /**
@@ -65,140 +83,198 @@ public class StoresRepository {
     }
 
     /**
-     * 從 App 內建的 JSON 檔案初始化資料庫。
+     * 匯入進度 (已處理的筆數)，搭配 getDbReady() 使用：
+     * dbReady 還是 false 的時候，可以用這個數字顯示「已載入 N 家」。
+     */
+    public LiveData<Integer> getImportProgress() {
+        return importProgress;
+    }
+
+    /**
+     * 從 App 內建的 JSON 檔案初始化 / 更新資料庫。
      * 這個方法會在背景執行緒中執行，避免卡住畫面。
+     * 1. 先算出目錄檔的版本，跟資料庫 catalog_meta 記的版本一樣就直接結束 (最常見的情況，幾乎不花時間)。
+     * 2. 版本不同 (第一次安裝、App 更新帶了新目錄、轉換邏輯改版) 才做增量同步 (見 CatalogImporter)：
+     *    只寫入有變動的店、刪掉已下架的店，花的時間跟「變動量」成正比，而不是整份目錄的大小。
      */
     public void initFromAssets(Context ctx) {
+        final Context appCtx = ctx.getApplicationContext();
         databaseExecutor.execute(() -> {
-            try {
-                // 檢查：如果資料庫已經有資料了，就不用再初始化。
-                if (storeDao.count() > 0) {
-                    Log.d(TAG, "資料庫已存在，跳過初始化。");
-                    dbReady.postValue(true); // 通知外面：資料庫已就緒
-                    return;
-                }
+            synchronized (IMPORT_LOCK) {
+                try {
+                    String version;
+                    try (InputStream is = appCtx.getAssets().open(ASSET_FILE)) {
+                        version = CatalogReader.catalogVersion(is);
+                    }
 
-                // 開始從 JSON 檔讀取資料
-                Log.d(TAG, "資料庫為空，開始從 JSON 初始化...");
-                List<Store> raw = readStoresFromAssets(ctx.getAssets(), ASSET_FILE);
-                List<StoreEntity> entities = new ArrayList<>();
-                for (Store s : raw) {
-                    // 使用轉換工廠，把網路模型 (Store) 轉成資料庫模型 (StoreEntity)
-                    StoreEntity e = StoreMappers.toEntity(s);
-                    if (e != null) entities.add(e);
-                }
+                    // 檢查：資料庫已經是這一版目錄的內容，就不用再同步。
+                    if (version.equals(db.catalogMetaDao().get(CatalogMetaEntity.KEY_CATALOG_VERSION))) {
+                        Log.d(TAG, "資料庫已是最新目錄 (" + version + ")，跳過同步。");
+                        dbReady.postValue(true); // 通知外面：資料庫已就緒
+                        fuzzyIndex.ensureBuilt(storeDao::getSearchFields); // 順便在背景把模糊搜尋索引建好
+                        return;
+                    }
 
-                // 將整理好的資料一次性寫入資料庫
-                storeDao.insertAll(entities);
-                Log.d(TAG, "資料庫初始化完成，共寫入 " + entities.size() + " 筆資料。");
+                    // 開始從 JSON 檔串流讀取資料並比對，每處理完一批就回報一次進度
+                    Log.d(TAG, "目錄版本不同，開始增量同步...");
+                    CatalogImporter.Result result;
+                    try (InputStream is = appCtx.getAssets().open(ASSET_FILE)) {
+                        result = new CatalogImporter(db).sync(is, version, importProgress::postValue);
+                    }
+                    Log.d(TAG, "資料庫同步完成：掃描 " + result.scanned + " 筆，更新 " + result.upsertedCount
+                            + " 筆，刪除 " + result.deletedCount + " 筆。");
 
-                dbReady.postValue(true); // 通知外面：資料庫已就緒
+                    dbReady.postValue(true); // 通知外面：資料庫已就緒
+                    updateFuzzyIndex(result);
 
-            } catch (Exception e) {
-                Log.e(TAG, "初始化資料庫失敗", e);
-                dbReady.postValue(false); // 通知外面：資料庫準備失敗
+                } catch (Exception e) {
+                    Log.e(TAG, "初始化資料庫失敗", e);
+                    dbReady.postValue(false); // 通知外面：資料庫準備失敗
+                }
             }
         });
     }
 
     /**
-     * 執行進階搜尋。
-     * 這個方法只是個傳聲筒，直接把收到的參數，傳給 DAO 去資料庫裡執行真正的搜尋。
-     * "Blocking" 意味著這個方法會等待資料庫搜尋完成才回傳結果。
+     * 把同步結果套用到模糊搜尋索引：索引已經建好就只更新有變動的店，還沒建就整個建一次。
+     * 變動太多 (result.truncated，同步結果沒有完整的 id 清單) 也是整個重建。
      */
-    public List<StoreEntity> searchAdvancedBlocking(
-            String keyword,
-            String dbCategory,
-            int someFlag,
-            String keyword2,
-            String somethingElse
-    ) {
-        String kw = (keyword == null) ? "" : keyword.trim();
-        String pattern = "%" + kw + "%"; // ⭐ 模糊搜尋
-        return storeDao.searchFuzzy(pattern);
+    private void updateFuzzyIndex(CatalogImporter.Result result) {
+        if (!fuzzyIndex.isBuilt()) {
+            fuzzyIndex.ensureBuilt(storeDao::getSearchFields);
+            return;
+        }
+        if (result.truncated) {
+            fuzzyIndex.rebuild(storeDao.getSearchFields());
+            return;
+        }
+        fuzzyIndex.remove(result.deletedIds);
+        List<String> ids = result.upsertedIds;
+        for (int i = 0; i < ids.size(); i += ID_CHUNK) {
+            fuzzyIndex.upsert(storeDao.getSearchFieldsByIds(ids.subList(i, Math.min(ids.size(), i + ID_CHUNK))));
+        }
     }
-    // === 新增：模糊搜尋（不改原本 searchAdvancedBlocking） ===
-    public List<StoreEntity> searchFuzzyBlocking(String keyword) {
-        final String kw = norm(keyword);
-        final String pattern = "%" + kw + "%";
-
-        // 1) 先用 SQL 對 name/address 做模糊查
-        List<StoreEntity> base = storeDao.searchByNameOrAddressFuzzy(pattern);
 
-        // 2) 若 keyword 很短或沒結果，你也可以把全部撈出來再做補強（可保留/可刪）
-        if ((base == null || base.isEmpty()) && kw.isEmpty()) {
-            base = storeDao.getAll();
+    /** 正規化 + 去除重複 (順序不變)。 */
+    private static List<String> normalizeTerms(List<String> terms) {
+        List<String> out = new ArrayList<>();
+        if (terms == null) return out;
+        for (String t : terms) {
+            String n = TextNormalizer.norm(t);
+            if (!n.isEmpty() && !out.contains(n)) out.add(n);
         }
+        return out;
+    }
 
-        // 3) 這裡只回傳 SQL 結果；如要再把 category/tags/menuItems 一起模糊比對，
-        //    可改為呼叫 searchFuzzyWithFieldsBlocking(keyword)（見下方進階版）
-        return base != null ? base : java.util.Collections.emptyList();
+    /**
+     * 容錯搜尋：用記憶體裡的 bigram 索引找「打錯字 / 只打一部分」也對得上的店 (見 FuzzyStoreIndex)，
+     * 依相似度由高到低回傳前 k 家。
+     */
+    private List<FuzzyStoreIndex.Match> searchTypoTolerantIds(String keyword, int k) {
+        // 通常在 initFromAssets 就建好了；萬一還沒，就在這裡 (背景執行緒) 建一次
+        fuzzyIndex.ensureBuilt(storeDao::getSearchFields);
+        return fuzzyIndex.search(keyword, k);
     }
 
-    /** （可選進階）同時對 category/tags/menuItems 做 in-memory 模糊補強 */
-    public List<StoreEntity> searchFuzzyWithFieldsBlocking(String keyword) {
-        final String kw = norm(keyword);
-        final String pattern = "%" + kw + "%";
-
-        List<StoreEntity> base = storeDao.searchByNameOrAddressFuzzy(pattern);
-        if (base == null) base = new ArrayList<>();
-        if (kw.isEmpty()) return base; // 空關鍵字就不額外過濾
-
-        List<StoreEntity> out = new ArrayList<>();
-        for (StoreEntity e : base) {
-            if (e == null) continue;
-            if (containsIgnoreCase(e.storeName, kw)) { out.add(e); continue; }
-            if (containsIgnoreCase(e.address, kw))   { out.add(e); continue; }
-            if (e.category != null) {
-                for (String c : e.category) { if (containsIgnoreCase(c, kw)) { out.add(e); break; } }
-            }
-            if (e.tags != null) {
-                for (String t : e.tags) { if (containsIgnoreCase(t, kw)) { out.add(e); break; } }
-            }
-            if (e.menuItems != null) {
-                for (String m : e.menuItems) { if (containsIgnoreCase(m, kw)) { out.add(e); break; } }
+    /**
+     * Home 的篩選條件 (牌堆和地圖共用)：先把要用到的值查好 (分類的字典 id / 遮罩、模糊搜尋補上的 id、
+     * geohash 前綴)，條件本身留在 SQL 裡，符合的店家一家都不用先讀出來。
+     * @param categories 使用者選的分類 (這裡會正規化)；空的就不限
+     * @param matchAll   true = 分類全部都要有 (ALL)，false = 有任一個就好 (ANY)
+     * @param openAt     只留這個時間有營業的店；null = 不限
+     * @param here       有位置就由近到遠排；null = 依評分
+     * @param radiusKm   > 0 且有位置時只留這個範圍內的店
+     */
+    public StoreFilter homeFilterBlocking(String keyword, List<String> categories, boolean matchAll,
+                                          Calendar openAt, Location here, double radiusKm) {
+        StoreFilter.Builder f = StoreFilter.builder().excludeDisliked().excludeFavorites();
+
+        List<String> wanted = normalizeTerms(categories);
+        if (!wanted.isEmpty()) {
+            List<Integer> termIds = storeDao.getTermIds(StoreTermEntity.KIND_CATEGORY, wanted);
+            // ALL 模式下有任何一個值不存在，就不可能有店符合；ANY 模式直接忽略不存在的值
+            if (termIds.isEmpty() || (matchAll && termIds.size() < wanted.size())) return StoreFilter.NONE;
+            Long mask = CategoryMask.maskOf(termIds);
+            // 分類優先用遮罩比對 (一次位元運算)；放不進遮罩的 id 才走關聯表
+            if (mask != null) f.categoryMask(mask, matchAll);
+            else f.terms(StoreTermEntity.KIND_CATEGORY, wanted, matchAll ? wanted.size() : 1);
+        }
+
+        String match = TextNormalizer.ftsQuery(keyword);
+        if (!match.isEmpty()) {
+            String prefix = TextNormalizer.norm(keyword);
+            String hi = TextNormalizer.prefixUpperBound(prefix);
+            // 店名開頭 + 全文檢索的結果不夠多時 (例如打錯字)，用模糊搜尋補上最像的幾家
+            List<String> extra = new ArrayList<>();
+            int hits = storeDao.getIdsByNamePrefix(prefix, hi, TYPO_TOP_K).size()
+                    + storeDao.countFtsUpTo(match, TYPO_TOP_K);
+            if (hits < TYPO_TOP_K) {
+                for (FuzzyStoreIndex.Match m : searchTypoTolerantIds(keyword, TYPO_TOP_K)) extra.add(m.id);
             }
+            f.keyword(match, prefix, hi, extra);
+        }
+
+        if (openAt != null) f.openAt(WeekTime.minuteOfWeek(openAt));
+        if (here != null) {
+            double lat = here.getLatitude(), lng = here.getLongitude();
+            f.near(lat, lng, radiusKm, radiusKm > 0 ? GeoHash.coverPrefixes(lat, lng, radiusKm) : null);
+        }
+        return f.build();
+    }
+
+    /**
+     * 地圖畫面範圍內、而且符合 filter 的店家 (評分高的在前，最多 limit 家)。
+     * 範圍跨過換日線 (west > east) 時拆成兩段查。
+     */
+    public List<StoreEntity> getInBoundsBlocking(StoreFilter filter, double south, double west,
+                                                 double north, double east, int limit) {
+        if (west <= east) return storeDao.getStoresByRawQuery(filter.inBounds(south, west, north, east, limit));
+        List<StoreEntity> out = new ArrayList<>(
+                storeDao.getStoresByRawQuery(filter.inBounds(south, west, north, 180, limit)));
+        if (out.size() < limit) {
+            out.addAll(storeDao.getStoresByRawQuery(filter.inBounds(south, -180, north, east, limit - out.size())));
         }
         return out;
     }
 
-    // ====== 新增：工具函式（不影響既有程式） ======
-    private static String norm(String s) {
-        if (s == null) return "";
-        String x = s.replace("\ufeff","")
-                .replace("\u200b","").replace("\u200c","").replace("\u200d","")
-                .trim();
-        x = java.text.Normalizer.normalize(x, java.text.Normalizer.Form.NFKC);
-        return x.toLowerCase(java.util.Locale.ROOT);
+    /** 符合 filter、而且有座標的全部店家，只讀 id 和座標 (地圖分群用)，不限筆數。 */
+    public List<StoreLocation> getLocationsBlocking(StoreFilter filter) {
+        return storeDao.getLocationsByRawQuery(filter.locations());
+    }
+
+    /** 符合 filter、而且有座標的店家的數量和範圍。 */
+    public StoreBounds getResultBoundsBlocking(StoreFilter filter) {
+        return storeDao.getBoundsByRawQuery(filter.resultBounds());
     }
-    private static boolean containsIgnoreCase(String text, String kw) {
-        if (text == null) return false;
-        return norm(text).contains(kw);
+
+    /** 一家店的座標；找不到回傳 null。 */
+    public StoreLocation getLocationBlocking(String id) {
+        return storeDao.getLocation(id);
     }
 
+    // --- Home 卡片牌堆 ---
 
     /**
-     * 透過 ID 列表查詢多家店。
-     * 同樣也是個傳聲筒，直接呼叫 DAO 的方法。
+     * 給 Pager 用：每次 invalidate 之後 Pager 會再要一個新的。
+     * @param filter  目前的篩選條件 (homeFilterBlocking)，還沒提交的滑動要先用 excluding 排除
+     * @param fromTop 篩選條件換了：從第一張開始讀，不接著上一代的位置
      */
-    public List<StoreEntity> getByIdsBlocking(List<String> ids) {
-        if (ids == null || ids.isEmpty()) {
-            return Collections.emptyList(); // 如果 ID 列表是空的，就直接回傳空清單，避免查詢資料庫。
-        }
-        return storeDao.getByIdsBlocking(ids);
+    public HomeDeckPagingSource newDeckPagingSource(StoreFilter filter, boolean fromTop) {
+        return new HomeDeckPagingSource(db, filter, fromTop, deckExecutor);
     }
 
     /**
-     * 內部工具：從 App 的 assets 資料夾讀取並解析 JSON 檔案。
-     * @return 一個 Store (網路模型) 的清單。
+     * 透過 ID 列表查詢多家店 (不保證順序)。
+     * 每次最多查 ID_CHUNK 個，id 再多也不會超過 SQLite 的參數上限。
      */
-    private List<Store> readStoresFromAssets(AssetManager am, String filename) throws Exception {
-        // 使用 try-with-resources 自動關閉檔案讀取流
-        try (InputStream is = am.open(filename);
-             BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-            // 告訴 Gson 我們要把 JSON 轉成一個「Store 的清單」
-            Type listType = new TypeToken<List<Store>>() {}.getType();
-            return gson.fromJson(br, listType);
+    public List<StoreEntity> getByIdsBlocking(List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList(); // 如果 ID 列表是空的，就直接回傳空清單，避免查詢資料庫。
         }
+        List<StoreEntity> out = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i += ID_CHUNK) {
+            out.addAll(storeDao.getByIdsBlocking(ids.subList(i, Math.min(ids.size(), i + ID_CHUNK))));
+        }
+        return out;
     }
 }
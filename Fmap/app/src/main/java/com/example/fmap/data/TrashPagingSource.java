@@ -0,0 +1,140 @@
+package com.example.fmap.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingSource;
+import androidx.paging.PagingState;
+import androidx.room.InvalidationTracker;
+
+import com.example.fmap.data.local.DislikeDao;
+import com.example.fmap.data.local.DislikeRow;
+import com.example.fmap.data.local.StoreDatabase;
+import com.example.fmap.data.local.StoreMappers;
+import com.example.fmap.model.Place;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 垃圾桶 (不喜歡清單) 的 PagingSource：用 keyset (disliked_at, store_id) 由新到舊從 dislikes 一頁一頁讀
+ * (永久刪除的不算)，每一頁是一個 JOIN stores 的查詢。做法跟 FavoritesPagingSource 一樣：
+ *
+ * - 往後翻 (APPEND)：比上一頁最後一筆更舊的；往前翻 (PREPEND)：比第一筆更新的。
+ * - 重新整理 (REFRESH，例如還原一家) 從畫面附近那一頁的第一筆「開始」讀 (含它本身)，列表不會跳回最上面。
+ * - dislikes 或 stores 有寫入時自己 invalidate，Pager 會換一個新的來讀。
+ *
+ * 不喜歡的店再多，一次也只讀畫面附近那幾頁 (不會再有一個幾千個 id 的 IN 查詢)。
+ */
+public class TrashPagingSource extends ListenableFuturePagingSource<TrashPagingSource.Key, Place> {
+
+    /** 垃圾桶裡一筆的位置。 */
+    public static final class Key {
+        final long dislikedAt;
+        @NonNull final String storeId;
+
+        Key(long dislikedAt, @NonNull String storeId) {
+            this.dislikedAt = dislikedAt;
+            this.storeId = storeId;
+        }
+
+        static Key of(@NonNull DislikeRow row) {
+            return new Key(row.dislikedAt, row.storeId);
+        }
+    }
+
+    private final DislikeDao dao;
+    private final ListeningExecutorService executor;
+    private final InvalidationTracker tracker;
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("dislikes", "stores") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            invalidate();
+        }
+    };
+
+    public TrashPagingSource(@NonNull StoreDatabase db, @NonNull ListeningExecutorService executor) {
+        this.dao = db.dislikeDao();
+        this.executor = executor;
+        this.tracker = db.getInvalidationTracker();
+        tracker.addObserver(observer);
+        registerInvalidatedCallback(() -> {
+            tracker.removeObserver(observer);
+            return kotlin.Unit.INSTANCE;
+        });
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<Key, Place>> loadFuture(@NonNull LoadParams<Key> params) {
+        return executor.submit(() -> {
+            try {
+                return load(params);
+            } catch (Exception e) {
+                return new LoadResult.Error<>(e);
+            }
+        });
+    }
+
+    private LoadResult<Key, Place> load(LoadParams<Key> params) {
+        Key key = params.getKey();
+        int size = params.getLoadSize();
+        List<DislikeRow> rows;
+        boolean full;
+
+        if (params instanceof LoadParams.Prepend) {
+            if (key == null) return page(Collections.emptyList(), null, null);
+            rows = new ArrayList<>(dao.before(key.dislikedAt, key.storeId, size));
+            full = rows.size() >= size;
+            Collections.reverse(rows);
+            if (rows.isEmpty()) return page(rows, null, null);
+            return page(rows, full ? Key.of(rows.get(0)) : null, key);
+        }
+
+        if (params instanceof LoadParams.Append) {
+            if (key == null) return page(Collections.emptyList(), null, null);
+            rows = dao.after(key.dislikedAt, key.storeId, false, size);
+            full = rows.size() >= size;
+            if (rows.isEmpty()) return page(rows, null, null);
+            // prevKey 記第一筆的位置：之後重新整理 (getRefreshKey) 從這一頁開始讀
+            return page(rows, Key.of(rows.get(0)), full ? Key.of(rows.get(rows.size() - 1)) : null);
+        }
+
+        // REFRESH：沒有 key 從頭讀；有 key 從那一筆 (含) 開始讀，前面的交給 PREPEND
+        rows = key == null ? dao.first(size) : dao.after(key.dislikedAt, key.storeId, true, size);
+        full = rows.size() >= size;
+        if (rows.isEmpty()) return page(rows, key, null);
+        Key prev = key == null ? null : Key.of(rows.get(0));
+        Key next = full ? Key.of(rows.get(rows.size() - 1)) : null;
+        return page(rows, prev, next);
+    }
+
+    private static LoadResult<Key, Place> page(List<DislikeRow> rows, @Nullable Key prev, @Nullable Key next) {
+        List<Place> places = new ArrayList<>(rows.size());
+        for (DislikeRow r : rows) places.add(toPlace(r));
+        return new LoadResult.Page<>(places, prev, next);
+    }
+
+    /** 垃圾桶的一列 → Place；店家已經不在目錄裡的話只有 id (還是可以還原 / 刪除)。 */
+    @NonNull
+    public static Place toPlace(@NonNull DislikeRow row) {
+        Place p = row.store != null ? StoreMappers.toPlace(row.store) : null;
+        if (p == null) p = new Place();
+        if (p.id == null) p.id = row.storeId;
+        return p;
+    }
+
+    /** 重新整理時從畫面附近那一頁的第一筆開始讀 (那一頁的 prevKey 就是它的位置)。 */
+    @Nullable
+    @Override
+    public Key getRefreshKey(@NonNull PagingState<Key, Place> state) {
+        Integer anchor = state.getAnchorPosition();
+        if (anchor == null) return null;
+        PagingSource.LoadResult.Page<Key, Place> page = state.closestPageToPosition(anchor);
+        return page != null ? page.getPrevKey() : null;
+    }
+}
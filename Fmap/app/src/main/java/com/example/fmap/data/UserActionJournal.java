@@ -0,0 +1,283 @@
+package com.example.fmap.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.fmap.data.local.StoreDatabase;
+import com.example.fmap.data.local.UserActionDao;
+import com.example.fmap.data.local.UserActionEntity;
+import com.example.fmap.model.DislikesStore;
+import com.example.fmap.model.FavoritesStore;
+import com.example.fmap.model.Swipe;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用者動作日誌：滑卡片 (LIKE / NOPE)、取消收藏、從垃圾桶還原 / 永久刪除，全部從這裡寫。
+ *
+ * - 動作先放進記憶體，停手 FLUSH_DELAY_MS 之後 (或累積到 MAX_BATCH 筆) 在背景一次提交 (group commit)：
+ *   一個交易裡把這批動作接到 user_actions 後面，同時更新 favorites / dislikes (目前狀態)。
+ *   連滑幾百張也只是幾個小交易。
+ *   用 recordAll 一起記下的一批 (垃圾桶多選) 一定在同一次提交裡。
+ * - 日誌和狀態在同一個交易裡寫，狀態永遠不會落後日誌，開 App 時不用重播；
+ *   每提交 TRIM_EVERY 批就把日誌壓到只剩最後 KEEP_HISTORY 筆 (狀態表本身就是快照)。
+ * - 日誌照順序保留最近的動作，之後要做「復原上一步」或統計直接讀 recentBlocking。
+ *
+ * 收藏 / 取消收藏在記下的當下就先改 FavoritesStore 的快照 (畫面馬上看得到，不用等提交)；
+ * 提交失敗或同一批裡被蓋掉時再從資料表重讀快照。
+ * 還沒提交的滑動可以用 pendingSwipeIds() 查 (載入牌堆時要一併排除，不然剛滑掉的卡會跑回來)。
+ * 同一家店在同一批裡連續被滑兩次，以最後一次為準。整個 App 共用一份 (單例)。
+ */
+public class UserActionJournal {
+
+    private static final String TAG = "UserActionJournal";
+
+    /** 停手多久之後提交。 */
+    private static final long FLUSH_DELAY_MS = 400;
+    /** 累積幾筆就不等了，直接提交。 */
+    private static final int MAX_BATCH = 50;
+    /** 日誌最多留幾筆。 */
+    private static final int KEEP_HISTORY = 2000;
+    /** 每提交幾批壓縮一次日誌。 */
+    private static final int TRIM_EVERY = 20;
+
+    /** 一批提交完之後通知 (在背景執行緒上)；actions 是這批裡出現過的動作種類 (UserActionEntity.*)。 */
+    public interface Listener {
+        void onCommitted(@NonNull Set<String> actions);
+    }
+
+    private static UserActionJournal INSTANCE;
+
+    private final StoreDatabase db;
+    private final UserActionDao dao;
+    private final FavoritesStore favorites;
+    private final DislikesStore dislikes;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private final Object lock = new Object();
+    // 還沒提交的動作 (照發生順序)
+    private List<UserActionEntity> pending = new ArrayList<>();
+    // 正在提交的那一批裡的滑動 (提交完才拿掉，這段時間 pendingSwipeIds 也要算它們)
+    private Set<String> inFlight = Collections.emptySet();
+    private ScheduledFuture<?> scheduled;
+    private int commitsSinceTrim; // 只在 executor 上讀寫
+
+    private UserActionJournal(Context appCtx) {
+        this.db = StoreDatabase.getDatabase(appCtx);
+        this.dao = db.userActionDao();
+        this.favorites = FavoritesStore.getInstance(appCtx);
+        this.dislikes = DislikesStore.getInstance(appCtx);
+    }
+
+    public static synchronized UserActionJournal getInstance(Context ctx) {
+        if (INSTANCE == null) {
+            INSTANCE = new UserActionJournal(ctx.getApplicationContext());
+        }
+        return INSTANCE;
+    }
+
+    public void addListener(@NonNull Listener l) {
+        listeners.add(l);
+    }
+
+    public void removeListener(@NonNull Listener l) {
+        listeners.remove(l);
+    }
+
+    /** 記下一次滑動；立刻返回，真正的寫入在背景批次做。 */
+    public void swipe(@NonNull Swipe.Action action, @NonNull String storeId) {
+        record(action == Swipe.Action.LIKE ? UserActionEntity.LIKE : UserActionEntity.NOPE, storeId);
+    }
+
+    /** 記下一個動作 (UserActionEntity.LIKE / NOPE / UNFAVORITE / RESTORE / PURGE)。 */
+    public void record(@NonNull String action, @NonNull String storeId) {
+        enqueue(Collections.singletonList(new UserActionEntity(storeId, action, System.currentTimeMillis())));
+    }
+
+    /**
+     * 對一批店家記下同一個動作 (垃圾桶多選還原 / 永久刪除)。整批一起放進待提交的清單，
+     * 一定在同一個交易裡提交，不會被 MAX_BATCH 切成好幾次 (畫面不會看到只還原了一半)。
+     */
+    public void recordAll(@NonNull String action, @NonNull Collection<String> storeIds) {
+        long now = System.currentTimeMillis();
+        List<UserActionEntity> batch = new ArrayList<>(storeIds.size());
+        for (String id : storeIds) if (id != null) batch.add(new UserActionEntity(id, action, now));
+        if (!batch.isEmpty()) enqueue(batch);
+    }
+
+    /** 先改收藏快照，再放進待提交的清單：累積到 MAX_BATCH 筆就馬上提交，不然停手一下再提交。 */
+    private void enqueue(List<UserActionEntity> entries) {
+        for (UserActionEntity e : entries) {
+            if (UserActionEntity.LIKE.equals(e.action)) favorites.publishAdded(e.storeId);
+            else if (UserActionEntity.UNFAVORITE.equals(e.action)) favorites.publishRemoved(e.storeId);
+        }
+        synchronized (lock) {
+            pending.addAll(entries);
+            if (pending.size() >= MAX_BATCH) {
+                cancelScheduled();
+                executor.execute(this::drain);
+            } else if (scheduled == null) {
+                scheduled = executor.schedule(this::drain, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /** 還沒提交的滑動 (LIKE / NOPE) 的店家 id，包含正在提交的那一批。 */
+    @NonNull
+    public Set<String> pendingSwipeIds() {
+        synchronized (lock) {
+            Set<String> ids = new HashSet<>(inFlight);
+            for (UserActionEntity e : pending) {
+                if (isSwipe(e.action)) ids.add(e.storeId);
+            }
+            return ids;
+        }
+    }
+
+    /** 不等了，馬上把目前累積的提交 (例如畫面要關了)。 */
+    public void flush() {
+        synchronized (lock) {
+            cancelScheduled();
+        }
+        executor.execute(this::drain);
+    }
+
+    /** 最近的 limit 個動作 (最新的在前)；要在背景執行緒呼叫。 */
+    @NonNull
+    public List<UserActionEntity> recentBlocking(int limit) {
+        return dao.recent(limit);
+    }
+
+    private static boolean isSwipe(String action) {
+        return UserActionEntity.LIKE.equals(action) || UserActionEntity.NOPE.equals(action);
+    }
+
+    private void cancelScheduled() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    /** 在背景執行緒上：把目前累積的一次提交。 */
+    private void drain() {
+        List<UserActionEntity> batch;
+        synchronized (lock) {
+            scheduled = null;
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>();
+            Set<String> swiped = new HashSet<>();
+            for (UserActionEntity e : batch) if (isSwipe(e.action)) swiped.add(e.storeId);
+            inFlight = swiped;
+        }
+
+        Set<String> actions = new LinkedHashSet<>();
+        for (UserActionEntity e : batch) actions.add(e.action);
+        boolean[] likeCancelled = new boolean[1];
+        try {
+            db.runInTransaction(() -> {
+                dao.insertAll(batch);
+                likeCancelled[0] = apply(batch);
+            });
+            Log.d(TAG, "committed " + batch.size() + " action(s) " + actions);
+            // 先右滑又左滑：快照在右滑時已經標成收藏了，但實際沒寫，重讀一次
+            if (likeCancelled[0]) reloadQuietly();
+        } catch (Exception e) {
+            Log.e(TAG, "commit failed", e);
+            reloadQuietly(); // 快照先改了，資料庫沒寫成，拉回來
+        } finally {
+            synchronized (lock) {
+                inFlight = Collections.emptySet();
+            }
+        }
+
+        if (++commitsSinceTrim >= TRIM_EVERY) {
+            commitsSinceTrim = 0;
+            try {
+                dao.trimTo(KEEP_HISTORY);
+            } catch (Exception e) {
+                Log.w(TAG, "trim failed", e);
+            }
+        }
+        for (Listener l : listeners) l.onCommitted(actions);
+    }
+
+    /**
+     * 把一批動作套用到 favorites / dislikes (在提交的交易裡)。
+     * 同一家店只看它在這批裡的最後結果；滑動會蓋掉同一家店之前的滑動 (先右滑又左滑 = 只有不喜歡)。
+     * 有右滑被同一批的左滑蓋掉就回傳 true。
+     */
+    private boolean apply(List<UserActionEntity> batch) {
+        boolean likeCancelled = false;
+        Map<String, Boolean> fav = new HashMap<>();     // true = 加入收藏、false = 取消收藏
+        Map<String, String> dislike = new HashMap<>();  // NOPE / RESTORE / PURGE
+        for (UserActionEntity e : batch) {
+            switch (e.action) {
+                case UserActionEntity.LIKE:
+                    fav.put(e.storeId, true);
+                    if (UserActionEntity.NOPE.equals(dislike.get(e.storeId))) dislike.remove(e.storeId);
+                    break;
+                case UserActionEntity.NOPE:
+                    dislike.put(e.storeId, UserActionEntity.NOPE);
+                    if (Boolean.TRUE.equals(fav.get(e.storeId))) {
+                        fav.remove(e.storeId);
+                        likeCancelled = true;
+                    }
+                    break;
+                case UserActionEntity.UNFAVORITE:
+                    fav.put(e.storeId, false);
+                    break;
+                case UserActionEntity.RESTORE:
+                case UserActionEntity.PURGE:
+                    dislike.put(e.storeId, e.action);
+                    break;
+                default:
+                    Log.w(TAG, "unknown action: " + e.action);
+            }
+        }
+
+        List<String> likes = new ArrayList<>(), unfavorites = new ArrayList<>();
+        for (Map.Entry<String, Boolean> en : fav.entrySet()) {
+            (en.getValue() ? likes : unfavorites).add(en.getKey());
+        }
+        List<String> nopes = new ArrayList<>(), restores = new ArrayList<>(), purges = new ArrayList<>();
+        for (Map.Entry<String, String> en : dislike.entrySet()) {
+            switch (en.getValue()) {
+                case UserActionEntity.NOPE: nopes.add(en.getKey()); break;
+                case UserActionEntity.RESTORE: restores.add(en.getKey()); break;
+                default: purges.add(en.getKey()); break;
+            }
+        }
+        favorites.addIds(likes);
+        favorites.removeIds(unfavorites);
+        dislikes.addAll(nopes);
+        dislikes.restore(restores);
+        dislikes.purge(purges);
+        return likeCancelled;
+    }
+
+    private void reloadQuietly() {
+        try {
+            favorites.reloadSnapshot();
+        } catch (Exception e) {
+            Log.w(TAG, "reload favorites snapshot failed", e);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.fmap.data.local;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converters 用的「二進位編碼」：取代原本的 Gson JSON 文字，讀取時不用反射、也不用解析 JSON。
+ *
+ * 格式：第一個位元組是 MAGIC (0xFF，合法的 UTF-8 / JSON 不會以它開頭)，後面接一個「帶型別標記」的值：
+ * - 字串清單：STRING_LIST + 筆數 + 每筆 (長度+1, UTF-8 位元組)；長度 0 代表 null
+ * - 字串：STRING + 長度 + UTF-8 位元組
+ * - 數字：DOUBLE + 8 個位元組 (跟 Gson 一樣，數字一律還原成 Double)
+ * - 清單 / Map：LIST / MAP + 筆數 + 每個元素 (Map 是 key 字串 + 值)
+ * 長度和筆數都用 varint (7 個位元一組)，短字串只多 1 個位元組。
+ *
+ * 不依賴 Android，CatalogCompiler (建置時) 也會用到。
+ */
+public final class BinaryCodec {
+
+    /** 二進位格式的開頭標記。不是這個開頭的就是舊版的 JSON 文字。 */
+    static final byte MAGIC = (byte) 0xFF;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte TRUE = 3;
+    private static final byte FALSE = 4;
+    private static final byte LIST = 5;
+    private static final byte MAP = 6;
+    private static final byte STRING_LIST = 7;
+
+    private BinaryCodec() {}
+
+    /** 這份資料是不是二進位格式 (否則就是升級前留下來的 JSON)。 */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    public static byte[] encodeStringList(List<String> list) {
+        Out out = new Out(16 + list.size() * 12);
+        out.put(MAGIC);
+        writeStringList(out, list);
+        return out.toBytes();
+    }
+
+    public static List<String> decodeStringList(byte[] data) {
+        In in = new In(data);
+        byte tag = in.get();
+        if (tag == STRING_LIST) return readStringList(in);
+        Object v = readValue(in, tag);
+        if (!(v instanceof List)) throw new IllegalArgumentException("不是字串清單：tag=" + tag);
+        List<String> out = new ArrayList<>();
+        for (Object o : (List<?>) v) out.add(o == null ? null : String.valueOf(o));
+        return out;
+    }
+
+    public static byte[] encodeMap(Map<String, Object> map) {
+        Out out = new Out(64);
+        out.put(MAGIC);
+        writeValue(out, map);
+        return out.toBytes();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> decodeMap(byte[] data) {
+        In in = new In(data);
+        Object v = readValue(in, in.get());
+        if (!(v instanceof Map)) throw new IllegalArgumentException("不是 Map");
+        return (Map<String, Object>) v;
+    }
+
+    // --- 寫入 ---
+
+    private static void writeValue(Out out, Object v) {
+        if (v == null) {
+            out.put(NULL);
+        } else if (v instanceof String) {
+            out.put(STRING);
+            writeString(out, (String) v);
+        } else if (v instanceof Number) {
+            out.put(DOUBLE);
+            out.putLong(Double.doubleToRawLongBits(((Number) v).doubleValue()));
+        } else if (v instanceof Boolean) {
+            out.put((Boolean) v ? TRUE : FALSE);
+        } else if (v instanceof Map) {
+            Map<?, ?> m = (Map<?, ?>) v;
+            out.put(MAP);
+            out.putVarint(m.size());
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                writeString(out, String.valueOf(e.getKey()));
+                writeValue(out, e.getValue());
+            }
+        } else if (v instanceof Collection) {
+            Collection<?> c = (Collection<?>) v;
+            out.put(LIST);
+            out.putVarint(c.size());
+            for (Object o : c) writeValue(out, o);
+        } else {
+            // 其他型別 (理論上不會出現)：跟 Gson 一樣當字串存
+            out.put(STRING);
+            writeString(out, v.toString());
+        }
+    }
+
+    private static void writeStringList(Out out, List<String> list) {
+        out.put(STRING_LIST);
+        out.putVarint(list.size());
+        for (String s : list) {
+            if (s == null) {
+                out.putVarint(0);
+            } else {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                out.putVarint(b.length + 1);
+                out.put(b);
+            }
+        }
+    }
+
+    private static void writeString(Out out, String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.putVarint(b.length);
+        out.put(b);
+    }
+
+    // --- 讀取 ---
+
+    private static Object readValue(In in, byte tag) {
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.string(in.varint());
+            case DOUBLE:
+                return Double.longBitsToDouble(in.getLong());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case LIST: {
+                int n = in.varint();
+                List<Object> list = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) list.add(readValue(in, in.get()));
+                return list;
+            }
+            case MAP: {
+                int n = in.varint();
+                Map<String, Object> map = new LinkedHashMap<>(n * 4 / 3 + 1);
+                for (int i = 0; i < n; i++) {
+                    String key = in.string(in.varint());
+                    map.put(key, readValue(in, in.get()));
+                }
+                return map;
+            }
+            case STRING_LIST:
+                return readStringList(in);
+            default:
+                throw new IllegalArgumentException("未知的型別標記：" + tag);
+        }
+    }
+
+    private static List<String> readStringList(In in) {
+        int n = in.varint();
+        List<String> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int len = in.varint();
+            list.add(len == 0 ? null : in.string(len - 1));
+        }
+        return list;
+    }
+
+    /** 只會往後長的位元組緩衝 (不像 ByteArrayOutputStream 每次寫入都要拿鎖)。 */
+    private static final class Out {
+        private byte[] buf;
+        private int n;
+
+        Out(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void put(byte b) {
+            ensure(1);
+            buf[n++] = b;
+        }
+
+        void put(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, n, b.length);
+            n += b.length;
+        }
+
+        void putVarint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf[n++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[n++] = (byte) v;
+        }
+
+        void putLong(long v) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) buf[n++] = (byte) (v >>> shift);
+        }
+
+        byte[] toBytes() {
+            return Arrays.copyOf(buf, n);
+        }
+
+        private void ensure(int more) {
+            if (n + more > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, n + more));
+        }
+    }
+
+    /** 讀取游標；跳過開頭的 MAGIC。 */
+    private static final class In {
+        private final byte[] b;
+        private int p = 1;
+
+        In(byte[] b) {
+            this.b = b;
+        }
+
+        byte get() {
+            return b[p++];
+        }
+
+        int varint() {
+            int v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte x = b[p++];
+                v |= (x & 0x7F) << shift;
+                if (x >= 0) return v;
+            }
+        }
+
+        long getLong() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) v = (v << 8) | (b[p++] & 0xFF);
+            return v;
+        }
+
+        String string(int len) {
+            String s = new String(b, p, len, StandardCharsets.UTF_8);
+            p += len;
+            return s;
+        }
+    }
+}
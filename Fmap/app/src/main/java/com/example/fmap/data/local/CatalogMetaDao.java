@@ -0,0 +1,21 @@
+package com.example.fmap.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+/**
+ * catalog_meta 的管家：讀寫資料庫裡的 key/value 小筆記。
+ */
+@Dao
+public interface CatalogMetaDao {
+
+    /** 取出某個 key 的值，沒有就回傳 null。 */
+    @Query("SELECT value FROM catalog_meta WHERE `key` = :key")
+    String get(String key);
+
+    /** 寫入 (或覆蓋) 一筆 key/value。 */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void put(CatalogMetaEntity entry);
+}
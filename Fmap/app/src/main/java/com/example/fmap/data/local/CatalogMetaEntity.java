@@ -0,0 +1,25 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * 資料庫的「小筆記本」(key/value)。
+ * 目前用來記錄資料庫裡的店家是哪一版目錄匯入的 (見 StoresRepository.initFromAssets)，
+ * 下次啟動時版本相同就什麼都不用做。
+ */
+@Entity(tableName = "catalog_meta")
+public class CatalogMetaEntity {
+
+    /** 目前資料庫內容對應的目錄版本 (檔案雜湊 + StoreMappers.MAPPING_VERSION)。 */
+    public static final String KEY_CATALOG_VERSION = "catalog_version";
+
+    @PrimaryKey
+    @NonNull
+    public String key = "";
+
+    public String value;
+
+    public CatalogMetaEntity() {}
+}
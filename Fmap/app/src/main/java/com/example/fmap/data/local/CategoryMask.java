@@ -0,0 +1,48 @@
+package com.example.fmap.data.local;
+
+import java.util.List;
+
+/**
+ * 分類的位元遮罩 (bitmask) 工具。
+ * 每個分類在字典 (term_dict) 裡有一個 id，id < 64 的分類對應 long 的一個位元，
+ * 一家店的所有分類 OR 起來就是它的 category_mask。
+ * 篩選時只要一次 AND 加比較，不用再建字串集合：
+ * - ANY (任一個)：(storeMask & wanted) != 0
+ * - ALL (全部)  ：(storeMask & wanted) == wanted
+ * id >= 64 的分類放不進遮罩，查詢時要改走 store_terms 關聯表 (見 StoresRepository)。
+ */
+public final class CategoryMask {
+
+    /** 遮罩能容納的 id 數量。 */
+    public static final int CAPACITY = Long.SIZE;
+
+    private CategoryMask() {}
+
+    /** 這個 id 放得進遮罩嗎？ */
+    public static boolean fits(int id) {
+        return id >= 0 && id < CAPACITY;
+    }
+
+    public static long bit(int id) {
+        return 1L << id;
+    }
+
+    /**
+     * 把一組 id 轉成遮罩。
+     * @return 遮罩；只要有一個 id 放不進遮罩 (或不存在) 就回傳 null，呼叫端要改走關聯表
+     */
+    public static Long maskOf(List<Integer> ids) {
+        long mask = 0L;
+        for (Integer id : ids) {
+            if (id == null || !fits(id)) return null;
+            mask |= bit(id);
+        }
+        return mask;
+    }
+
+    /** 一家店的遮罩是否符合條件 (和 StoreFilter.Builder.categoryMask 的 SQL 規則相同)。 */
+    public static boolean matches(long storeMask, long wanted, boolean matchAll) {
+        long hit = storeMask & wanted;
+        return matchAll ? hit == wanted : hit != 0;
+    }
+}
@@ -1,9 +1,10 @@
 package com.example.fmap.data.local;
 
 import androidx.room.TypeConverter; // 引入 Room 的「翻譯官」標籤
-import com.google.gson.Gson; // 引入 Google 的 JSON 翻譯工具
+import com.google.gson.Gson; // 引入 Google 的 JSON 翻譯工具 (只用來讀升級前留下的舊資料)
 import com.google.gson.reflect.TypeToken; // 輔助工具，用來處理 List<T> 這種複雜類型
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -11,53 +12,72 @@ import java.util.Map;
 /**
  * Type Converters
  * 讓 Room 能儲存它看不懂的複雜資料 (如 List 或 Map)
- * 原理：存入時變文字 (JSON)，取出時變回物件
+ * 原理：存入時變成精簡的二進位 (BinaryCodec)，取出時變回物件。
+ * 以前存的是 JSON 文字，讀取時要靠反射解析，每次 SELECT * 都很花時間；
+ * 升級前留下來的 JSON 仍然讀得懂 (看開頭有沒有 BinaryCodec.MAGIC)，同步時就會被改寫成二進位。
  */
 public class Converters {
     private static final Gson gson = new Gson();
+    // 舊資料 (JSON) 用的型別，只建立一次，不要每次解碼都 new TypeToken
+    private static final Type LEGACY_LIST_TYPE = new TypeToken<List<String>>() {}.getType();
+    private static final Type LEGACY_MAP_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
 
     //  List<String>
     /**
      * @TypeConverter 標籤：告訴 Room 這是「存入」時要用的翻譯方法
-     * 把 List 物件翻譯成純文字
+     * 把 List 物件翻譯成二進位
      */
     @TypeConverter
-    public static String fromStringList(List<String> list) {
-        return list == null ? null : gson.toJson(list);
+    public static byte[] fromStringList(List<String> list) {
+        return list == null ? null : BinaryCodec.encodeStringList(list);
     }
 
     /**
      * @TypeConverter 標籤：告訴 Room 這是「讀取」時要用的翻譯方法
-     * 把純文字翻譯回 List 物件
+     * 把二進位 (或舊版的 JSON 文字) 翻譯回 List 物件
      */
     @TypeConverter
-    public static List<String> toStringList(String json) {
-        if (json == null) {
+    public static List<String> toStringList(byte[] data) {
+        if (data == null) {
             return Collections.emptyList();
         }
-        Type listType = new TypeToken<List<String>>() {}.getType();
-        return gson.fromJson(json, listType);
+        if (BinaryCodec.isBinary(data)) {
+            return BinaryCodec.decodeStringList(data);
+        }
+        return gson.fromJson(legacyJson(data), LEGACY_LIST_TYPE);
     }
 
     // Map<String, Object>
 
     /**
-     * 「存入」時用：把 Map 物件翻譯成純文字
+     * 「存入」時用：把 Map 物件翻譯成二進位
      */
     @TypeConverter
-    public static String fromMap(Map<String, Object> map) {
-        return map == null ? null : gson.toJson(map);
+    public static byte[] fromMap(Map<String, Object> map) {
+        return map == null ? null : BinaryCodec.encodeMap(map);
     }
 
     /**
-     * 「讀取」時用：把純文字翻譯回 Map 物件
+     * 「讀取」時用：把二進位 (或舊版的 JSON 文字) 翻譯回 Map 物件
      */
     @TypeConverter
-    public static Map<String, Object> toMap(String json) {
-        if (json == null) {
+    public static Map<String, Object> toMap(byte[] data) {
+        if (data == null) {
             return Collections.emptyMap();
         }
-        Type mapType = new TypeToken<Map<String, Object>>() {}.getType();
-        return gson.fromJson(json, mapType);
+        if (BinaryCodec.isBinary(data)) {
+            return BinaryCodec.decodeMap(data);
+        }
+        return gson.fromJson(legacyJson(data), LEGACY_MAP_TYPE);
+    }
+
+    /**
+     * 舊的 JSON 文字。如果欄位裡存的其實是 TEXT (不是 BLOB)，Android 用 getBlob 讀出來會多一個結尾的 \0，
+     * Gson 會說「沒讀完」，所以先拿掉 (Migrations.MIGRATION_6_7 已經 CAST 成 BLOB，這裡是保險)。
+     */
+    private static String legacyJson(byte[] data) {
+        int len = data.length;
+        while (len > 0 && data[len - 1] == 0) len--;
+        return new String(data, 0, len, StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,76 @@
+package com.example.fmap.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+/**
+ * dislikes 的管家：記下不喜歡、垃圾桶翻頁、批次還原 / 永久刪除。
+ *
+ * 批次操作在同一個交易裡完成，id 每 ID_CHUNK 個一組送出 (SQLite 一個查詢最多 999 個參數)，
+ * 所以一次選幾千筆也沒問題。垃圾桶翻頁跟 Home 牌堆 (HomeDeckPagingSource) 一樣用 keyset，只是方向是由新到舊。
+ */
+@Dao
+public interface DislikeDao {
+
+    /** 一次最多帶幾個 id (SQLite 的參數上限是 999，留一點給其他參數)。 */
+    int ID_CHUNK = 500;
+
+    /** 已經在表裡的不動 (保留原本的時間)。 */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertIgnore(List<DislikeEntity> rows);
+
+    @Query("DELETE FROM dislikes WHERE store_id IN (:ids)")
+    int deleteChunk(List<String> ids);
+
+    @Query("UPDATE dislikes SET purged_at = :now WHERE purged_at IS NULL AND store_id IN (:ids)")
+    int purgeChunk(List<String> ids, long now);
+
+    /** 還原 (從不喜歡拿掉，Home 又看得到)：一個交易。 */
+    @Transaction
+    default int restore(List<String> ids) {
+        int n = 0;
+        for (int i = 0; i < ids.size(); i += ID_CHUNK) {
+            n += deleteChunk(ids.subList(i, Math.min(ids.size(), i + ID_CHUNK)));
+        }
+        return n;
+    }
+
+    /** 永久刪除 (從垃圾桶拿掉，但 Home 還是不會出現)：一個交易。 */
+    @Transaction
+    default int purge(List<String> ids, long now) {
+        int n = 0;
+        for (int i = 0; i < ids.size(); i += ID_CHUNK) {
+            n += purgeChunk(ids.subList(i, Math.min(ids.size(), i + ID_CHUNK)), now);
+        }
+        return n;
+    }
+
+    @Query("SELECT COUNT(*) FROM dislikes WHERE purged_at IS NULL")
+    LiveData<Integer> observeTrashCount();
+
+    /** 垃圾桶第一頁 (最新的在前)。 */
+    @Query("SELECT x.store_id, x.disliked_at, s.* FROM dislikes x LEFT JOIN stores s ON s.id = x.store_id "
+            + "WHERE x.purged_at IS NULL "
+            + "ORDER BY x.disliked_at DESC, x.store_id DESC LIMIT :limit")
+    List<DislikeRow> first(int limit);
+
+    /** (dislikedAt, storeId) 之後 (比較舊) 的 limit 筆；inclusive = true 時包含它本身。 */
+    @Query("SELECT x.store_id, x.disliked_at, s.* FROM dislikes x LEFT JOIN stores s ON s.id = x.store_id "
+            + "WHERE x.purged_at IS NULL AND (x.disliked_at < :dislikedAt "
+            + "OR (x.disliked_at = :dislikedAt AND (x.store_id < :storeId OR (:inclusive AND x.store_id = :storeId)))) "
+            + "ORDER BY x.disliked_at DESC, x.store_id DESC LIMIT :limit")
+    List<DislikeRow> after(long dislikedAt, String storeId, boolean inclusive, int limit);
+
+    /** (dislikedAt, storeId) 之前 (比較新) 的 limit 筆，由近到遠 (呼叫端要自己反轉成正常順序)。 */
+    @Query("SELECT x.store_id, x.disliked_at, s.* FROM dislikes x LEFT JOIN stores s ON s.id = x.store_id "
+            + "WHERE x.purged_at IS NULL AND (x.disliked_at > :dislikedAt "
+            + "OR (x.disliked_at = :dislikedAt AND x.store_id > :storeId)) "
+            + "ORDER BY x.disliked_at, x.store_id LIMIT :limit")
+    List<DislikeRow> before(long dislikedAt, String storeId, int limit);
+}
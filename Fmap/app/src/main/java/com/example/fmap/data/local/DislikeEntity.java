@@ -0,0 +1,40 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * 使用者「不喜歡」的店：一家店一列，主鍵是 store_id。
+ *
+ * - disliked_at：滑掉的時間 (毫秒)，垃圾桶照它由新到舊排。
+ * - purged_at：在垃圾桶按「永久刪除」的時間；不是 null 的不會出現在垃圾桶，但 Home 還是一樣排除它。
+ *
+ * Home 的查詢直接用 NOT EXISTS 跟這張表比對 (見 StoreDao)，不用把整份 id 讀進記憶體；
+ * (purged_at, disliked_at, store_id) 有索引，垃圾桶翻頁用 keyset 條件。
+ */
+@Entity(tableName = "dislikes",
+        primaryKeys = {"store_id"},
+        indices = {@Index(value = {"purged_at", "disliked_at", "store_id"})})
+public class DislikeEntity {
+
+    @NonNull
+    @ColumnInfo(name = "store_id")
+    public String storeId = "";
+
+    @ColumnInfo(name = "disliked_at")
+    public long dislikedAt;
+
+    @Nullable
+    @ColumnInfo(name = "purged_at")
+    public Long purgedAt;
+
+    public DislikeEntity() {}
+
+    public DislikeEntity(@NonNull String storeId, long dislikedAt) {
+        this.storeId = storeId;
+        this.dislikedAt = dislikedAt;
+    }
+}
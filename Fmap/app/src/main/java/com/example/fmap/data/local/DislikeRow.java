@@ -0,0 +1,22 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+
+/**
+ * 垃圾桶的一列：不喜歡的資料 + 目錄裡的店家資料 (LEFT JOIN；店家已經不在目錄裡時 store 是 null)。
+ */
+public class DislikeRow {
+    @NonNull
+    @ColumnInfo(name = "store_id")
+    public String storeId = "";
+
+    @ColumnInfo(name = "disliked_at")
+    public long dislikedAt;
+
+    @Nullable
+    @Embedded
+    public StoreEntity store;
+}
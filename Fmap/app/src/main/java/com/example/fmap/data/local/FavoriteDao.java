@@ -0,0 +1,58 @@
+package com.example.fmap.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * favorites 的管家。每個操作只碰到相關的那幾列 (主鍵 / (added_at, store_id) 索引)，
+ * 成本不會隨收藏數量變大；observe* 回傳的 LiveData 在 favorites 有寫入時會自動重查。
+ *
+ * 店家內容一律在同一個查詢裡跟 stores JOIN (用 stores 的主鍵)，不會一筆一筆去查；
+ * 翻頁跟 Home 牌堆 (HomeDeckPagingSource) 一樣用 keyset，不用 OFFSET。
+ */
+@Dao
+public interface FavoriteDao {
+
+    @Query("SELECT f.store_id, f.added_at, s.* FROM favorites f LEFT JOIN stores s ON s.id = f.store_id "
+            + "ORDER BY f.added_at, f.store_id")
+    List<FavoriteRow> getAll();
+
+    @Query("SELECT store_id FROM favorites ORDER BY added_at, store_id")
+    List<String> getIds();
+
+    @Query("SELECT EXISTS(SELECT 1 FROM favorites WHERE store_id = :storeId)")
+    boolean contains(String storeId);
+
+    @Query("SELECT COUNT(*) FROM favorites")
+    LiveData<Integer> observeCount();
+
+    /** 已經收藏過的不動 (保留原本的 added_at)。 */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertIgnore(List<FavoriteEntity> rows);
+
+    @Query("DELETE FROM favorites WHERE store_id = :storeId")
+    int remove(String storeId);
+
+    /** 第一頁。 */
+    @Query("SELECT f.store_id, f.added_at, s.* FROM favorites f LEFT JOIN stores s ON s.id = f.store_id "
+            + "ORDER BY f.added_at, f.store_id LIMIT :limit")
+    List<FavoriteRow> first(int limit);
+
+    /** (addedAt, storeId) 之後的 limit 筆；inclusive = true 時包含 (addedAt, storeId) 本身。 */
+    @Query("SELECT f.store_id, f.added_at, s.* FROM favorites f LEFT JOIN stores s ON s.id = f.store_id "
+            + "WHERE f.added_at > :addedAt "
+            + "OR (f.added_at = :addedAt AND (f.store_id > :storeId OR (:inclusive AND f.store_id = :storeId))) "
+            + "ORDER BY f.added_at, f.store_id LIMIT :limit")
+    List<FavoriteRow> after(long addedAt, String storeId, boolean inclusive, int limit);
+
+    /** (addedAt, storeId) 之前的 limit 筆，由近到遠 (呼叫端要自己反轉成正常順序)。 */
+    @Query("SELECT f.store_id, f.added_at, s.* FROM favorites f LEFT JOIN stores s ON s.id = f.store_id "
+            + "WHERE f.added_at < :addedAt OR (f.added_at = :addedAt AND f.store_id < :storeId) "
+            + "ORDER BY f.added_at DESC, f.store_id DESC LIMIT :limit")
+    List<FavoriteRow> before(long addedAt, String storeId, int limit);
+}
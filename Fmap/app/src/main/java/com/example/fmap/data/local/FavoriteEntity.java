@@ -0,0 +1,33 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * 使用者的收藏：一家店一列，主鍵就是 store_id，所以「有沒有收藏」是一次主鍵查詢。
+ * 只存 id 和使用者自己的資料 (收藏時間 added_at)；店家內容顯示時才跟 stores JOIN 讀
+ * (見 FavoriteDao / FavoritesPagingSource)，目錄更新了收藏頁也會跟著是最新的。
+ *
+ * 排序是 (added_at, store_id) 由小到大 (先收藏的在前面)，有索引，翻頁用 keyset 條件。
+ */
+@Entity(tableName = "favorites",
+        primaryKeys = {"store_id"},
+        indices = {@Index(value = {"added_at", "store_id"})})
+public class FavoriteEntity {
+
+    @NonNull
+    @ColumnInfo(name = "store_id")
+    public String storeId = "";
+
+    @ColumnInfo(name = "added_at")
+    public long addedAt;
+
+    public FavoriteEntity() {}
+
+    public FavoriteEntity(@NonNull String storeId, long addedAt) {
+        this.storeId = storeId;
+        this.addedAt = addedAt;
+    }
+}
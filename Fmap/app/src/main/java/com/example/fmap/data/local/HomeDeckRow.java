@@ -0,0 +1,15 @@
+package com.example.fmap.data.local;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+
+/**
+ * 牌堆的一列：店家資料 + 它在牌堆裡的 sort_key (StoreFilter 算的，翻下一頁的 keyset 要用)。
+ */
+public class HomeDeckRow {
+    @Embedded
+    public StoreEntity store;
+
+    @ColumnInfo(name = "sort_key")
+    public double sortKey;
+}
@@ -0,0 +1,257 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * 資料庫的升級規則。
+ * 每次修改資料表結構 (StoreDatabase 的 version +1)，都要在這裡加一個對應的 Migration，
+ * 並放進 ALL，這樣使用者升級 App 時資料會保留，不會被整個清空。
+ * 注意：這裡的 SQL 必須跟 Room 自己產生的 (app/schemas/... 的 createSql) 完全一致，否則開啟時會驗證失敗。
+ */
+public final class Migrations {
+
+    private Migrations() {}
+
+    /** v1 → v2：店家加上內容雜湊 content_hash，新增 catalog_meta 記錄目錄版本 (增量同步用)。 */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            // 舊資料的雜湊是 NULL，第一次同步時會被視為「有變動」而整筆更新一次
+            db.execSQL("ALTER TABLE `stores` ADD COLUMN `content_hash` TEXT");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `catalog_meta` (`key` TEXT NOT NULL, `value` TEXT, PRIMARY KEY(`key`))");
+        }
+    };
+
+    /**
+     * v2 → v3：店家加上 menu_groups，新增全文檢索表 stores_fts。
+     * 全文檢索的內容由 StoreMappers.MAPPING_VERSION 升版觸發的同步重新寫入，這裡只建空表。
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `stores` ADD COLUMN `menu_groups` TEXT");
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `stores_fts` USING FTS4("
+                    + "`store_id` TEXT NOT NULL, `name` TEXT, `address` TEXT, `category` TEXT, `tags` TEXT, `menu` TEXT, "
+                    + "notindexed=`store_id`)");
+        }
+    };
+
+    /**
+     * v3 → v4：店家加上 services，新增分類 / 標籤 / 服務的關聯表 store_terms。
+     * 關聯表的內容一樣由 MAPPING_VERSION 升版觸發的同步寫入。
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `stores` ADD COLUMN `services` TEXT");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `store_terms` (`store_id` TEXT NOT NULL, `kind` TEXT NOT NULL, "
+                    + "`term` TEXT NOT NULL, PRIMARY KEY(`kind`, `term`, `store_id`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_store_terms_store_id` ON `store_terms` (`store_id`)");
+        }
+    };
+
+    /**
+     * v4 → v5：新增字典表 term_dict 和店家的分類遮罩 category_mask。
+     * 遮罩由 MAPPING_VERSION 升版觸發的同步填入。
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `stores` ADD COLUMN `category_mask` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `term_dict` (`kind` TEXT NOT NULL, `term` TEXT NOT NULL, "
+                    + "`id` INTEGER NOT NULL, PRIMARY KEY(`kind`, `term`))");
+        }
+    };
+
+    /**
+     * v5 → v6：店家加上正規化過的影子欄位 (name_norm / tags_norm / menu_norm)，店名建索引。
+     * 欄位內容由 MAPPING_VERSION 升版觸發的同步寫入。
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `stores` ADD COLUMN `name_norm` TEXT");
+            db.execSQL("ALTER TABLE `stores` ADD COLUMN `tags_norm` TEXT");
+            db.execSQL("ALTER TABLE `stores` ADD COLUMN `menu_norm` TEXT");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_stores_name_norm` ON `stores` (`name_norm`)");
+        }
+    };
+
+    /**
+     * v6 → v7：List / Map 欄位從 JSON 文字改成二進位 (見 Converters、BinaryCodec)，欄位型別由 TEXT 改成 BLOB。
+     * SQLite 不能直接改欄位型別，只能「建新表 → 複製資料 → 刪舊表 → 改名」。
+     * 複製過來的還是 JSON 內容，Converters 讀得懂；MAPPING_VERSION 升版觸發的同步會把它們全部改寫成二進位。
+     * 複製時要 CAST 成 BLOB：直接 INSERT … SELECT 的話值的型別還是 TEXT (欄位型別只是 affinity)，
+     * Android 用 getBlob 讀 TEXT 會多帶一個結尾的 \0，Gson 就解不動了。
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `stores_new` (`id` TEXT NOT NULL, `store_name` TEXT, `rating` REAL, "
+                    + "`address` TEXT, `phone` TEXT, `lat` REAL NOT NULL, `lng` REAL NOT NULL, `image_url` TEXT, "
+                    + "`phone_display` TEXT, `category` BLOB, `tags` BLOB, `services` BLOB, "
+                    + "`category_mask` INTEGER NOT NULL DEFAULT 0, `menuItems` BLOB, `menu_groups` BLOB, "
+                    + "`price_range` BLOB, `business_hours` BLOB, `content_hash` TEXT, `name_norm` TEXT, "
+                    + "`tags_norm` BLOB, `menu_norm` BLOB, PRIMARY KEY(`id`))");
+            String columns = "`id`, `store_name`, `rating`, `address`, `phone`, `lat`, `lng`, `image_url`, "
+                    + "`phone_display`, `category`, `tags`, `services`, `category_mask`, `menuItems`, `menu_groups`, "
+                    + "`price_range`, `business_hours`, `content_hash`, `name_norm`, `tags_norm`, `menu_norm`";
+            String values = "`id`, `store_name`, `rating`, `address`, `phone`, `lat`, `lng`, `image_url`, "
+                    + "`phone_display`, CAST(`category` AS BLOB), CAST(`tags` AS BLOB), CAST(`services` AS BLOB), "
+                    + "`category_mask`, CAST(`menuItems` AS BLOB), CAST(`menu_groups` AS BLOB), "
+                    + "CAST(`price_range` AS BLOB), CAST(`business_hours` AS BLOB), `content_hash`, `name_norm`, "
+                    + "CAST(`tags_norm` AS BLOB), CAST(`menu_norm` AS BLOB)";
+            db.execSQL("INSERT INTO `stores_new` (" + columns + ") SELECT " + values + " FROM `stores`");
+            db.execSQL("DROP TABLE `stores`");
+            db.execSQL("ALTER TABLE `stores_new` RENAME TO `stores`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_stores_name_norm` ON `stores` (`name_norm`)");
+        }
+    };
+
+    /**
+     * v7 → v8：新增營業時段表 store_hours (一週中的第幾分鐘)，給「現在有開 / 某個時間有開」的查詢用。
+     * 內容由 MAPPING_VERSION 升版觸發的同步寫入。
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `store_hours` (`store_id` TEXT NOT NULL, `start_min` INTEGER NOT NULL, "
+                    + "`end_min` INTEGER NOT NULL, PRIMARY KEY(`store_id`, `start_min`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_store_hours_start_min_end_min_store_id` "
+                    + "ON `store_hours` (`start_min`, `end_min`, `store_id`)");
+        }
+    };
+
+    /**
+     * v8 → v9：stores 的 (lat, lng) 索引，地圖矩形範圍查詢的備援路徑用。
+     * R*Tree (store_geo) 不是 Room 管的表，由 StoreGeoIndex 在開啟資料庫時建立。
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_stores_lat_lng` ON `stores` (`lat`, `lng`)");
+        }
+    };
+
+    /**
+     * 9 → 10：stores 多一個 geohash 欄位 (附近 N 公里的候選查詢)。
+     * 舊資料的 geohash 是 null，StoreMappers.MAPPING_VERSION 也一起 +1，下次同步會整批重寫補上。
+     */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `stores` ADD COLUMN `geohash` TEXT");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_stores_geohash` ON `stores` (`geohash`)");
+        }
+    };
+
+    /** 10 → 11：新增 Home 卡片牌堆 home_deck (篩選結果的 id + 排序鍵，翻頁用 keyset)。 */
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `home_deck` (`store_id` TEXT NOT NULL, "
+                    + "`sort_key` REAL NOT NULL, PRIMARY KEY(`store_id`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_home_deck_sort_key_store_id` "
+                    + "ON `home_deck` (`sort_key`, `store_id`)");
+        }
+    };
+
+    /**
+     * v11 → v12：新增收藏表 favorites (原本是 SharedPreferences 裡的一整串 JSON)。
+     * 舊的收藏由 FavoritesStore 第一次使用時搬進來 (搬完刪掉 prefs 的 key)，這裡只建空表。
+     */
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `favorites` (`store_id` TEXT NOT NULL, "
+                    + "`added_at` INTEGER NOT NULL, `place_json` TEXT, PRIMARY KEY(`store_id`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_favorites_added_at` ON `favorites` (`added_at`)");
+        }
+    };
+
+    /**
+     * v12 → v13：favorites 只留 id 和收藏時間 (拿掉 place_json 店家快照，顯示時改跟 stores JOIN)，
+     * 索引改成 (added_at, store_id) 給 keyset 翻頁用。SQLite 舊版本不能 DROP COLUMN，整張表重建。
+     */
+    static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `favorites_new` (`store_id` TEXT NOT NULL, "
+                    + "`added_at` INTEGER NOT NULL, PRIMARY KEY(`store_id`))");
+            db.execSQL("INSERT INTO `favorites_new` (`store_id`, `added_at`) SELECT `store_id`, `added_at` FROM `favorites`");
+            db.execSQL("DROP TABLE `favorites`");
+            db.execSQL("ALTER TABLE `favorites_new` RENAME TO `favorites`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_favorites_added_at_store_id` "
+                    + "ON `favorites` (`added_at`, `store_id`)");
+        }
+    };
+
+    /**
+     * v13 → v14：新增不喜歡表 dislikes (原本是 SharedPreferences 的 StringSet)。
+     * 舊資料由 DislikesStore 第一次使用時搬進來，這裡只建空表。
+     */
+    static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `dislikes` (`store_id` TEXT NOT NULL, "
+                    + "`disliked_at` INTEGER NOT NULL, `purged_at` INTEGER, PRIMARY KEY(`store_id`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_dislikes_purged_at_disliked_at_store_id` "
+                    + "ON `dislikes` (`purged_at`, `disliked_at`, `store_id`)");
+        }
+    };
+
+    /** v14 → v15：新增使用者動作日誌 user_actions (只會往後加，見 UserActionJournal)。 */
+    static final Migration MIGRATION_14_15 = new Migration(14, 15) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `user_actions` (`seq` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`store_id` TEXT NOT NULL, `action` TEXT NOT NULL, `at` INTEGER NOT NULL)");
+        }
+    };
+
+    /**
+     * v15 → v16：拿掉 Home 卡片牌堆 home_deck。牌堆改成直接對 stores 下篩選條件翻頁 (見 StoreFilter)，
+     * 不用再把整份篩選結果寫進一張表。
+     */
+    static final Migration MIGRATION_15_16 = new Migration(15, 16) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DROP TABLE IF EXISTS `home_deck`");
+        }
+    };
+
+    /**
+     * v16 → v17：店家加上 rating_rank (= -評分) 和 (rating_rank, id) 索引，牌堆依評分翻頁時走索引。
+     * 值可以直接從 rating 算出來，這裡就補好，不用等目錄同步。
+     */
+    static final Migration MIGRATION_16_17 = new Migration(16, 17) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `stores` ADD COLUMN `rating_rank` REAL NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE `stores` SET `rating_rank` = -IFNULL(`rating`, 0)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_stores_rating_rank_id` ON `stores` (`rating_rank`, `id`)");
+        }
+    };
+
+    /** 所有升級規則，依版本順序排列。 */
+    static final Migration[] ALL = {
+            MIGRATION_1_2,
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8,
+            MIGRATION_8_9,
+            MIGRATION_9_10,
+            MIGRATION_10_11,
+            MIGRATION_11_12,
+            MIGRATION_12_13,
+            MIGRATION_13_14,
+            MIGRATION_14_15,
+            MIGRATION_15_16,
+            MIGRATION_16_17,
+    };
+}
@@ -0,0 +1,12 @@
+package com.example.fmap.data.local;
+
+/**
+ * 一組店家的數量和座標範圍 (見 StoreFilter.resultBounds)；count = 0 時範圍沒有意義。
+ */
+public class StoreBounds {
+    public int count;
+    public double south;
+    public double west;
+    public double north;
+    public double east;
+}
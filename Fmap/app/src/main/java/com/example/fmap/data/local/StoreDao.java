@@ -3,7 +3,11 @@ package com.example.fmap.data.local;
 import androidx.room.Dao;import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
+import androidx.room.Transaction;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -29,24 +33,6 @@ public interface StoreDao {
     @Query("SELECT COUNT(*) FROM stores")
     int count();
 
-    /**
-     * 這個方法會直接執行搜尋，然後立刻回傳一個 List<StoreEntity> 結果。
-     * 適合用在不需要即時更新畫面的地方。
-     *
-     * @param keyword  搜尋關鍵字 (店名或地址)
-     * @param category 分類關鍵字 (日式、火鍋...)
-     * @param catCount 分類數量 (如果為 0，就忽略分類條件)
-     * @param dishLike 喜歡的菜色關鍵字
-     * @param priceEq  價位關鍵字
-     * @return 符合所有條件的店家清單。
-     */
-    @Query("SELECT * FROM stores WHERE " +
-            "(:keyword = '' OR store_name LIKE '%' || :keyword || '%' OR address LIKE '%' || :keyword || '%') AND " +
-            "(:catCount = 0 OR category LIKE '%' || :category || '%') AND " +
-            "(:dishLike = '' OR menuItems LIKE '%' || :dishLike || '%') AND " +
-            "(:priceEq = '' OR price_range LIKE '%' || :priceEq || '%')")
-    List<StoreEntity> searchAdvancedBlocking(String keyword, String category, int catCount, String dishLike, String priceEq);
-
     /**
      * 用 ID 列表查詢多家店。
      * 你給它一個 ID 清單 (例如 ["id1", "id2"])，它會回傳這些店家的完整資料。
@@ -54,13 +40,125 @@ public interface StoreDao {
     @Query("SELECT * FROM stores WHERE id IN (:ids)")
     List<StoreEntity> getByIdsBlocking(List<String> ids);
 
-    // 模糊搜尋（名稱 / 地址 / 分類字串），分類參數可留空
-    @Query("SELECT * FROM stores WHERE store_name LIKE :pattern OR address LIKE :pattern")
-    List<StoreEntity> searchFuzzy(String pattern);
+    /** 全文檢索命中幾家 (最多數到 limit 就停)。 */
+    @Query("SELECT COUNT(*) FROM (SELECT 1 FROM stores_fts WHERE stores_fts MATCH :match LIMIT :limit)")
+    int countFtsUpTo(String match, int limit);
+
+    /**
+     * 「這家店沒有被使用者標成不喜歡」的 SQL 條件 (dislikes 的主鍵查詢，不用先把 id 讀出來)。
+     * Home 的查詢用它直接在資料庫裡排除不喜歡的店。
+     */
+    String NOT_DISLIKED = "NOT EXISTS (SELECT 1 FROM dislikes x WHERE x.store_id = stores.id)";
+
+    /** 「這家店沒有被收藏」的 SQL 條件 (favorites 的主鍵查詢)，Home 的篩選條件 (StoreFilter) 用。 */
+    String NOT_FAVORITE = "NOT EXISTS (SELECT 1 FROM favorites f WHERE f.store_id = stores.id)";
+
+    /** 模糊搜尋索引用：全部店家的名稱 / 標籤 / 菜單。 */
+    @Query("SELECT id, name_norm, tags_norm, menu_norm FROM stores")
+    List<StoreSearchFields> getSearchFields();
+
+    /** 模糊搜尋索引用：只取指定店家 (增量更新)。一次不要超過 SQLite 的參數上限 (999)。 */
+    @Query("SELECT id, name_norm, tags_norm, menu_norm FROM stores WHERE id IN (:ids)")
+    List<StoreSearchFields> getSearchFieldsByIds(List<String> ids);
+
+    /**
+     * 店名前綴查詢：name_norm 介於 [lo, hi) 之間的店 (hi 用 TextNormalizer.prefixUpperBound 算)。
+     * 寫成範圍條件而不是 LIKE 'x%'，才會走 index_stores_name_norm 做範圍掃描。
+     */
+    @Query("SELECT id FROM stores WHERE name_norm >= :lo AND name_norm < :hi ORDER BY name_norm LIMIT :limit")
+    List<String> getIdsByNamePrefix(String lo, String hi, int limit);
+
+    /** 只取出這批店的 id 和內容雜湊，給增量同步逐批比對用。一次不要超過 SQLite 的參數上限 (999)。 */
+    @Query("SELECT id, content_hash FROM stores WHERE id IN (:ids)")
+    List<StoreHash> getContentHashesByIds(List<String> ids);
+
+    /** 刪除一批店家 (目錄裡已經沒有的店)。一次不要超過 SQLite 的參數上限 (999)。 */
+    @Query("DELETE FROM stores WHERE id IN (:ids)")
+    int deleteByIds(List<String> ids);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertFts(List<StoreFtsEntity> rows);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertTerms(List<StoreTermEntity> rows);
+
+    @Query("DELETE FROM store_terms WHERE store_id IN (:ids)")
+    void deleteTermsByStoreIds(List<String> ids);
 
-    @Query("SELECT * FROM stores WHERE store_name LIKE :pattern OR address LIKE :pattern")
-    List<StoreEntity> searchByNameOrAddressFuzzy(String pattern);
+    /** 查字典：已正規化的值 → id (不存在的值不會出現在結果裡)。 */
+    @Query("SELECT id FROM term_dict WHERE kind = :kind AND term IN (:terms)")
+    List<Integer> getTermIds(String kind, List<String> terms);
+
+    @Query("SELECT * FROM term_dict")
+    List<TermDictEntity> getTermDict();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertTermDict(List<TermDictEntity> rows);
+
+    @Query("DELETE FROM stores_fts WHERE rowid IN (:rowids)")
+    void deleteFtsByRowIds(List<Long> rowids);
+
+    // --- 地圖範圍查詢 ---
+
+    /**
+     * 給 StoreFilter.inBounds 用：條件是執行時才組出來的，而且 rtree 虛擬表 (StoreGeoIndex) Room 不認得，只能走 RawQuery。
+     */
+    @RawQuery
+    List<StoreEntity> getStoresByRawQuery(SupportSQLiteQuery query);
+
+    /** 給 StoreFilter.deckFirst / deckAfter / deckBefore 用 (Home 牌堆翻頁)。 */
+    @RawQuery
+    List<HomeDeckRow> getDeckByRawQuery(SupportSQLiteQuery query);
+
+    /** 給 StoreFilter.locations 用。 */
+    @RawQuery
+    List<StoreLocation> getLocationsByRawQuery(SupportSQLiteQuery query);
+
+    /** 給 StoreFilter.resultBounds 用。 */
+    @RawQuery
+    StoreBounds getBoundsByRawQuery(SupportSQLiteQuery query);
+
+    /** 一家店的座標 (地圖聚焦用)；找不到回傳 null。 */
+    @Query("SELECT id, lat, lng FROM stores WHERE id = :id")
+    StoreLocation getLocation(String id);
+
+    // --- 營業時段 (store_hours) ---
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertHours(List<StoreHoursEntity> hours);
+
+    @Query("DELETE FROM store_hours WHERE store_id IN (:ids)")
+    void deleteHoursByStoreIds(List<String> ids);
+
+    /**
+     * 寫入 (或覆蓋) 一批店家，同時更新字典、分類遮罩、全文檢索列、分類 / 標籤 / 服務關聯和營業時段。
+     * 寫店家請一律用這個方法，stores、stores_fts、store_terms、store_hours 才不會不同步。
+     * 一次不要超過 SQLite 的參數上限 (999) 家。
+     */
+    @Transaction
+    default void upsertStores(List<StoreEntity> stores) {
+        List<String> ids = new ArrayList<>(stores.size());
+        for (StoreEntity e : stores) ids.add(e.id);
+        // 幫新出現的分類 / 標籤分配字典 id，並算好每家店的 category_mask
+        TermDictionary dict = new TermDictionary(getTermDict());
+        dict.apply(stores);
+        insertTermDict(dict.drainNew());
+        insertAll(stores);
+        insertFts(StoreMappers.toFtsList(stores));
+        deleteTermsByStoreIds(ids); // 先清掉舊的關聯，被拿掉的分類才不會留著
+        insertTerms(StoreMappers.toTermsList(stores));
+        deleteHoursByStoreIds(ids);
+        insertHours(StoreMappers.toHoursList(stores));
+    }
 
-    @Query("SELECT * FROM stores")
-    List<StoreEntity> getAll();
+    /** 刪除一批店家 (連同全文檢索列、關聯和營業時段)，回傳刪除筆數。一次不要超過 SQLite 的參數上限 (999)。 */
+    @Transaction
+    default int deleteStores(List<String> ids) {
+        List<Long> rowids = new ArrayList<>(ids.size());
+        for (String id : ids) rowids.add(StoreMappers.ftsRowId(id));
+        deleteFtsByRowIds(rowids);
+        deleteTermsByStoreIds(ids);
+        deleteHoursByStoreIds(ids);
+        return deleteByIds(ids);
+    }
 }
@@ -6,20 +6,37 @@ import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
  * @TypeConverters({Converters.class}): 告訴資料庫，要使用我們寫好的「翻譯官」(Converters.java)。
  * @Database(...): 告訴 Room 這是資料庫的藍圖。
- *   - entities = {StoreEntity.class}: 這個資料庫裡包含「店家資料表」。
- *   - version = 1: 資料庫的版本號，如果未來修改資料表結構，需要增加這個數字。
+ *   - entities = {...}: 這個資料庫裡包含「店家資料表」、全文檢索表 stores_fts、
+ *     分類 / 標籤關聯表 store_terms、字典 term_dict、營業時段表 store_hours、記錄目錄版本的 catalog_meta、
+ *     使用者的收藏 favorites、不喜歡 dislikes 和動作日誌 user_actions。
+ *   - version = 17: 資料庫的版本號，如果未來修改資料表結構，需要增加這個數字 (並在 Migrations 加升級規則)。
+ *   - exportSchema = true: 編譯時把資料表結構匯出到 app/schemas，建置時的 CatalogCompiler 會照它產生預建資料庫。
  */
 @TypeConverters({Converters.class})
-@Database(entities = {StoreEntity.class}, version = 1, exportSchema = false)
+@Database(entities = {StoreEntity.class, StoreFtsEntity.class, StoreTermEntity.class, TermDictEntity.class,
+        StoreHoursEntity.class, CatalogMetaEntity.class,
+        FavoriteEntity.class, DislikeEntity.class, UserActionEntity.class}, version = 17, exportSchema = true)
 public abstract class StoreDatabase extends RoomDatabase {
 
+    /**
+     * 建置時預先編譯好的資料庫 (由 Gradle task prebuild<Variant>StoreDatabase 產生)。
+     * 有這個檔案時，第一次開啟資料庫會直接複製它，完全不用在手機上解析 JSON。
+     */
+    static final String PREBUILT_ASSET = "databases/stores_prebuilt.db";
+
     public abstract StoreDao storeDao();
+    public abstract CatalogMetaDao catalogMetaDao();
+    public abstract FavoriteDao favoriteDao();
+    public abstract DislikeDao dislikeDao();
+    public abstract UserActionDao userActionDao();
     private static volatile StoreDatabase INSTANCE;
     private static final int NUMBER_OF_THREADS = 4;
     public static final ExecutorService databaseWriteExecutor =
@@ -42,10 +59,21 @@ public abstract class StoreDatabase extends RoomDatabase {
                 // 第二次檢查：進來後再檢查一次，可能在等待鎖的時候，別的執行緒已經建立好了。
                 if (INSTANCE == null) {
                     // 真的確定沒有，才開始建立新的資料庫實例。
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                                    StoreDatabase.class, "store_database")
-                            // 如果資料庫版本升級，但沒有提供升級規則，就清空舊資料重建。
-                            .fallbackToDestructiveMigration()
+                    Context appCtx = context.getApplicationContext();
+                    RoomDatabase.Builder<StoreDatabase> builder =
+                            Room.databaseBuilder(appCtx, StoreDatabase.class, "store_database");
+                    // 有預建資料庫就從它開始；沒有 (例如沒跑 Gradle task) 就建空資料庫，
+                    // 之後由 StoresRepository.initFromAssets 從 JSON 匯入 (備援路徑)。
+                    if (hasPrebuiltAsset(appCtx)) {
+                        builder.createFromAsset(PREBUILT_ASSET);
+                    }
+                    INSTANCE = builder
+                            // 版本升級一律走 Migrations 裡的規則，保留使用者的資料；
+                            // 只有「降版」(裝回舊版 App) 才清空重建。
+                            .addMigrations(Migrations.ALL)
+                            .fallbackToDestructiveMigrationOnDowngrade()
+                            // 每次開啟時確認地圖用的 R*Tree 空間索引 (store_geo) 已經建好
+                            .addCallback(StoreGeoIndex.CALLBACK)
                             .build();
                 }
             }
@@ -53,4 +81,13 @@ public abstract class StoreDatabase extends RoomDatabase {
         // 回傳這個得來不易的唯一實例。
         return INSTANCE;
     }
+
+    /** 檢查 APK 裡有沒有預建資料庫。 */
+    private static boolean hasPrebuiltAsset(Context ctx) {
+        try (InputStream ignored = ctx.getAssets().open(PREBUILT_ASSET)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
 }
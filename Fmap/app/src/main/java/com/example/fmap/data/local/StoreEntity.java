@@ -3,6 +3,7 @@ package com.example.fmap.data.local;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import java.util.List;
 import java.util.Map;
@@ -10,8 +11,13 @@ import java.util.Map;
 /**
  * @Entity(tableName = "stores"): 告訴 Room，這是一個資料庫的實體。
  *                            並指定它對應的資料庫表格名稱為 "stores"。
+ * indices: name_norm 建索引，店名前綴查詢 (StoreDao.getIdsByNamePrefix) 直接走索引範圍掃描；
+ *          (lat, lng) 建索引，裝置不支援 R*Tree 時地圖的矩形範圍查詢靠它 (見 StoreGeoIndex)；
+ *          geohash 建索引，「附近 N 公里」用前綴做範圍查詢 (StoreFilter.near)；
+ *          (rating_rank, id) 建索引，Home 牌堆依評分翻頁時直接沿著索引往下讀 (StoreFilter.deck*)。
  */
-@Entity(tableName = "stores")
+@Entity(tableName = "stores", indices = {@Index("name_norm"), @Index(value = {"lat", "lng"}), @Index("geohash"),
+        @Index(value = {"rating_rank", "id"})})
 public class StoreEntity {
 
     /**
@@ -42,11 +48,23 @@ public class StoreEntity {
     @ColumnInfo(name = "phone_display")
     public String phoneDisplay; // 顯示用的電話號碼格式
 
-    // List<String> 翻譯成純文字。
+    // List<String> 翻譯成純文字 (只用來顯示；篩選請查 store_terms 關聯表)。
     public List<String> category;  // 分類 (例: ["日式", "拉麵"])
     public List<String> tags;      // 標籤 (例: ["寵物友善", "可外帶"])
+    public List<String> services;  // 服務 (例: ["內用", "外帶"])
+
+    /**
+     * 分類的位元遮罩：第 i 個位元 = 字典 (term_dict) 裡 id 為 i 的分類。
+     * 由 TermDictionary 在寫入時填好 (見 StoreDao.upsertStores)，篩選分類時直接用位元運算比對。
+     */
+    @ColumnInfo(name = "category_mask", defaultValue = "0")
+    public long categoryMask;
     public List<String> menuItems; // 菜單項目
 
+    // 分組菜單 {"分組名稱": ["品項"...]}，和 menuItems 一起放進全文檢索
+    @ColumnInfo(name = "menu_groups")
+    public Map<String, Object> menuGroups;
+
     // Map 翻譯成純文字。
     @ColumnInfo(name = "price_range")
     public Map<String, Object> priceRange; // 價位區間
@@ -54,6 +72,42 @@ public class StoreEntity {
     @ColumnInfo(name = "business_hours")
     public Map<String, Object> businessHours; // 營業時間
 
+    /**
+     * 這筆資料的內容雜湊 (由 StoreMappers.toEntity 計算)。
+     * 增量同步時拿來比對：雜湊一樣就代表資料沒變，不用重寫。
+     */
+    @ColumnInfo(name = "content_hash")
+    public String contentHash;
+
+    /*
+     * 正規化過的「影子欄位」(TextNormalizer.norm：去 BOM / 零寬字元、NFKC、轉小寫)。
+     * 由 StoreMappers.toEntity 在寫入時算好一次，搜尋時只要正規化使用者輸入的關鍵字就好，
+     * 不用每次查詢都把每一筆店家的每個欄位重新正規化。
+     * (分類 / 標籤 / 服務的篩選走 store_terms，那邊存的本來就是正規化後的值)
+     */
+    @ColumnInfo(name = "name_norm")
+    public String nameNorm;        // 店名
+
+    @ColumnInfo(name = "tags_norm")
+    public List<String> tagsNorm;  // 標籤
+
+    @ColumnInfo(name = "menu_norm")
+    public List<String> menuNorm;  // 菜單項目
+
+    /**
+     * 座標的 geohash (GeoHash.encode，長度 GeoHash.PRECISION)，由 StoreMappers.toEntity 算好。
+     * 沒有座標 (0, 0) 的店家是 null，不會出現在距離篩選的結果裡。
+     */
+    @ColumnInfo(name = "geohash")
+    public String geohash;
+
+    /**
+     * 依評分排序用的鍵 = -評分 (沒有評分當 0 分)，由小到大就是評分由高到低。
+     * 由 StoreMappers.toEntity 算好存起來，排序才能走索引，不用每次翻頁都把符合的店算一遍再排。
+     */
+    @ColumnInfo(name = "rating_rank", defaultValue = "0")
+    public double ratingRank;
+
     /**
      * Room 資料庫規定，每個 Entity 都必須有一個「沒有參數的建構子」。
      * 這樣 Room 才能在從資料庫讀取資料並建立物件時，正確地初始化它。
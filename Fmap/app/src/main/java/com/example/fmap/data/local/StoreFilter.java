@@ -0,0 +1,314 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import com.example.fmap.util.GeoHash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Home 的篩選條件 (分類、關鍵字、營業中、附近 N 公里、排除不喜歡 / 收藏 / 剛滑掉的)，
+ * 翻成一段對 stores 的 SQL WHERE 條件 + 參數，建好之後就不會再改。
+ *
+ * Home 牌堆和地圖都拿同一個 StoreFilter 直接查 stores：符合的店不用先全部讀出來，
+ * 牌堆一次只讀一頁 (deck*)、地圖只讀畫面範圍內的 (inBounds)；地圖分群只讀 id 和座標 (locations)。
+ * 條件用到的值 (分類遮罩、字典 id、模糊搜尋補上的 id、geohash 前綴) 由 StoresRepository.homeFilterBlocking 先查好。
+ *
+ * 排序鍵 sort_key (由小到大)：
+ * - 有位置時是距離的平方 (平方公里，用等距長方投影估算，幾十公里內跟實際距離差不到 1%)，沒有座標的店是 NO_DISTANCE；
+ * - 沒有位置時是 stores.rating_rank (= -評分，等於評分由高到低)。這是存起來的欄位，有 (rating_rank, id) 索引，
+ *   翻頁時 SQLite 直接從上一頁的最後一筆在索引上往下讀，讀滿一頁就停，不用先把所有符合的店排序。
+ * - 有關鍵字時前面再加上相關度的等級 (RELEVANCE_STEP 的倍數)：店名以關鍵字開頭 (0) → 全文檢索命中 (1)
+ *   → 只靠模糊搜尋補上的 (2)，同一級裡才照上面的距離 / 評分排。
+ *   全文檢索的 matchinfo 分數 (欄位加權) 要把所有命中讀出來在 Java 裡算，沒辦法放進一頁一頁讀的 SQL 排序，
+ *   所以同一級裡不再細分；Android 的 FTS4 也沒有 bm25 可以用。
+ * 翻頁用 (sort_key, id) 的 keyset，不用 OFFSET。
+ * 距離和相關度是依「目前的位置 / 關鍵字」當場算的，沒辦法建索引：這兩種情況每一頁都要把符合條件的店
+ * 算一遍再排序，成本跟符合的店數 (N log N) 成正比，只是不用整份讀出來。設了半徑或關鍵字時符合的店通常不多。
+ */
+public final class StoreFilter {
+
+    /** 沒有座標 (算不出距離) 的店的 sort_key，排在最後 (比地球上任兩點距離的平方都大)。 */
+    public static final double NO_DISTANCE = 1e12;
+
+    /** 相關度每差一級，sort_key 差這麼多 (比任何距離的平方 / 評分都大，同一級裡的順序不受影響)。 */
+    static final double RELEVANCE_STEP = 1e13;
+
+    /** 不可能有店符合 (例如 ALL 模式下選了字典裡沒有的分類)。 */
+    public static final StoreFilter NONE = new StoreFilter("0", new Object[0], "0", new Object[0]);
+
+    private final String where;
+    private final Object[] whereArgs;
+    private final String sortKey;
+    private final Object[] sortArgs;
+
+    private StoreFilter(String where, Object[] whereArgs, String sortKey, Object[] sortArgs) {
+        this.where = where;
+        this.whereArgs = whereArgs;
+        this.sortKey = sortKey;
+        this.sortArgs = sortArgs;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 再排除這些店 (還沒提交的滑動)；沒有要排除的就回傳自己。
+     * ids 很少 (動作日誌累積 MAX_BATCH 筆就會提交)，不會超過 SQLite 的參數上限。
+     */
+    @NonNull
+    public StoreFilter excluding(@Nullable Collection<String> ids) {
+        if (ids == null || ids.isEmpty() || this == NONE) return this;
+        Clause c = new Clause().and(where, whereArgs).and("stores.id NOT IN (" + placeholders(ids.size()) + ")",
+                ids.toArray());
+        return new StoreFilter(c.sql.toString(), c.args.toArray(), sortKey, sortArgs);
+    }
+
+    // --- Home 牌堆 (keyset 翻頁，依 sort_key, id 由小到大) ---
+
+    /** 第一頁。 */
+    public SupportSQLiteQuery deckFirst(int limit) {
+        return deck("1", new Object[0], "sort_key, id", limit);
+    }
+
+    /**
+     * (sortKey, storeId) 之後的 limit 筆；inclusive = true 時包含 (sortKey, storeId) 本身。
+     * 前面多一個 sort_key >= ? 的範圍條件 (意思不變)，SQLite 才會在 (rating_rank, id) 索引上直接跳到這個位置。
+     */
+    public SupportSQLiteQuery deckAfter(double sortKey, String storeId, boolean inclusive, int limit) {
+        return deck("sort_key >= ? AND (sort_key > ? OR (sort_key = ? AND (id > ? OR (? AND id = ?))))",
+                new Object[]{sortKey, sortKey, sortKey, storeId, inclusive ? 1 : 0, storeId},
+                "sort_key, id", limit);
+    }
+
+    /** (sortKey, storeId) 之前的 limit 筆，由近到遠 (呼叫端要自己反轉成正常順序)。範圍條件同 deckAfter。 */
+    public SupportSQLiteQuery deckBefore(double sortKey, String storeId, int limit) {
+        return deck("sort_key <= ? AND (sort_key < ? OR (sort_key = ? AND id < ?))",
+                new Object[]{sortKey, sortKey, sortKey, storeId},
+                "sort_key DESC, id DESC", limit);
+    }
+
+    private SupportSQLiteQuery deck(String keyset, Object[] keysetArgs, String order, int limit) {
+        Clause c = new Clause();
+        c.sql.append("SELECT * FROM (SELECT stores.*, ").append(sortKey).append(" AS sort_key FROM stores WHERE ")
+                .append(where).append(") WHERE ").append(keyset).append(" ORDER BY ").append(order).append(" LIMIT ?");
+        c.args.addAll(Arrays.asList(sortArgs));
+        c.args.addAll(Arrays.asList(whereArgs));
+        c.args.addAll(Arrays.asList(keysetArgs));
+        c.args.add(limit);
+        return c.query();
+    }
+
+    // --- 地圖 (畫面範圍) ---
+
+    /** 座標落在 [south, north] × [west, east] 之內、而且符合條件的店家，評分高的在前，最多 limit 家。west 必須 ≤ east。 */
+    public SupportSQLiteQuery inBounds(double south, double west, double north, double east, int limit) {
+        Clause c = bounds("stores.*", south, west, north, east);
+        c.sql.append(" ORDER BY stores.rating DESC LIMIT ?");
+        c.args.add(limit);
+        return c.query();
+    }
+
+    /**
+     * 符合條件、而且有座標的全部店家，只讀 id 和座標，不限筆數。
+     * 地圖分群用：同一組條件只讀一次、建一次 GridClusterIndex，之後拖動地圖不用再查。
+     */
+    public SupportSQLiteQuery locations() {
+        Clause c = new Clause();
+        c.sql.append("SELECT stores.id, stores.lat, stores.lng FROM stores ")
+                .append("WHERE NOT (stores.lat = 0 AND stores.lng = 0) AND ").append(where);
+        c.args.addAll(Arrays.asList(whereArgs));
+        return c.query();
+    }
+
+    /**
+     * 矩形範圍 + 條件。有 R*Tree (StoreGeoIndex) 就從 store_geo JOIN 回 stores (用 rowid)，
+     * 沒有就用 stores 的 (lat, lng) 索引。
+     */
+    private Clause bounds(String columns, double south, double west, double north, double east) {
+        Clause c = new Clause();
+        if (StoreGeoIndex.isAvailable()) {
+            c.sql.append("SELECT ").append(columns).append(" FROM ").append(StoreGeoIndex.TABLE)
+                    .append(" g JOIN stores ON stores.rowid = g.id ")
+                    .append("WHERE g.max_lat >= ? AND g.min_lat <= ? AND g.max_lng >= ? AND g.min_lng <= ?");
+        } else {
+            c.sql.append("SELECT ").append(columns).append(" FROM stores ")
+                    .append("WHERE stores.lat >= ? AND stores.lat <= ? AND stores.lng >= ? AND stores.lng <= ? ")
+                    .append("AND NOT (stores.lat = 0 AND stores.lng = 0)");
+        }
+        Collections.addAll(c.args, south, north, west, east);
+        c.sql.append(" AND ").append(where);
+        c.args.addAll(Arrays.asList(whereArgs));
+        return c;
+    }
+
+    /** 符合條件、而且有座標的店家的數量和範圍 (地圖「把鏡頭拉到全部結果」用)。 */
+    public SupportSQLiteQuery resultBounds() {
+        Clause c = new Clause();
+        c.sql.append("SELECT COUNT(*) AS count, MIN(stores.lat) AS south, MIN(stores.lng) AS west, ")
+                .append("MAX(stores.lat) AS north, MAX(stores.lng) AS east FROM stores ")
+                .append("WHERE NOT (stores.lat = 0 AND stores.lng = 0) AND ").append(where);
+        c.args.addAll(Arrays.asList(whereArgs));
+        return c.query();
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) sb.append(i == 0 ? "?" : ", ?");
+        return sb.toString();
+    }
+
+    /** 一段 SQL + 它的參數 (照出現順序)。 */
+    private static final class Clause {
+        final StringBuilder sql = new StringBuilder();
+        final List<Object> args = new ArrayList<>();
+
+        Clause and(String cond, Object... condArgs) {
+            if (sql.length() > 0) sql.append(" AND ");
+            sql.append('(').append(cond).append(')');
+            Collections.addAll(args, condArgs);
+            return this;
+        }
+
+        SupportSQLiteQuery query() {
+            return new SimpleSQLiteQuery(sql.toString(), args.toArray());
+        }
+    }
+
+    /**
+     * 一個條件一個方法，沒呼叫的就是不限；條件之間是 AND。
+     * 用到的字串一律當參數綁進去，不會拼進 SQL。
+     */
+    public static final class Builder {
+        private final Clause where = new Clause();
+        private String sortKey = "stores.rating_rank";
+        private Object[] sortArgs = new Object[0];
+        // 有關鍵字時的相關度等級 (0, 1, 2)；null = 沒有關鍵字
+        private String relevance;
+        private Object[] relevanceArgs = new Object[0];
+
+        private Builder() {}
+
+        /**
+         * 分類遮罩 (見 CategoryMask)：matchAll = true 時全部位元都要有，false 時有任一個就好。
+         * 每列只做一次整數 AND，不用解開任何 JSON 欄位。
+         */
+        public Builder categoryMask(long mask, boolean matchAll) {
+            where.and("(stores.category_mask & ?) != 0", mask);
+            if (matchAll) where.and("(stores.category_mask & ?) = ?", mask, mask);
+            return this;
+        }
+
+        /**
+         * 放不進遮罩的分類 / 標籤 / 服務：store_terms 裡命中 need 個以上才算符合
+         * (need = 1 就是「任一個」(ANY)，need = terms 的數量就是「全部」(ALL))。
+         * @param kind  StoreTermEntity.KIND_*
+         * @param terms 已正規化 (TextNormalizer.norm) 且不重複的值
+         */
+        public Builder terms(String kind, List<String> terms, int need) {
+            List<Object> args = new ArrayList<>();
+            args.add(kind);
+            args.addAll(terms);
+            args.add(need);
+            where.and("stores.id IN (SELECT store_id FROM store_terms WHERE kind = ? AND term IN ("
+                    + placeholders(terms.size()) + ") GROUP BY store_id HAVING COUNT(*) >= ?)", args.toArray());
+            return this;
+        }
+
+        /**
+         * 關鍵字：全文檢索命中 (ftsMatch，TextNormalizer.ftsQuery 產生)、或店名以關鍵字開頭
+         * (name_norm 介於 [prefixLo, prefixHi))、或是模糊搜尋補上的那幾家 (extraIds，最多幾十個)。
+         * 結果依相關度分級排序 (見類別說明)。
+         */
+        public Builder keyword(@NonNull String ftsMatch, @NonNull String prefixLo, @NonNull String prefixHi,
+                               @NonNull List<String> extraIds) {
+            List<Object> args = new ArrayList<>();
+            StringBuilder sql = new StringBuilder(
+                    "stores.id IN (SELECT store_id FROM stores_fts WHERE stores_fts MATCH ?) "
+                            + "OR (stores.name_norm >= ? AND stores.name_norm < ?)");
+            Collections.addAll(args, ftsMatch, prefixLo, prefixHi);
+            if (!extraIds.isEmpty()) {
+                sql.append(" OR stores.id IN (").append(placeholders(extraIds.size())).append(')');
+                args.addAll(extraIds);
+            }
+            where.and(sql.toString(), args.toArray());
+            relevance = "CASE WHEN stores.name_norm >= ? AND stores.name_norm < ? THEN 0 "
+                    + "WHEN stores.id IN (SELECT store_id FROM stores_fts WHERE stores_fts MATCH ?) THEN 1 ELSE 2 END";
+            relevanceArgs = new Object[]{prefixLo, prefixHi, ftsMatch};
+            return this;
+        }
+
+        /**
+         * 在「一週中的第 minuteOfWeek 分鐘」(WeekTime.minuteOfWeek) 有營業。
+         * 一段時段最長一天 (1440 分鐘)，所以只要看 start_min 落在前一天之內的列，
+         * 子查詢是 store_hours (start_min, end_min, store_id) 索引上的一次範圍掃描。
+         */
+        public Builder openAt(int minuteOfWeek) {
+            where.and("stores.id IN (SELECT store_id FROM store_hours "
+                            + "WHERE start_min <= ? AND start_min > ? AND end_min > ?)",
+                    minuteOfWeek, minuteOfWeek - 1440, minuteOfWeek);
+            return this;
+        }
+
+        /**
+         * 以 (lat, lng) 算距離排序 (由近到遠)；radiusKm > 0 時只留圈內的店。
+         * coverPrefixes (GeoHash.coverPrefixes) 讓圈外的店在 geohash 索引上就被擋掉，再用距離篩一次。
+         */
+        public Builder near(double lat, double lng, double radiusKm, @Nullable List<String> coverPrefixes) {
+            double kLat = GeoHash.KM_PER_DEGREE;
+            double kLng = GeoHash.KM_PER_DEGREE * Math.cos(Math.toRadians(lat));
+            String dist2 = "((stores.lat - ?) * ?) * ((stores.lat - ?) * ?) "
+                    + "+ ((stores.lng - ?) * ?) * ((stores.lng - ?) * ?)";
+            Object[] distArgs = {lat, kLat, lat, kLat, lng, kLng, lng, kLng};
+            sortKey = "CASE WHEN stores.lat = 0 AND stores.lng = 0 THEN " + NO_DISTANCE + " ELSE " + dist2 + " END";
+            sortArgs = distArgs;
+            if (radiusKm > 0) {
+                if (coverPrefixes != null && !coverPrefixes.isEmpty() && !coverPrefixes.contains("")) {
+                    StringBuilder sql = new StringBuilder();
+                    List<Object> args = new ArrayList<>();
+                    for (String p : coverPrefixes) {
+                        if (sql.length() > 0) sql.append(" OR ");
+                        sql.append("(stores.geohash >= ? AND stores.geohash < ?)");
+                        // geohash 只用 0-9 和小寫字母，prefix + '{' 比所有以 prefix 開頭的字串都大
+                        args.add(p);
+                        args.add(p + '{');
+                    }
+                    where.and(sql.toString(), args.toArray());
+                }
+                Object[] args = Arrays.copyOf(distArgs, distArgs.length + 1);
+                args[distArgs.length] = radiusKm * radiusKm;
+                where.and("NOT (stores.lat = 0 AND stores.lng = 0) AND " + dist2 + " <= ?", args);
+            }
+            return this;
+        }
+
+        /** 排除不喜歡的店 (StoreDao.NOT_DISLIKED)。 */
+        public Builder excludeDisliked() {
+            where.and(StoreDao.NOT_DISLIKED);
+            return this;
+        }
+
+        /** 排除已經收藏的店 (StoreDao.NOT_FAVORITE)。 */
+        public Builder excludeFavorites() {
+            where.and(StoreDao.NOT_FAVORITE);
+            return this;
+        }
+
+        public StoreFilter build() {
+            String sql = where.sql.length() > 0 ? where.sql.toString() : "1";
+            if (relevance == null) return new StoreFilter(sql, where.args.toArray(), sortKey, sortArgs);
+            Object[] args = Arrays.copyOf(relevanceArgs, relevanceArgs.length + sortArgs.length);
+            System.arraycopy(sortArgs, 0, args, relevanceArgs.length, sortArgs.length);
+            return new StoreFilter(sql, where.args.toArray(),
+                    "(" + relevance + ") * " + RELEVANCE_STEP + " + (" + sortKey + ")", args);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.PrimaryKey;
+
+/**
+ * 店家的全文檢索表 (SQLite FTS4 虛擬表)。
+ * 每家店一列，內容是先用 TextNormalizer 斷好詞 (中文 bigram) 的文字，
+ * 搜尋時用 MATCH 走倒排索引，不用再對每一列做 LIKE '%kw%' 全表掃描。
+ *
+ * - rowid：由店家 id 算出來的固定整數 (StoreMappers.ftsRowId)，新增 / 更新 / 刪除都能直接對到同一列。
+ * - store_id：只用來 JOIN 回 stores，不建索引 (notIndexed)。
+ * 這張表只透過 StoreDao.upsertStores / deleteStores 維護，和 stores 一起在同一個 transaction 裡寫入。
+ */
+@Fts4(notIndexed = {"store_id"})
+@Entity(tableName = "stores_fts")
+public class StoreFtsEntity {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    public long rowid;
+
+    @NonNull
+    @ColumnInfo(name = "store_id")
+    public String storeId = "";
+
+    public String name;      // 店名
+    public String address;   // 地址
+    public String category;  // 分類
+    public String tags;      // 標籤
+    public String menu;      // 菜單 (menuItems + menu_groups 的分組名稱和品項)
+
+    public StoreFtsEntity() {}
+}
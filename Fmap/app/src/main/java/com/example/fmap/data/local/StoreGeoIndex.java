@@ -0,0 +1,93 @@
+package com.example.fmap.data.local;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * 店家座標的 R*Tree 空間索引 (虛擬表 store_geo)。
+ * 地圖只需要「畫面範圍內」的店家，R*Tree 查一個矩形範圍不用掃過整張 stores。
+ *
+ * - Room 的 Entity 不支援 rtree 虛擬表，所以這裡用原生 SQL 建表，查詢也走 @RawQuery。
+ * - store_geo.id 就是 stores 的 rowid；stores 上的 trigger 會自動同步新增 / 覆蓋 / 刪除，
+ *   寫入端 (StoreDao.upsertStores / deleteStores) 完全不用管它。
+ *   注意：Room 的 REPLACE 是「先刪再插」而且不會觸發 DELETE trigger，
+ *   所以用 BEFORE INSERT 先把同一個店家 id 的舊座標刪掉。
+ * - 不是每台裝置的 SQLite 都有編進 rtree 模組；建不起來就維持 unavailable，
+ *   StoreFilter 的範圍查詢會改用 stores 的 (lat, lng) 索引。
+ * - 每次開啟資料庫時檢查一次 (StoreDatabase 的 Callback)，新裝、升級、從預建資料庫複製的情況都涵蓋到。
+ */
+public final class StoreGeoIndex {
+
+    private static final String TAG = "StoreGeoIndex";
+    static final String TABLE = "store_geo";
+
+    private static final String[] TRIGGERS = {
+            "store_geo_before_insert", "store_geo_after_insert", "store_geo_after_update", "store_geo_after_delete"
+    };
+
+    private static volatile boolean available = false;
+
+    private StoreGeoIndex() {}
+
+    /** 資料庫開啟時安裝 (或確認) 空間索引。 */
+    static final RoomDatabase.Callback CALLBACK = new RoomDatabase.Callback() {
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            available = install(db);
+        }
+    };
+
+    /** 空間索引是否可用 (這台裝置的 SQLite 支援 rtree，而且已經建好)。 */
+    public static boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * 建立 store_geo + 同步用的 trigger，並從現有的 stores 補齊內容。已經裝好就什麼都不做。
+     * stores 被重建過 (trigger 跟著被刪掉) 時，rowid 可能已經對不上，整個索引重建一次。
+     * @return 安裝成功 (或原本就有) 回傳 true；這台裝置不支援 rtree 回傳 false
+     */
+    static boolean install(SupportSQLiteDatabase db) {
+        if (isInstalled(db)) return true;
+        db.beginTransaction();
+        try {
+            db.execSQL("DROP TABLE IF EXISTS `" + TABLE + "`");
+            db.execSQL("CREATE VIRTUAL TABLE `" + TABLE + "` USING rtree(id, min_lat, max_lat, min_lng, max_lng)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `store_geo_before_insert` BEFORE INSERT ON `stores` BEGIN "
+                    + "DELETE FROM `" + TABLE + "` WHERE id IN (SELECT rowid FROM `stores` WHERE id = new.id); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `store_geo_after_insert` AFTER INSERT ON `stores` "
+                    + "WHEN NOT (new.lat = 0 AND new.lng = 0) BEGIN "
+                    + "INSERT OR REPLACE INTO `" + TABLE + "` VALUES (new.rowid, new.lat, new.lat, new.lng, new.lng); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `store_geo_after_update` AFTER UPDATE OF lat, lng ON `stores` BEGIN "
+                    + "DELETE FROM `" + TABLE + "` WHERE id = old.rowid; "
+                    + "INSERT INTO `" + TABLE + "` SELECT new.rowid, new.lat, new.lat, new.lng, new.lng "
+                    + "WHERE NOT (new.lat = 0 AND new.lng = 0); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `store_geo_after_delete` AFTER DELETE ON `stores` BEGIN "
+                    + "DELETE FROM `" + TABLE + "` WHERE id = old.rowid; END");
+            // 座標 (0, 0) 代表資料裡沒有座標，不放進索引
+            db.execSQL("INSERT INTO `" + TABLE + "` SELECT rowid, lat, lat, lng, lng FROM `stores` "
+                    + "WHERE NOT (lat = 0 AND lng = 0)");
+            db.setTransactionSuccessful();
+            return true;
+        } catch (SQLException e) {
+            Log.w(TAG, "這台裝置的 SQLite 不支援 rtree，地圖改用 (lat, lng) 索引查詢", e);
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** store_geo 和四個 trigger 都在才算裝好。 */
+    private static boolean isInstalled(SupportSQLiteDatabase db) {
+        StringBuilder names = new StringBuilder("'").append(TABLE).append('\'');
+        for (String t : TRIGGERS) names.append(", '").append(t).append('\'');
+        try (Cursor c = db.query("SELECT COUNT(*) FROM sqlite_master WHERE name IN (" + names + ")")) {
+            return c.moveToFirst() && c.getInt(0) == TRIGGERS.length + 1;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.fmap.data.local;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * 只有「id + 內容雜湊」的輕量查詢結果。
+ * 增量同步時用它跟新目錄比對，不用把整張店家資料表讀進記憶體。
+ */
+public class StoreHash {
+    public String id;
+
+    @ColumnInfo(name = "content_hash")
+    public String contentHash;
+}
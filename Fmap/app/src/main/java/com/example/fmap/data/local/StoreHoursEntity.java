@@ -0,0 +1,33 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * 店家的營業時段表：每一段營業時間存一列，時間用「一週中的第幾分鐘」表示 (見 WeekTime)。
+ * 例如星期二 11:30–14:00 → [2130, 2280)。
+ *
+ * 跨夜的時段 (例如 18:00–02:00) 直接延伸到隔天，end_min 可以超過當天；
+ * 星期日跨到星期一的部分會拆成兩列 (週尾一段、週頭一段)，所以每一列都滿足 start_min < end_min。
+ * 一段時段最長一天，「某個時間點有沒有開」只要對 (start_min, end_min) 的索引做一次範圍查詢。
+ * 這張表只透過 StoreDao.upsertStores / deleteStores 維護。
+ */
+@Entity(tableName = "store_hours",
+        primaryKeys = {"store_id", "start_min"},
+        indices = {@Index(value = {"start_min", "end_min", "store_id"})})
+public class StoreHoursEntity {
+
+    @NonNull
+    @ColumnInfo(name = "store_id")
+    public String storeId = "";
+
+    @ColumnInfo(name = "start_min")
+    public int startMin;
+
+    @ColumnInfo(name = "end_min")
+    public int endMin;
+
+    public StoreHoursEntity() {}
+}
@@ -0,0 +1,10 @@
+package com.example.fmap.data.local;
+
+/**
+ * 店家 id + 座標 (距離篩選的候選，只讀這三個欄位，不用把整筆店家資料解碼出來)。
+ */
+public class StoreLocation {
+    public String id;
+    public double lat;
+    public double lng;
+}
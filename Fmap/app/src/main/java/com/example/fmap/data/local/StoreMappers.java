@@ -1,16 +1,27 @@
 package com.example.fmap.data.local;
 
 import com.example.fmap.model.Place;
+import com.example.fmap.model.PriceRange;
 import com.example.fmap.model.Store;
 import com.example.fmap.model.TimeRange;
+import com.example.fmap.util.GeoHash;
+import com.example.fmap.util.TextNormalizer;
+import com.example.fmap.util.WeekTime;
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
-import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * 負責在 Store (網路模型)、StoreEntity (資料庫模型)、Place (UI 模型) 之間互相轉換。
@@ -18,6 +29,13 @@ import java.util.Objects;
 public class StoreMappers {
     private static final Gson gson = new Gson();
 
+    /**
+     * 轉換邏輯 (toEntity) 的版本號。
+     * 只要 toEntity 產生的內容會跟以前不一樣 (例如多存一個欄位、改了編碼)，就把它 +1：
+     * 它會被算進每筆資料的 content_hash 和目錄版本，下次啟動時所有店家都會重新寫入一次。
+     */
+    public static final int MAPPING_VERSION = 8;
+
     /**
      * Store (網路模型) → StoreEntity (資料庫模型)
      * 把從網路下載的資料，整理成可以存進資料庫的格式。
@@ -38,7 +56,9 @@ public class StoreMappers {
         entity.phoneDisplay = s.getPhoneDisplay();
         entity.category = s.getCategory();
         entity.tags = s.getTags();
+        entity.services = s.getServices();
         entity.menuItems = s.getMenuItems();
+        entity.menuGroups = menuGroupsToMap(s.getMenuGroups());
 
         // 處理比較特別的 "images" 欄位，只取出封面圖 "cover" 的網址。
         if (s.getImages() != null && s.getImages().isJsonObject()) {
@@ -49,9 +69,25 @@ public class StoreMappers {
         }
 
         // 因為資料庫看不懂複雜物件，所以先把價位和營業時間轉換成通用的 Map<String, Object> 格式。
-        // 後續會由 Converters.java 接手把它們轉成文字存入。
-        entity.priceRange = convertObjectToMap(s.getPriceRange());
-        entity.businessHours = convertObjectToMap(s.getBusinessHours());
+        // 後續會由 Converters.java 接手把它們轉成二進位存入。
+        // (直接組 Map，不再每個欄位都跑一次 Gson toJson/fromJson，大量匯入時省很多時間)
+        entity.priceRange = priceRangeToMap(s.getPriceRange());
+        entity.businessHours = businessHoursToMap(s.getBusinessHours());
+
+        // 搜尋用的正規化欄位：在這裡算一次，查詢時就不用再逐筆正規化
+        entity.nameNorm = TextNormalizer.norm(entity.storeName);
+        entity.tagsNorm = normList(entity.tags);
+        entity.menuNorm = normList(entity.menuItems);
+
+        // 距離篩選用的 geohash (沒有座標就不算)
+        entity.geohash = (entity.lat == 0.0 && entity.lng == 0.0)
+                ? null : GeoHash.encode(entity.lat, entity.lng, GeoHash.PRECISION);
+
+        // 牌堆依評分排序用的鍵 (存起來才能走索引)
+        entity.ratingRank = -(entity.rating != null ? entity.rating : 0.0);
+
+        // 最後算出整筆資料的雜湊，增量同步靠它判斷「這家店有沒有變」
+        entity.contentHash = contentHash(entity);
 
         return entity;
     }
@@ -100,16 +136,195 @@ public class StoreMappers {
         return result;
     }
 
+    /**
+     * StoreEntity (資料庫模型) → StoreFtsEntity (全文檢索列)
+     * 把店名、地址、分類、標籤、菜單先斷好詞 (TextNormalizer)，存進 stores_fts。
+     */
+    public static StoreFtsEntity toFts(StoreEntity e) {
+        StoreFtsEntity f = new StoreFtsEntity();
+        f.rowid = ftsRowId(e.id);
+        f.storeId = e.id;
+        f.name = TextNormalizer.indexText(Collections.singletonList(e.storeName));
+        f.address = TextNormalizer.indexText(Collections.singletonList(e.address));
+        f.category = TextNormalizer.indexText(e.category);
+        f.tags = TextNormalizer.indexText(e.tags);
+
+        List<String> menu = new ArrayList<>();
+        if (e.menuItems != null) menu.addAll(e.menuItems);
+        if (e.menuGroups != null) {
+            for (Map.Entry<String, Object> group : e.menuGroups.entrySet()) {
+                menu.add(group.getKey());
+                if (group.getValue() instanceof List) {
+                    for (Object item : (List<?>) group.getValue()) {
+                        if (item != null) menu.add(item.toString());
+                    }
+                }
+            }
+        }
+        f.menu = TextNormalizer.indexText(menu);
+        return f;
+    }
+
+    /** 輔助方法：一批 StoreEntity → 一批全文檢索列。 */
+    public static List<StoreFtsEntity> toFtsList(List<StoreEntity> list) {
+        List<StoreFtsEntity> out = new ArrayList<>(list.size());
+        for (StoreEntity e : list) out.add(toFts(e));
+        return out;
+    }
+
+    /**
+     * StoreEntity → store_terms 關聯列 (分類、標籤、服務各一列，正規化後去除重複)。
+     */
+    public static List<StoreTermEntity> toTerms(StoreEntity e) {
+        List<StoreTermEntity> out = new ArrayList<>();
+        addTerms(out, e.id, StoreTermEntity.KIND_CATEGORY, e.category);
+        addTerms(out, e.id, StoreTermEntity.KIND_TAG, e.tags);
+        addTerms(out, e.id, StoreTermEntity.KIND_SERVICE, e.services);
+        return out;
+    }
+
+    /** 輔助方法：一批 StoreEntity → 全部的關聯列。 */
+    public static List<StoreTermEntity> toTermsList(List<StoreEntity> list) {
+        List<StoreTermEntity> out = new ArrayList<>();
+        for (StoreEntity e : list) out.addAll(toTerms(e));
+        return out;
+    }
+
+    private static void addTerms(List<StoreTermEntity> out, String storeId, String kind, List<String> values) {
+        if (values == null) return;
+        Set<String> seen = new HashSet<>();
+        for (String v : values) {
+            String term = TextNormalizer.norm(v);
+            if (term.isEmpty() || !seen.add(term)) continue;
+            StoreTermEntity t = new StoreTermEntity();
+            t.storeId = storeId;
+            t.kind = kind;
+            t.term = term;
+            out.add(t);
+        }
+    }
+
+    /**
+     * StoreEntity → store_hours 營業時段列 (一週中的第幾分鐘，見 StoreHoursEntity)。
+     * 關店時間早於 (或等於) 開店時間就當作跨夜；星期日跨到星期一的部分拆成週頭的一列。
+     * 同一個開始時間出現兩次時留下比較長的那段。
+     */
+    public static List<StoreHoursEntity> toHours(StoreEntity e) {
+        TreeMap<Integer, Integer> spans = new TreeMap<>();
+        if (e.businessHours != null) {
+            for (Map.Entry<String, Object> day : e.businessHours.entrySet()) {
+                int d = WeekTime.dayIndex(day.getKey());
+                if (d < 0 || !(day.getValue() instanceof List)) continue;
+                for (Object r : (List<?>) day.getValue()) {
+                    if (!(r instanceof Map)) continue;
+                    int open = WeekTime.parseTime(asString(((Map<?, ?>) r).get("open")));
+                    int close = WeekTime.parseTime(asString(((Map<?, ?>) r).get("close")));
+                    if (open < 0 || close < 0) continue;
+                    int length = close > open ? close - open : close + WeekTime.MINUTES_PER_DAY - open;
+                    int start = d * WeekTime.MINUTES_PER_DAY + open;
+                    int end = start + length;
+                    if (end <= WeekTime.MINUTES_PER_WEEK) {
+                        spans.merge(start, end, Math::max);
+                    } else {
+                        spans.merge(start, WeekTime.MINUTES_PER_WEEK, Math::max);
+                        spans.merge(0, end - WeekTime.MINUTES_PER_WEEK, Math::max);
+                    }
+                }
+            }
+        }
+        List<StoreHoursEntity> out = new ArrayList<>(spans.size());
+        for (Map.Entry<Integer, Integer> span : spans.entrySet()) {
+            StoreHoursEntity h = new StoreHoursEntity();
+            h.storeId = e.id;
+            h.startMin = span.getKey();
+            h.endMin = span.getValue();
+            out.add(h);
+        }
+        return out;
+    }
+
+    /** 輔助方法：一批 StoreEntity → 全部的營業時段列。 */
+    public static List<StoreHoursEntity> toHoursList(List<StoreEntity> list) {
+        List<StoreHoursEntity> out = new ArrayList<>();
+        for (StoreEntity e : list) out.addAll(toHours(e));
+        return out;
+    }
+
+    /**
+     * 店家 id → stores_fts 的 rowid。
+     * 取 id 的 SHA-1 前 8 個位元組 (正數)，同一個 id 永遠對到同一列，
+     * 所以更新 / 刪除全文檢索時不用先查 stores 的 rowid。
+     */
+    public static long ftsRowId(String id) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-1").digest(id.getBytes(StandardCharsets.UTF_8));
+            long v = 0;
+            for (int i = 0; i < 8; i++) v = (v << 8) | (d[i] & 0xff);
+            return v & Long.MAX_VALUE;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     // --- 工廠內部使用的小工具 ---
 
+    /** 工具：逐項正規化 (TextNormalizer.norm)，空字串不留；原本是 null 就回傳 null。 */
+    private static List<String> normList(List<String> values) {
+        if (values == null) return null;
+        List<String> out = new ArrayList<>(values.size());
+        for (String v : values) {
+            String n = TextNormalizer.norm(v);
+            if (!n.isEmpty()) out.add(n);
+        }
+        return out;
+    }
+
+    /**
+     * 工具：分組菜單 {"分組": ["品項"...]} → 通用的 Map<String, Object> 格式 (保留原本的分組順序)。
+     */
+    private static Map<String, Object> menuGroupsToMap(Map<String, List<String>> groups) {
+        if (groups == null || groups.isEmpty()) return null;
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> g : groups.entrySet()) {
+            if (g.getKey() == null || g.getValue() == null) continue;
+            map.put(g.getKey(), new ArrayList<>(g.getValue()));
+        }
+        return map;
+    }
+
     /**
-     * 工具：利用 Gson 當橋樑，把任何物件轉成通用的 Map<String, Object> 格式。
+     * 工具：把 PriceRange 轉成通用的 Map<String, Object> 格式。
+     * 結果和以前用 Gson 來回轉一次相同：null 欄位不放、數字一律是 Double。
      */
-    private static Map<String, Object> convertObjectToMap(Object obj) {
-        if (obj == null) return null;
-        String json = gson.toJson(obj);
-        Type type = new TypeToken<Map<String, Object>>(){}.getType();
-        return gson.fromJson(json, type);
+    private static Map<String, Object> priceRangeToMap(PriceRange pr) {
+        if (pr == null) return null;
+        Map<String, Object> map = new LinkedHashMap<>();
+        if (pr.getText() != null) map.put("text", pr.getText());
+        if (pr.getLevel() != null) map.put("level", pr.getLevel().doubleValue());
+        return map;
+    }
+
+    /**
+     * 工具：把營業時間 {"星期一": [TimeRange...]} 轉成 {"星期一": [{"open":..,"close":..}]} 的通用格式。
+     */
+    private static Map<String, Object> businessHoursToMap(Map<String, List<TimeRange>> hours) {
+        if (hours == null) return null;
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Map.Entry<String, List<TimeRange>> day : hours.entrySet()) {
+            if (day.getKey() == null) continue;
+            List<TimeRange> ranges = day.getValue();
+            if (ranges == null) continue;
+            List<Object> list = new ArrayList<>(ranges.size());
+            for (TimeRange r : ranges) {
+                if (r == null) continue;
+                Map<String, Object> item = new LinkedHashMap<>();
+                if (r.open != null) item.put("open", r.open);
+                if (r.close != null) item.put("close", r.close);
+                list.add(item);
+            }
+            map.put(day.getKey(), list);
+        }
+        return map;
     }
 
     /**
@@ -136,10 +351,45 @@ public class StoreMappers {
      */
     private static Map<String, List<TimeRange>> formatBusinessHours(Map<String, Object> rawHours) {
         if (rawHours == null) return null;
-        // 同樣利用 Gson 當橋樑，進行精確的型別轉換。
-        String json = gson.toJson(rawHours);
-        Type type = new TypeToken<Map<String, List<TimeRange>>>(){}.getType();
-        return gson.fromJson(json, type);
+        // 直接逐層取出 {"星期一": [{"open":..,"close":..}]}，不用再靠 Gson 來回轉一次 JSON。
+        Map<String, List<TimeRange>> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> day : rawHours.entrySet()) {
+            if (!(day.getValue() instanceof List)) continue;
+            List<?> ranges = (List<?>) day.getValue();
+            List<TimeRange> list = new ArrayList<>(ranges.size());
+            for (Object r : ranges) {
+                if (!(r instanceof Map)) continue;
+                Map<?, ?> m = (Map<?, ?>) r;
+                list.add(new TimeRange(asString(m.get("open")), asString(m.get("close"))));
+            }
+            // 星期名稱統一成 "星期一" 這種寫法，UI 直接用 WeekTime.DAY_NAMES 取值
+            out.put(WeekTime.canonicalDay(day.getKey()), list);
+        }
+        return out;
+    }
+
+    private static String asString(Object o) {
+        return o == null ? null : o.toString();
+    }
+
+    /**
+     * 工具：計算 StoreEntity 的內容雜湊 (SHA-1)。
+     * 把整筆資料用 Gson 轉成 JSON (欄位順序固定、null 不輸出) 再加上 MAPPING_VERSION 一起算，
+     * 內容或轉換邏輯任何一個改變，雜湊就會不同。
+     */
+    static String contentHash(StoreEntity e) {
+        String saved = e.contentHash;
+        e.contentHash = null; // 雜湊本身不算進去
+        String json = gson.toJson(e);
+        e.contentHash = saved;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(("m" + MAPPING_VERSION + ":").getBytes(StandardCharsets.UTF_8));
+            byte[] d = md.digest(json.getBytes(StandardCharsets.UTF_8));
+            return String.format("%040x", new BigInteger(1, d));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex); // 每個 JVM / Android 都一定有 SHA-1
+        }
     }
 
     /**
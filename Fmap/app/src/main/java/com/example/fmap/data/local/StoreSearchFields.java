@@ -0,0 +1,23 @@
+package com.example.fmap.data.local;
+
+import androidx.room.ColumnInfo;
+
+import java.util.List;
+
+/**
+ * 模糊搜尋索引 (FuzzyStoreIndex) 需要的欄位：只有 id、店名、標籤、菜單。
+ * 建索引時只讀這幾欄，不用把整筆 StoreEntity (營業時間、價位...) 都解出來。
+ * 讀的是寫入時就正規化好的影子欄位 (name_norm / tags_norm / menu_norm)，建索引時不用再正規化。
+ */
+public class StoreSearchFields {
+    public String id;
+
+    @ColumnInfo(name = "name_norm")
+    public String nameNorm;
+
+    @ColumnInfo(name = "tags_norm")
+    public List<String> tagsNorm;
+
+    @ColumnInfo(name = "menu_norm")
+    public List<String> menuNorm;
+}
@@ -0,0 +1,36 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * 店家的「分類 / 標籤 / 服務」關聯表：一家店的每個分類 (或標籤、服務) 各存一列。
+ * 值都先用 TextNormalizer.norm 正規化過，查詢時直接比對，不用再把 JSON 欄位解開。
+ *
+ * 主鍵依 (kind, term, store_id) 排序，所以「哪些店有這個分類」是一次索引範圍查詢；
+ * 另外對 store_id 建索引，更新 / 刪除某家店的關聯時用得到。
+ * 這張表只透過 StoreDao.upsertStores / deleteStores 維護。
+ */
+@Entity(tableName = "store_terms",
+        primaryKeys = {"kind", "term", "store_id"},
+        indices = {@Index("store_id")})
+public class StoreTermEntity {
+
+    public static final String KIND_CATEGORY = "category";
+    public static final String KIND_TAG = "tag";
+    public static final String KIND_SERVICE = "service";
+
+    @NonNull
+    @ColumnInfo(name = "store_id")
+    public String storeId = "";
+
+    @NonNull
+    public String kind = "";
+
+    @NonNull
+    public String term = "";
+
+    public StoreTermEntity() {}
+}
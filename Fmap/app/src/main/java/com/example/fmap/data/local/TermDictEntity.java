@@ -0,0 +1,23 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * 字典表：每個不同的分類 / 標籤 / 服務 (正規化後) 對應一個小整數 id。
+ * id 一旦分配就不會改變 (也不會回收)，所以存在 stores.category_mask 裡的位元永遠有效。
+ * 由 TermDictionary 分配，寫入店家時一起維護。
+ */
+@Entity(tableName = "term_dict", primaryKeys = {"kind", "term"})
+public class TermDictEntity {
+
+    @NonNull
+    public String kind = "";   // StoreTermEntity.KIND_*
+
+    @NonNull
+    public String term = "";   // 正規化後的值
+
+    public int id;             // 同一種 kind 裡從 0 開始編號
+
+    public TermDictEntity() {}
+}
@@ -0,0 +1,85 @@
+package com.example.fmap.data.local;
+
+import com.example.fmap.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分類 / 標籤 / 服務的字典 (記憶體版，對應 term_dict 資料表)。
+ * 寫入店家時用它幫新出現的值分配 id，並算出每家店的 category_mask。
+ * 不依賴 Android，App 寫入 (StoreDao.upsertStores) 和 CatalogCompiler 共用。
+ */
+public class TermDictionary {
+
+    // kind → (term → id)
+    private final Map<String, Map<String, Integer>> ids = new HashMap<>();
+    // 這次新分配、還沒寫進資料庫的項目
+    private final List<TermDictEntity> pending = new ArrayList<>();
+
+    public TermDictionary(List<TermDictEntity> existing) {
+        if (existing == null) return;
+        for (TermDictEntity e : existing) mapFor(e.kind).put(e.term, e.id);
+    }
+
+    /** 取得 (或分配) 某個值的 id；值會先正規化，空字串回傳 -1。 */
+    public int assign(String kind, String rawTerm) {
+        String term = TextNormalizer.norm(rawTerm);
+        if (term.isEmpty()) return -1;
+        Map<String, Integer> map = mapFor(kind);
+        Integer id = map.get(term);
+        if (id != null) return id;
+
+        int next = map.size(); // id 從 0 開始連續編號，不回收
+        map.put(term, next);
+        TermDictEntity e = new TermDictEntity();
+        e.kind = kind;
+        e.term = term;
+        e.id = next;
+        pending.add(e);
+        return next;
+    }
+
+    /**
+     * 幫一批店家分配字典 id，並填好 category_mask。
+     * 標籤和服務也一樣分配 id，但不算 mask：標籤是自由填的 (69 家店就有五百多種)，64 位元放不下，
+     * 篩標籤照樣走 store_terms 的 (kind, term) 索引 (見 StoreFilter.Builder.terms)。
+     */
+    public void apply(List<StoreEntity> stores) {
+        for (StoreEntity e : stores) {
+            e.categoryMask = assignMask(StoreTermEntity.KIND_CATEGORY, e.category);
+            assignAll(StoreTermEntity.KIND_TAG, e.tags);
+            assignAll(StoreTermEntity.KIND_SERVICE, e.services);
+        }
+    }
+
+    /** 取出這次新分配的項目 (呼叫端負責寫進 term_dict)，取完就清空。 */
+    public List<TermDictEntity> drainNew() {
+        List<TermDictEntity> out = new ArrayList<>(pending);
+        pending.clear();
+        return out;
+    }
+
+    private long assignMask(String kind, List<String> values) {
+        if (values == null) return 0L;
+        long mask = 0L;
+        for (String v : values) {
+            int id = assign(kind, v);
+            if (CategoryMask.fits(id)) mask |= CategoryMask.bit(id);
+        }
+        return mask;
+    }
+
+    private void assignAll(String kind, List<String> values) {
+        if (values == null) return;
+        for (String v : values) assign(kind, v);
+    }
+
+    private Map<String, Integer> mapFor(String kind) {
+        Map<String, Integer> map = ids.get(kind);
+        if (map == null) ids.put(kind, map = new HashMap<>());
+        return map;
+    }
+}
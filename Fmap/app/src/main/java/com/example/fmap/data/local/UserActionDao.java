@@ -0,0 +1,25 @@
+package com.example.fmap.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * user_actions 的管家：一批一批往後加、讀最近的動作、把太舊的刪掉。
+ */
+@Dao
+public interface UserActionDao {
+
+    @Insert
+    void insertAll(List<UserActionEntity> rows);
+
+    /** 最近的 limit 筆動作 (最新的在前)。 */
+    @Query("SELECT * FROM user_actions ORDER BY seq DESC LIMIT :limit")
+    List<UserActionEntity> recent(int limit);
+
+    /** 壓縮：只留最後 keep 筆 (狀態已經在 favorites / dislikes 裡，舊的日誌只剩歷史用途)。 */
+    @Query("DELETE FROM user_actions WHERE seq <= (SELECT MAX(seq) FROM user_actions) - :keep")
+    int trimTo(int keep);
+}
@@ -0,0 +1,44 @@
+package com.example.fmap.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * 使用者動作日誌 (user_actions) 的一筆：只會新增，不會修改。
+ * seq 遞增，照 seq 排就是動作發生的順序 (復原、統計都從這裡讀)。
+ * 收藏 / 不喜歡的「目前狀態」在 favorites / dislikes，跟日誌在同一個交易裡更新 (見 UserActionJournal)。
+ */
+@Entity(tableName = "user_actions")
+public class UserActionEntity {
+
+    public static final String LIKE = "like";             // 右滑 / 按愛心：加入收藏
+    public static final String NOPE = "nope";             // 左滑：加入不喜歡
+    public static final String UNFAVORITE = "unfavorite"; // 取消收藏
+    public static final String RESTORE = "restore";       // 從垃圾桶還原
+    public static final String PURGE = "purge";           // 在垃圾桶永久刪除
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "seq")
+    public long seq;
+
+    @NonNull
+    @ColumnInfo(name = "store_id")
+    public String storeId = "";
+
+    @NonNull
+    @ColumnInfo(name = "action")
+    public String action = "";
+
+    @ColumnInfo(name = "at")
+    public long at;
+
+    public UserActionEntity() {}
+
+    public UserActionEntity(@NonNull String storeId, @NonNull String action, long at) {
+        this.storeId = storeId;
+        this.action = action;
+        this.at = at;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.fmap.model;
+
+import android.content.Context;
+import android.content.SharedPreferences; // 只剩下「搬家」時讀舊資料會用到
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+
+import com.example.fmap.data.TrashPagingSource;
+import com.example.fmap.data.local.DislikeDao;
+import com.example.fmap.data.local.DislikeEntity;
+import com.example.fmap.data.local.StoreDatabase;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 「不喜歡」的總管家 (存在 Room 的 dislikes 資料表)，單例，跟 FavoritesStore 同一套做法。
+ *
+ * 以前不喜歡的 id 是 SharedPreferences 的一個 StringSet：每次載入 Home 都要整份複製一份來比對，
+ * 每滑掉一張就整份重寫，垃圾桶還要用一個超大的 IN (...) 查店家 (超過 999 個就會失敗)。
+ * 現在一家店一列：Home 在查詢裡直接排除 (StoreDao.NOT_DISLIKED)，垃圾桶分頁讀，
+ * 還原 / 永久刪除都是一個交易。舊的 StringSet 在第一次使用時搬進資料表 (見 migrateFromPrefs)。
+ *
+ * 注意：這裡的方法都會查資料庫，不能在主執行緒呼叫 (畫面要跟著變的請用 observe* / newTrashPagingSource)。
+ */
+public class DislikesStore {
+
+    private static final String TAG = "DislikesStore";
+
+    // 舊版儲存的檔案名稱和 key：只用來搬家
+    private static final String PREFS_NAME = "FmapUserPrefs";
+    private static final String KEY_DISLIKED = "disliked_places";
+
+    private static DislikesStore INSTANCE;
+
+    private final SharedPreferences prefs;
+    private final StoreDatabase db;
+    private final DislikeDao dao;
+    // 垃圾桶翻頁 (TrashPagingSource) 用的讀取執行緒
+    private final ListeningExecutorService pagingExecutor =
+            MoreExecutors.listeningDecorator(StoreDatabase.databaseWriteExecutor);
+    // 舊資料搬完了沒
+    private volatile boolean migrated;
+
+    private DislikesStore(Context appCtx) {
+        this.prefs = appCtx.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.db = StoreDatabase.getDatabase(appCtx);
+        this.dao = db.dislikeDao();
+    }
+
+    public static synchronized DislikesStore getInstance(Context ctx) {
+        if (INSTANCE == null) {
+            INSTANCE = new DislikesStore(ctx.getApplicationContext());
+        }
+        return INSTANCE;
+    }
+
+    /** 記下一批不喜歡 (已經在表裡的不動)；由 UserActionJournal 提交時批次呼叫。 */
+    public void addAll(@Nullable Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) return;
+        ensureMigrated();
+        long now = System.currentTimeMillis();
+        List<DislikeEntity> rows = new ArrayList<>(ids.size());
+        for (String id : ids) if (id != null) rows.add(new DislikeEntity(id, now));
+        if (!rows.isEmpty()) dao.insertIgnore(rows);
+    }
+
+    /** 還原 (從不喜歡拿掉，Home 又會出現)：一個交易，回傳實際還原幾筆。 */
+    public int restore(@Nullable Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) return 0;
+        ensureMigrated();
+        return dao.restore(new ArrayList<>(ids));
+    }
+
+    /** 永久刪除 (從垃圾桶拿掉，Home 還是不會出現)：一個交易，回傳實際處理幾筆。 */
+    public int purge(@Nullable Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) return 0;
+        ensureMigrated();
+        return dao.purge(new ArrayList<>(ids), System.currentTimeMillis());
+    }
+
+    /** 垃圾桶裡有幾筆 (不含永久刪除的)，有變動就自動更新。 */
+    public LiveData<Integer> observeTrashCount() {
+        return dao.observeTrashCount();
+    }
+
+    /** 垃圾桶的分頁來源：由新到舊一頁一頁 JOIN 目錄讀出來，dislikes / stores 有變動會自己重新整理。 */
+    @NonNull
+    public TrashPagingSource newTrashPagingSource() {
+        return new TrashPagingSource(db, pagingExecutor);
+    }
+
+    /**
+     * 舊版的不喜歡 (SharedPreferences) 還沒搬進資料表的話現在搬 (在背景執行緒呼叫)。
+     * Home 的查詢直接讀資料表，所以第一次載入 Home 之前要先呼叫一次。
+     */
+    public void ensureMigrated() {
+        if (migrated) return;
+        synchronized (this) {
+            if (migrated) return;
+            migrateFromPrefs();
+            migrated = true;
+        }
+    }
+
+    /**
+     * 一次性搬家：把舊的 StringSet 寫進 dislikes，寫成功才刪掉舊的 key
+     * (中途被關掉的話下次再搬一次；insertIgnore 不會重複)。舊資料沒有時間，一律記成搬家的時間。
+     */
+    private void migrateFromPrefs() {
+        Set<String> old = prefs.getStringSet(KEY_DISLIKED, null);
+        if (old == null) return;
+        try {
+            long now = System.currentTimeMillis();
+            List<DislikeEntity> rows = new ArrayList<>(old.size());
+            for (String id : old) if (id != null) rows.add(new DislikeEntity(id, now));
+            if (!rows.isEmpty()) dao.insertIgnore(rows);
+            Log.i(TAG, "migrated " + rows.size() + " dislike(s) from prefs");
+        } catch (RuntimeException e) {
+            Log.e(TAG, "migrate dislikes from prefs failed", e);
+            return;
+        }
+        prefs.edit().remove(KEY_DISLIKED).apply();
+    }
+}
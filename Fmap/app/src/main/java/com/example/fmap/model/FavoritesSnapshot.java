@@ -0,0 +1,91 @@
+package com.example.fmap.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * 收藏的記憶體快照：店家 id 的集合 (查有沒有收藏) + 依收藏先後的清單，建好之後就不會再改。
+ *
+ * FavoritesStore 把目前的快照放在一個 AtomicReference 裡：讀的人直接拿來用 (不用鎖、不用查資料庫)，
+ * 寫的人用 withAdded / withRemoved 做一份新的，再用 compareAndSet 換上去 (update)。
+ * 讀到的永遠是某一個完整的版本，不會看到寫到一半的狀態。不依賴 Android。
+ */
+public final class FavoritesSnapshot {
+
+    public static final FavoritesSnapshot EMPTY = new FavoritesSnapshot(Collections.emptyList());
+
+    private final List<String> ordered;
+    private final Set<String> ids;
+
+    private FavoritesSnapshot(List<String> ordered) {
+        this.ordered = Collections.unmodifiableList(ordered);
+        this.ids = Collections.unmodifiableSet(new HashSet<>(ordered));
+    }
+
+    /** 照收藏先後 (舊 → 新) 的 id 建一份快照；重複的只留第一個。 */
+    public static FavoritesSnapshot of(Collection<String> orderedIds) {
+        LinkedHashSet<String> dedup = new LinkedHashSet<>();
+        for (String id : orderedIds) if (id != null) dedup.add(id);
+        return dedup.isEmpty() ? EMPTY : new FavoritesSnapshot(new ArrayList<>(dedup));
+    }
+
+    /**
+     * 把 ref 換成 change 做出來的新版本：compareAndSet 失敗 (被別人搶先換了) 就拿新的再做一次。
+     * ref 是 null (快照還沒讀) 就什麼都不做，回傳 null；否則回傳換上去的版本。
+     */
+    public static FavoritesSnapshot update(AtomicReference<FavoritesSnapshot> ref,
+                                           UnaryOperator<FavoritesSnapshot> change) {
+        while (true) {
+            FavoritesSnapshot cur = ref.get();
+            if (cur == null) return null;
+            FavoritesSnapshot next = change.apply(cur);
+            if (next == cur || ref.compareAndSet(cur, next)) return next;
+        }
+    }
+
+    public boolean contains(String id) {
+        return id != null && ids.contains(id);
+    }
+
+    /** 所有收藏的 id (唯讀)。 */
+    public Set<String> ids() {
+        return ids;
+    }
+
+    /** 依收藏先後 (舊 → 新) 的 id (唯讀)。 */
+    public List<String> ordered() {
+        return ordered;
+    }
+
+    public int size() {
+        return ordered.size();
+    }
+
+    /** 加上這些 id (已經有的不動、接在最後面)；什麼都沒變就回傳自己。 */
+    public FavoritesSnapshot withAdded(Collection<String> added) {
+        Set<String> extra = new LinkedHashSet<>();
+        for (String id : added) if (id != null && !ids.contains(id)) extra.add(id);
+        if (extra.isEmpty()) return this;
+        List<String> next = new ArrayList<>(ordered.size() + extra.size());
+        next.addAll(ordered);
+        next.addAll(extra);
+        return new FavoritesSnapshot(next);
+    }
+
+    /** 拿掉這些 id；什麼都沒變就回傳自己。 */
+    public FavoritesSnapshot withRemoved(Collection<String> removed) {
+        Set<String> gone = new HashSet<>();
+        for (String id : removed) if (contains(id)) gone.add(id);
+        if (gone.isEmpty()) return this;
+        List<String> next = new ArrayList<>(ordered.size() - gone.size());
+        for (String id : ordered) if (!gone.contains(id)) next.add(id);
+        return new FavoritesSnapshot(next);
+    }
+}
@@ -1,24 +1,60 @@
 package com.example.fmap.model;
 
 import android.content.Context;
-import android.content.SharedPreferences; // 引入 Android 內建的「輕量級儲存」工具
+import android.content.SharedPreferences; // 只剩下「搬家」時讀舊資料會用到
+import android.util.Log;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 
-import com.google.gson.Gson; // 引入 JSON 翻譯工具
+import com.example.fmap.data.FavoritesPagingSource;
+import com.example.fmap.data.local.FavoriteDao;
+import com.example.fmap.data.local.FavoriteEntity;
+import com.example.fmap.data.local.FavoriteRow;
+import com.example.fmap.data.local.StoreDatabase;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gson.Gson; // 引入 JSON 翻譯工具 (只有搬舊資料會用到)
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
- * 「收藏功能的總管家」(使用 SharedPreferences 儲存)。
+ * 「收藏功能的總管家」(存在 Room 的 favorites 資料表)。
  * 採用單例模式 (Singleton)，確保整個 App 的收藏資料都是同一份。
+ *
+ * 以前整份收藏是 SharedPreferences 裡的一串 JSON，查一次「有沒有收藏」也要整份解析、
+ * 加一筆就整份重寫。現在一家店一列、主鍵是店家 id：contains / add / remove 都只碰那一列，
+ * 收藏再多也不會變慢。舊的 JSON 在第一次使用時搬進資料表 (見 migrateFromPrefs)。
+ *
+ * 資料表只存店家 id 和收藏時間，不存店家內容：要顯示時跟目錄 (stores) 在同一個查詢裡 JOIN
+ * (收藏頁用 newPagingSource 一頁一頁讀)，目錄更新後收藏頁看到的也是最新資料。
+ *
+ * 「有沒有收藏」和「所有收藏的 id」讀的是記憶體裡的快照 (FavoritesSnapshot，放在 AtomicReference)：
+ * 讀的時候不上鎖、不查資料庫，背景正在寫收藏也不會卡到畫面。寫的時候做一份新的快照換上去；
+ * UserActionJournal 記下動作時就先換 (publishAdded / publishRemoved)，資料庫在背景批次寫。
+ * 快照在建立實例時 (App 啟動) 就在背景讀進來；讀完之前 contains / getIds 當成沒有收藏，不會等。
+ * 詳情頁的愛心 (observeContains) 也跟著快照變，按下去馬上看得到。
+ *
+ * 注意：除了 contains / getIds / snapshot / observeContains，這裡的方法都會查資料庫，不能在主執行緒呼叫
+ * (畫面要跟著變的請用 observe*)。
  */
 public class FavoritesStore {
 
-    // 定義儲存檔案的名稱和收藏資料的「鑰匙」(Key)
+    private static final String TAG = "FavoritesStore";
+
+    // 舊版儲存的檔案名稱和「鑰匙」(Key)：只用來搬家
     private static final String PREFS_NAME = "FmapUserPrefs";
     private static final String KEY_FAVORITES = "favorites_places";
 
@@ -26,18 +62,47 @@ public class FavoritesStore {
     private static FavoritesStore INSTANCE;
 
     // --- 成員變數 ---
-    private final SharedPreferences prefs; // 輕量級儲存工具的實例
-    private final Gson gson = new Gson();  // JSON 翻譯工具
-    // 預先告訴 Gson，我們要處理的類型是「Place 物件的清單」
+    private final SharedPreferences prefs;
+    private final StoreDatabase db;
+    private final FavoriteDao dao;
+    // 收藏頁翻頁 (FavoritesPagingSource) 用的讀取執行緒
+    private final ListeningExecutorService pagingExecutor =
+            MoreExecutors.listeningDecorator(StoreDatabase.databaseWriteExecutor);
+    private final Gson gson = new Gson();
+    // 舊版格式是「Place 物件的清單」
     private final Type listType = new TypeToken<List<Place>>(){}.getType();
+    // 舊資料搬完了沒 (搬完之後每次操作只多一次 volatile 讀取)
+    private volatile boolean migrated;
+    // 目前的收藏快照；null = 還沒從資料表讀過
+    private final AtomicReference<FavoritesSnapshot> snapshot = new AtomicReference<>();
+    // 只有「從資料表讀快照」要鎖 (讀的人拿到快照之後就不碰它)
+    private final Object loadLock = new Object();
+    // 快照每換一版就 post 一次 (詳情頁的愛心跟著變)；讀目前的快照和 post 要一起做，舊的才不會蓋掉新的
+    private final MutableLiveData<FavoritesSnapshot> snapshotLive = new MutableLiveData<>();
+    private final Object postLock = new Object();
 
     /**
      * 建構子是 private，代表不允許外面直接 new 一個新的，
      * 只能透過 getInstance() 取得。
      */
     private FavoritesStore(Context appCtx) {
-        // 初始化 SharedPreferences，讓它可以讀寫 "FmapUserPrefs" 這個檔案
+        this(appCtx, StoreDatabase.getDatabase(appCtx));
+    }
+
+    /** 測試用：指定資料庫 (例如 in-memory 的 Room)。 */
+    @VisibleForTesting
+    FavoritesStore(Context appCtx, StoreDatabase db) {
         this.prefs = appCtx.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.db = db;
+        this.dao = db.favoriteDao();
+        // 一啟動就在背景搬舊資料、讀快照，畫面第一次問「有沒有收藏」時多半已經讀好了
+        StoreDatabase.databaseWriteExecutor.execute(() -> {
+            try {
+                ensureMigrated();
+            } catch (Exception e) {
+                Log.e(TAG, "load favorites snapshot failed", e);
+            }
+        });
     }
 
     /**
@@ -54,89 +119,221 @@ public class FavoritesStore {
     }
 
     /**
-     * 取得所有收藏店家。
-     * synchronized 關鍵字確保多個執行緒同時讀取時資料是安全的。
+     * 取得所有收藏店家 (依收藏先後；一個 JOIN 查詢讀完)。收藏很多時請用 newPagingSource。
      */
-    public synchronized List<Place> getAll() {
-        // 從檔案中讀取之前存的 JSON 文字，如果沒有就給一個 "[]" (空清單的文字)。
-        String json = prefs.getString(KEY_FAVORITES, "[]");
-        // 把 JSON 文字翻譯回 Place 的清單物件。
-        List<Place> list = gson.fromJson(json, listType);
-        // 安全檢查：如果翻譯失敗變成 null，就回傳一個新的空清單。
-        return list != null ? list : new ArrayList<>();
+    public List<Place> getAll() {
+        ensureMigrated();
+        List<FavoriteRow> rows = dao.getAll();
+        List<Place> list = new ArrayList<>(rows.size());
+        for (FavoriteRow row : rows) list.add(FavoritesPagingSource.toPlace(row));
+        return list;
     }
 
     /**
-     * 新增或更新一筆收藏 (用 ID 來判斷是新增還是更新)。
+     * 所有收藏的店家 id (唯讀)：直接拿快照，不查資料庫；還沒讀完是空的。
      */
-    public synchronized void add(@Nullable Place place) {
-        if (place == null || place.id == null) return; // 保護：無效資料就直接跳過
+    @NonNull
+    public Set<String> getIds() {
+        return snapshot().ids();
+    }
 
-        List<Place> list = new ArrayList<>(getAll()); // 取得目前所有的收藏
-        int idx = indexOfId(list, place.id);          // 檢查這家店是否已經在清單裡
+    /**
+     * 目前的收藏快照：只是一次 AtomicReference.get()，主執行緒也可以呼叫。
+     * 啟動時的背景讀取還沒完成就回傳 FavoritesSnapshot.EMPTY。
+     */
+    @NonNull
+    public FavoritesSnapshot snapshot() {
+        FavoritesSnapshot s = snapshot.get();
+        return s != null ? s : FavoritesSnapshot.EMPTY;
+    }
+
+    /** 重新從資料表讀快照 (記下的動作沒寫成功時，UserActionJournal 用它把快照拉回跟資料庫一樣)。 */
+    public void reloadSnapshot() {
+        ensureMigrated();
+        loadSnapshot(true);
+    }
+
+    /** 先把快照標成已收藏 (資料庫之後才寫)；快照還沒讀過就不用管，之後讀資料表自然會有。 */
+    public void publishAdded(@Nullable String id) {
+        if (id != null) tryPublish(s -> s.withAdded(Collections.singletonList(id)));
+    }
+
+    /** 先把快照標成沒收藏 (資料庫之後才寫)。 */
+    public void publishRemoved(@Nullable String id) {
+        if (id != null) tryPublish(s -> s.withRemoved(Collections.singletonList(id)));
+    }
 
-        if (idx >= 0) {
-            list.set(idx, place);   // 如果已經存在，就用新的資料覆蓋掉舊的 (更新)
-        } else {
-            list.add(place);        // 如果不存在，就加到清單尾巴 (新增)
+    /**
+     * 新增一筆收藏 (已經收藏過的不動，收藏順序不變)。
+     */
+    public void add(@Nullable Place place) {
+        if (place == null || place.id == null) return; // 保護：無效資料就直接跳過
+        addAll(Collections.singletonList(place));
+    }
+
+    /**
+     * 一次新增多筆收藏：一個批次寫完。
+     */
+    public void addAll(@Nullable Collection<Place> places) {
+        if (places == null || places.isEmpty()) return;
+        List<String> ids = new ArrayList<>(places.size());
+        for (Place place : places) {
+            if (place != null && place.id != null) ids.add(place.id);
         }
-        save(list); // 把更新後的清單存回手機
+        addIds(ids);
+    }
+
+    /**
+     * 用店家 id 一次新增多筆收藏 (UserActionJournal 提交時在它的交易裡呼叫)。
+     */
+    public void addIds(@Nullable Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) return;
+        ensureMigrated();
+        long now = System.currentTimeMillis();
+        List<FavoriteEntity> rows = new ArrayList<>(ids.size());
+        for (String id : ids) if (id != null) rows.add(new FavoriteEntity(id, now));
+        if (rows.isEmpty()) return;
+        dao.insertIgnore(rows);
+        publish(s -> s.withAdded(ids));
     }
 
     /**
      * 透過店家 ID 來移除一筆收藏。
      */
-    public synchronized void removeById(String id) {
+    public void removeById(String id) {
         if (id == null) return; // 保護
+        ensureMigrated();
+        dao.remove(id);
+        publish(s -> s.withRemoved(Collections.singletonList(id)));
+    }
 
-        List<Place> list = new ArrayList<>(getAll()); // 取得目前清單
-        int idx = indexOfId(list, id);                // 找到要移除的店家位置
-
-        if (idx >= 0) {
-            list.remove(idx); // 從清單中移除
-            save(list);       // 存檔
-        }
+    /**
+     * 一次移除多筆收藏 (UserActionJournal 提交時在它的交易裡呼叫)。
+     */
+    public void removeIds(@Nullable Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) return;
+        ensureMigrated();
+        for (String id : ids) if (id != null) dao.remove(id);
+        publish(s -> s.withRemoved(ids));
     }
 
     /**
      * removeById 的另一個別名，功能完全相同。
      */
-    public synchronized void remove(String id) {
+    public void remove(String id) {
         removeById(id);
     }
 
+    /**
+     * 檢查某個 ID 的店家是否已經被收藏 (查快照，不上鎖、不查資料庫；快照還沒讀完就是 false)。
+     */
+    public boolean contains(String id) {
+        if (id == null) return false;
+        return snapshot().contains(id);
+    }
 
     /**
-     * 檢查某個 ID 的店家是否已經被收藏。
+     * 某家店是不是收藏中 (詳情頁的愛心按鈕用)：跟著快照變，記下收藏的當下就更新，不用等資料庫提交。
+     * 快照讀完之前不會發出任何值。
      */
-    public synchronized boolean contains(String id) {
-        return indexOfId(getAll(), id) >= 0; // 只要找得到位置(>=0)，就代表已收藏
+    public LiveData<Boolean> observeContains(@NonNull String id) {
+        return Transformations.distinctUntilChanged(
+                Transformations.map(snapshotLive, s -> s.contains(id)));
+    }
+
+    /**
+     * 收藏筆數，favorites 有變動就自動更新 (收藏頁決定要不要顯示空白提示)。
+     */
+    public LiveData<Integer> observeCount() {
+        return dao.observeCount();
+    }
+
+    /**
+     * 收藏頁的分頁來源：一頁一頁 JOIN 目錄讀出來，favorites / stores 有變動會自己重新整理。
+     */
+    @NonNull
+    public FavoritesPagingSource newPagingSource() {
+        return new FavoritesPagingSource(db, pagingExecutor);
+    }
+
+    /**
+     * 舊版收藏 (SharedPreferences) 還沒搬進資料表的話現在搬 (在背景執行緒呼叫)。
+     * 其他方法會自己呼叫；只用分頁讀列表的畫面要先呼叫一次。搬完順便把快照讀進來。
+     */
+    public void ensureMigrated() {
+        if (!migrated) {
+            synchronized (this) {
+                if (!migrated) {
+                    migrateFromPrefs();
+                    migrated = true;
+                }
+            }
+        }
+        if (snapshot.get() == null) loadSnapshot(false);
     }
 
     // ---------------- 內部使用的工具方法 ----------------
 
+    /** 從資料表讀快照 (force = 已經有了也重讀)。讀的順序就是收藏先後。 */
+    private void loadSnapshot(boolean force) {
+        synchronized (loadLock) {
+            if (snapshot.get() != null && !force) return;
+            snapshot.set(FavoritesSnapshot.of(dao.getIds()));
+        }
+        postSnapshot();
+    }
+
     /**
-     * 內部專用：將店家清單翻譯成 JSON 文字並存入 SharedPreferences。
+     * 資料庫寫完之後更新快照。快照正在讀的話等它讀完再改，不然讀到的可能是還沒寫進去的舊資料。
      */
-    private void save(List<Place> list) {
-        prefs.edit() // 開始編輯
-                .putString(KEY_FAVORITES, gson.toJson(list, listType)) // 寫入資料
-                .apply(); // 在背景執行存檔
+    private void publish(UnaryOperator<FavoritesSnapshot> change) {
+        while (FavoritesSnapshot.update(snapshot, change) == null) {
+            synchronized (loadLock) {
+                if (snapshot.get() == null) return; // 還沒讀過：之後讀資料表就會有這次的變動
+            }
+        }
+        postSnapshot();
+    }
+
+    /** 跟 publish 一樣，但快照還沒讀過就直接跳過，絕不等 (主執行緒呼叫)。 */
+    private void tryPublish(UnaryOperator<FavoritesSnapshot> change) {
+        if (FavoritesSnapshot.update(snapshot, change) != null) postSnapshot();
+    }
+
+    /** 把目前的快照送給 observeContains 的觀察者 (postValue 會合併，連續改很多次也只更新一次畫面)。 */
+    private void postSnapshot() {
+        synchronized (postLock) {
+            FavoritesSnapshot s = snapshot.get();
+            if (s != null) snapshotLive.postValue(s);
+        }
     }
 
     /**
-     * 內部專用：在店家清單中，尋找特定 ID 的店家位於第幾個位置。
-     * @return 找到就回傳位置 (0, 1, 2...)，找不到就回傳 -1。
+     * 一次性搬家：把舊版 SharedPreferences 裡的收藏 JSON 寫進 favorites，寫成功才刪掉舊的 key
+     * (中途被關掉的話，下次開 App 會再搬一次；已經搬過的那幾筆 insertIgnore 不會重複)。
+     * 收藏時間照舊清單的順序遞增，收藏頁的順序不變。
      */
-    private static int indexOfId(List<Place> list, String id) {
-        if (list == null || id == null) return -1;
-        // 迴圈，一個一個比對
-        for (int i = 0; i < list.size(); i++) {
-            Place p = list.get(i);
-            if (p != null && id.equals(p.id)) {
-                return i; // 找到了，回傳當前位置
+    private void migrateFromPrefs() {
+        String json = prefs.getString(KEY_FAVORITES, null);
+        if (json == null) return;
+        try {
+            List<Place> old = gson.fromJson(json, listType);
+            if (old != null && !old.isEmpty()) {
+                long base = System.currentTimeMillis() - old.size();
+                List<FavoriteEntity> rows = new ArrayList<>(old.size());
+                for (int i = 0; i < old.size(); i++) {
+                    Place p = old.get(i);
+                    if (p == null || p.id == null) continue;
+                    rows.add(new FavoriteEntity(p.id, base + i)); // 只留 id，店家內容以目錄為準
+                }
+                dao.insertIgnore(rows);
+                Log.i(TAG, "migrated " + rows.size() + " favorite(s) from prefs");
             }
+        } catch (RuntimeException e) {
+            // 舊資料解析不了：留著 key 不刪，至少不要把使用者的收藏弄丟
+            Log.e(TAG, "migrate favorites from prefs failed", e);
+            return;
         }
-        return -1; // 全部比對完都沒找到
+        prefs.edit().remove(KEY_FAVORITES).apply();
     }
 }
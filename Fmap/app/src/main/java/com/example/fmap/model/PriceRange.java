@@ -31,6 +31,9 @@ public class PriceRange implements Serializable {
     public String getText() { return text; }
     public void setText(String text) { this.text = text; }
 
+    public Integer getLevel() { return level; }
+    public void setLevel(Integer level) { this.level = level; }
+
 
     /**
      * 覆寫 toString 方法，定義當這個物件被當成文字使用時，應該顯示什麼。
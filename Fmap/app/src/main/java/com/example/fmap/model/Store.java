@@ -29,10 +29,18 @@ public class Store {
     @SerializedName("tags")
     private List<String> tags;
 
+    // 對應 JSON 中的服務項目，例如 ["內用", "外帶", "外送"]
+    @SerializedName("services")
+    private List<String> services;
+
     // 對應 JSON 中的推薦菜單清單
     @SerializedName("menu_items")
     private List<String> menuItems;
 
+    // 對應 JSON 中的分組菜單，例如 {"Coffee": ["美式咖啡", "拿鐵咖啡"], "Tea": [...]}
+    @SerializedName("menu_groups")
+    private Map<String, List<String>> menuGroups;
+
     // 對應 JSON 中的價位物件，例如 { "min": 200, "max": 400 }
     @SerializedName("price_range")
     private PriceRange priceRange;
@@ -73,8 +81,12 @@ public class Store {
     public List<String> getTags() { return tags; }
     public void setTags(List<String> tags) { this.tags = tags; }
 
+    public List<String> getServices() { return services; }
+
     public List<String> getMenuItems() { return menuItems; }
 
+    public Map<String, List<String>> getMenuGroups() { return menuGroups; }
+
     public PriceRange getPriceRange() { return priceRange; }
 
     public String getAddress() { return address; }
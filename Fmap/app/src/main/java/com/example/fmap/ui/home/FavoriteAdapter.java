@@ -10,20 +10,24 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.example.fmap.R;
 import com.example.fmap.model.Place;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
-/** 用於顯示收藏店家列表的 RecyclerView Adapter */
-public class FavoriteAdapter extends RecyclerView.Adapter<FavoriteAdapter.FavoriteViewHolder> {
+/**
+ * 用於顯示收藏店家列表的 RecyclerView Adapter。
+ * 資料是 FavoritesViewModel.getFavorites() 的分頁 (PagingData，見 FavoritesPagingSource)：
+ * 只有畫面附近的幾頁會讀出來，新舊資料在背景執行緒比對 (PlaceDiff)，只有變動的列會重新綁定。
+ * 取消收藏不用自己從列表拿掉，資料表一變 Paging 就會重讀畫面附近那一頁。
+ */
+public class FavoriteAdapter extends PagingDataAdapter<Place, FavoriteAdapter.FavoriteViewHolder> {
 
-    private final List<Place> favoriteList = new ArrayList<>();
     private final OnFavoriteClickListener listener;
     private final Context context;
 
@@ -33,22 +37,10 @@ public class FavoriteAdapter extends RecyclerView.Adapter<FavoriteAdapter.Favori
     }
 
     public FavoriteAdapter(Context context, @NonNull OnFavoriteClickListener listener) {
+        super(PlaceDiff.ITEM);
         this.context = context.getApplicationContext();
         this.listener = listener;
-    }
-
-    public void submitList(List<Place> newPlaces) {
-        favoriteList.clear();
-        if (newPlaces != null) favoriteList.addAll(newPlaces);
-        notifyDataSetChanged();
-    }
-
-    public void removeItem(int position) {
-        if (position >= 0 && position < favoriteList.size()) {
-            favoriteList.remove(position);
-            notifyItemRemoved(position);
-            notifyItemRangeChanged(position, favoriteList.size());
-        }
+        // PagingDataAdapter 不支援 setHasStableIds，列的身分由 PlaceDiff 用店家 id 比對
     }
 
     @NonNull
@@ -61,12 +53,10 @@ public class FavoriteAdapter extends RecyclerView.Adapter<FavoriteAdapter.Favori
 
     @Override
     public void onBindViewHolder(@NonNull FavoriteViewHolder holder, int position) {
-        holder.bind(favoriteList.get(position), context, listener);
+        Place item = getItem(position); // 同時告訴 Paging 畫面讀到哪了
+        if (item != null) holder.bind(item, context, listener);
     }
 
-    @Override
-    public int getItemCount() { return favoriteList.size(); }
-
     /** ViewHolder：綁定 item_favorite.xml 的元件 */
     static class FavoriteViewHolder extends RecyclerView.ViewHolder {
         private final ImageView imgThumb;
@@ -11,20 +11,18 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.fmap.R;
-import com.example.fmap.model.FavoritesStore;
 import com.example.fmap.model.Place;
 
-import java.util.List;
-
 public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavoriteClickListener {
 
     private RecyclerView recyclerView;
     private FavoriteAdapter adapter;
-    private FavoritesStore favoritesStore;
+    private FavoritesViewModel favoritesViewModel;
     private TextView emptyView;
 
     @Nullable
@@ -36,12 +34,16 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
-        favoritesStore = FavoritesStore.getInstance(requireContext());
+        favoritesViewModel = new ViewModelProvider(this).get(FavoritesViewModel.class);
 
         recyclerView = view.findViewById(R.id.rvFavorites);
         emptyView = view.findViewById(R.id.tvEmptyFav);
 
         setupRecyclerView();
+        // 列表一頁一頁在背景讀 (JOIN 目錄)；收藏有變動會自動更新，不用在 onResume 重新載入
+        favoritesViewModel.getFavorites().observe(getViewLifecycleOwner(), data ->
+                adapter.submitData(getViewLifecycleOwner().getLifecycle(), data));
+        favoritesViewModel.getCount().observe(getViewLifecycleOwner(), this::renderEmpty);
     }
     private void setupRecyclerView() {
         adapter = new FavoriteAdapter(requireContext(), this);
@@ -49,15 +51,9 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
         recyclerView.setAdapter(adapter);
     }
 
-    private void loadFavorites() {
-        if (favoritesStore == null || adapter == null) return;
-
-        List<Place> favoritePlaces = favoritesStore.getAll();
-        adapter.submitList(favoritePlaces);
-
-        if (emptyView != null) {
-            emptyView.setVisibility(favoritePlaces.isEmpty() ? View.VISIBLE : View.GONE);
-        }
+    private void renderEmpty(@Nullable Integer count) {
+        if (count == null || emptyView == null) return;
+        emptyView.setVisibility(count == 0 ? View.VISIBLE : View.GONE);
     }
 
     @Override
@@ -71,14 +67,8 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
 
     @Override
     public void onHeartClick(Place place, int position) {
-        if (favoritesStore != null && place != null && place.getId() != null) {
-            favoritesStore.removeById(place.getId());
-            adapter.removeItem(position);
-
-            if (adapter.getItemCount() == 0 && emptyView != null) {
-                emptyView.setVisibility(View.VISIBLE);
-            }
-
+        if (favoritesViewModel != null && place != null && place.getId() != null) {
+            favoritesViewModel.removeById(place.getId()); // 列表和空白提示由資料表變動自動更新
             Toast.makeText(getContext(), "已取消收藏：" + place.getName(), Toast.LENGTH_SHORT).show();
         }
     }
@@ -89,7 +79,6 @@ public class FavoriteFragment extends Fragment implements FavoriteAdapter.OnFavo
         if (getActivity() instanceof MainActivity) {
             ((MainActivity) getActivity()).setDrawerIconEnabled(false); // 🔹 變暗＋鎖定
         }
-        loadFavorites();
     }
 
     /** 離開時恢復 Drawer */
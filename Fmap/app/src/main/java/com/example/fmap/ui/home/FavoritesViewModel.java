@@ -5,46 +5,80 @@ import android.app.Application;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
 
+import com.example.fmap.data.FavoritesPagingSource;
+import com.example.fmap.data.UserActionJournal;
+import com.example.fmap.data.local.UserActionEntity;
 import com.example.fmap.model.FavoritesStore;
 import com.example.fmap.model.Place;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * 管理收藏資料的 ViewModel
+ * 管理收藏資料的 ViewModel。
+ * 收藏列表是分頁的：一頁一個 JOIN 目錄的查詢，在背景讀；收藏幾千筆也只讀畫面附近那幾頁。
+ * favorites 有變動 (這裡、詳情頁、Home 滑卡片) 列表和筆數都會自動更新，不用手動重新載入。
  */
 public class FavoritesViewModel extends AndroidViewModel {
 
+    // 收藏頁翻頁：一頁幾筆、離邊界幾筆就先載下一頁、記憶體裡最多留幾筆
+    private static final int PAGE_SIZE = 30;
+    private static final int PREFETCH = 15;
+    private static final int MAX_LOADED = 150;
+
     private final FavoritesStore store;
-    private final MutableLiveData<List<Place>> favorites = new MutableLiveData<>(new ArrayList<>());
+    private final LiveData<PagingData<Place>> favorites;
+    private final LiveData<Integer> count;
+    // 取消收藏記進動作日誌 (背景批次提交)
+    private final UserActionJournal journal;
+    // 搬舊資料不要在主執行緒做
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
 
     public FavoritesViewModel(@NonNull Application app) {
         super(app);
         store = FavoritesStore.getInstance(app.getApplicationContext());
+        journal = UserActionJournal.getInstance(app.getApplicationContext());
+        Pager<FavoritesPagingSource.Key, Place> pager = new Pager<>(
+                new PagingConfig(PAGE_SIZE, PREFETCH, false, PAGE_SIZE * 2, MAX_LOADED),
+                null,
+                store::newPagingSource);
+        favorites = PagingLiveData.cachedIn(PagingLiveData.getLiveData(pager), ViewModelKt.getViewModelScope(this));
+        count = store.observeCount();
+        // 舊版收藏還沒搬進資料表的話先搬 (搬完資料表有寫入，列表會自己重新整理)
+        executor.execute(store::ensureMigrated);
     }
 
     /**
-     * 提供收藏列表的 LiveData 給 UI 觀察
+     * 提供收藏列表 (分頁) 的 LiveData 給 UI 觀察
      */
-    public LiveData<List<Place>> getFavorites() {
+    public LiveData<PagingData<Place>> getFavorites() {
         return favorites;
     }
 
     /**
-     * 重新載入收藏資料
+     * 收藏筆數 (決定要不要顯示空白提示)
      */
-    public void load() {
-        favorites.setValue(store.getAll());
+    public LiveData<Integer> getCount() {
+        return count;
     }
 
     /**
-     * 依照 ID 移除收藏，並更新列表
+     * 依照 ID 移除收藏 (列表由資料表變動自動更新)
      */
     public void removeById(String id) {
-        store.remove(id);
-        load(); // 重新載入以更新 UI
+        if (id == null) return;
+        journal.record(UserActionEntity.UNFAVORITE, id);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        executor.shutdown();
     }
 }
@@ -0,0 +1,180 @@
+package com.example.fmap.ui.home;
+
+import com.example.fmap.data.local.StoreLocation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 地圖分群用的階層式格網：用整個篩選結果的店家座標 (StoreLocation，只有 id 和經緯度) 建一次，
+ * 給每個整數縮放層級算出「一格一個群組」。同一組篩選條件一直用同一個 (見 HomeViewModel.queryViewport)，
+ * 滑掉的店用 remove 拿掉就好，不用重查資料庫。
+ *
+ * - 格子以 Web Mercator 的畫面座標切 (跟 Google 地圖的圖磚一樣)，一格 CELL_DP 見方，
+ *   縮放層級 z 每一邊有 2^(z+1) 格；縮小一級時，相鄰的 2×2 格正好合併成一格。
+ * - 所以只有最細的一層 (MAX_CLUSTER_ZOOM) 要逐一看每家店，比較粗的層級直接合併下一層的格子，
+ *   不用重新掃全部店家；每一層算過就留著，之後拖動地圖只要挑出範圍內的群組。
+ * - 再放大 (> MAX_CLUSTER_ZOOM) 就不分群了，一家一顆 marker (見 HomeViewModel.loadViewport)。
+ *
+ * 只有一家店的格子回傳 count = 1、key = 店家 id、place = null 的群組，
+ * 店家資料由 HomeViewModel 只針對這幾家讀出來再換成 MapCluster.of(place)。
+ *
+ * 不是執行緒安全的：只在 HomeViewModel 的背景執行緒 (單一執行緒) 上使用。
+ */
+public class GridClusterIndex {
+
+    /** 這個層級 (含) 以下才分群。 */
+    public static final int MAX_CLUSTER_ZOOM = 16;
+
+    // 一格的大小 (dp，以 256dp 一張圖磚的世界座標計算)
+    private static final int CELL_DP = 128;
+    private static final int TILE_DP = 256;
+    // Web Mercator 能表示的緯度上限
+    private static final double MAX_LAT = 85.05112878;
+
+    // id → 座標 (照讀進來的順序)
+    private final Map<String, StoreLocation> source = new LinkedHashMap<>();
+    // levels[z] = 縮放層級 z 的所有格子 (還沒算過就是 null)
+    private final Cell[][] levels = new Cell[MAX_CLUSTER_ZOOM + 1][];
+
+    public GridClusterIndex(List<StoreLocation> locations) {
+        if (locations == null) return;
+        for (StoreLocation p : locations) {
+            if (p == null || p.id == null) continue;
+            if (p.lat == 0.0 && p.lng == 0.0) continue;
+            source.put(p.id, p);
+        }
+    }
+
+    /**
+     * 拿掉這些店 (例如剛滑掉的)。真的有拿掉才丟掉算好的層級，下次 clustersIn 從最細的一層重算
+     * (只在記憶體裡算，不查資料庫)；已經拿掉的再拿一次不會怎樣。
+     */
+    public void remove(Collection<String> ids) {
+        boolean changed = false;
+        for (String id : ids) {
+            if (source.remove(id) != null) changed = true;
+        }
+        if (changed) Arrays.fill(levels, null);
+    }
+
+    /**
+     * 縮放層級 zoom 時，群組中心落在 [south, north] × [west, east] 內的群組。
+     * west > east 代表範圍跨過換日線。
+     */
+    public List<MapCluster> clustersIn(int zoom, double south, double west, double north, double east) {
+        int z = Math.max(0, Math.min(MAX_CLUSTER_ZOOM, zoom));
+        List<MapCluster> out = new ArrayList<>();
+        for (Cell c : level(z)) {
+            double lat = c.sumLat / c.count, lng = c.sumLng / c.count;
+            if (lat < south || lat > north) continue;
+            boolean inLng = west <= east ? (lng >= west && lng <= east) : (lng >= west || lng <= east);
+            if (inLng) out.add(c.toCluster(z));
+        }
+        return out;
+    }
+
+    private Cell[] level(int z) {
+        if (levels[z] != null) return levels[z];
+        Map<Long, Cell> cells = new HashMap<>();
+        if (z == MAX_CLUSTER_ZOOM) {
+            // 最細的一層：每家店放進它的格子
+            int n = cellsPerSide(z);
+            for (StoreLocation p : source.values()) {
+                double lat = p.lat, lng = p.lng;
+                int cx = Math.min(n - 1, (int) (mercatorX(lng) * n));
+                int cy = Math.min(n - 1, (int) (mercatorY(lat) * n));
+                cellAt(cells, cx, cy).add(lat, lng, p);
+            }
+        } else {
+            // 比較粗的層級：下一層的 2×2 格合併成一格
+            for (Cell child : level(z + 1)) {
+                cellAt(cells, child.cx >> 1, child.cy >> 1).merge(child);
+            }
+        }
+        levels[z] = cells.values().toArray(new Cell[0]);
+        return levels[z];
+    }
+
+    private static Cell cellAt(Map<Long, Cell> cells, int cx, int cy) {
+        long key = ((long) cx << 32) | (cy & 0xffffffffL);
+        Cell c = cells.get(key);
+        if (c == null) {
+            c = new Cell(cx, cy);
+            cells.put(key, c);
+        }
+        return c;
+    }
+
+    private static int cellsPerSide(int zoom) {
+        return (TILE_DP << zoom) / CELL_DP;
+    }
+
+    /** 經度 → 0..1 (Web Mercator x)。 */
+    private static double mercatorX(double lng) {
+        double x = (lng + 180) / 360;
+        return Math.max(0, Math.min(1, x));
+    }
+
+    /** 緯度 → 0..1 (Web Mercator y，北邊是 0)。 */
+    private static double mercatorY(double lat) {
+        double rad = Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, lat)));
+        double y = 0.5 - Math.log(Math.tan(Math.PI / 4 + rad / 2)) / (2 * Math.PI);
+        return Math.max(0, Math.min(1, y));
+    }
+
+    /** 一格的累計值：店家數、座標總和 (算平均)、範圍；只有一家店時記住是哪一家。 */
+    private static final class Cell {
+        final int cx, cy;
+        int count;
+        double sumLat, sumLng;
+        double south = Double.MAX_VALUE, west = Double.MAX_VALUE;
+        double north = -Double.MAX_VALUE, east = -Double.MAX_VALUE;
+        StoreLocation single;
+        MapCluster cluster; // toCluster 算過就留著
+
+        Cell(int cx, int cy) {
+            this.cx = cx;
+            this.cy = cy;
+        }
+
+        void add(double lat, double lng, StoreLocation p) {
+            single = count == 0 ? p : null;
+            count++;
+            sumLat += lat;
+            sumLng += lng;
+            south = Math.min(south, lat);
+            north = Math.max(north, lat);
+            west = Math.min(west, lng);
+            east = Math.max(east, lng);
+        }
+
+        void merge(Cell o) {
+            single = count == 0 ? o.single : null;
+            count += o.count;
+            sumLat += o.sumLat;
+            sumLng += o.sumLng;
+            south = Math.min(south, o.south);
+            north = Math.max(north, o.north);
+            west = Math.min(west, o.west);
+            east = Math.max(east, o.east);
+        }
+
+        MapCluster toCluster(int zoom) {
+            if (cluster != null) return cluster;
+            if (single != null) {
+                cluster = new MapCluster(single.id, single.lat, single.lng, 1,
+                        single.lat, single.lng, single.lat, single.lng, null);
+            } else {
+                cluster = new MapCluster(zoom + "/" + cx + "/" + cy, sumLat / count, sumLng / count, count,
+                        south, west, north, east, null);
+            }
+            return cluster;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import androidx.annotation.Nullable;
 import androidx.drawerlayout.widget.DrawerLayout;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.LoadState;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -30,13 +31,12 @@ import com.google.android.material.chip.ChipGroup;
 
 // ★ 新增 import
 import com.example.fmap.util.LocationReporter;
+import com.example.fmap.util.TextNormalizer;
 import java.util.Arrays;
 
-import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Set;
 
 public class HomeFragment extends Fragment implements PlacesAdapter.OnPlaceClickListener {
@@ -49,6 +49,8 @@ public class HomeFragment extends Fragment implements PlacesAdapter.OnPlaceClick
     private PlacesAdapter adapter;
     private HomeViewModel homeViewModel;
     private ChipGroup chipGroupTags;
+    private Chip chipOpenNow;
+    private Chip chipRadius;
 
     // 自訂搜尋列（與 Map 相同樣式）
     private EditText etHomeSearch;
@@ -88,13 +90,14 @@ public class HomeFragment extends Fragment implements PlacesAdapter.OnPlaceClick
         }
 
         homeViewModel = new ViewModelProvider(requireActivity()).get(HomeViewModel.class);
-        // 多標籤預設 ANY（店家只要命中其中一個）
-        homeViewModel.setTagMatchMode(HomeViewModel.TagMatchMode.ANY);
+        // 多標籤預設 ANY（店家只要命中其中一個）：預設值放在 ViewModel，這裡不用每次建畫面都再設一次 (會多觸發一次載入)
 
         initViews(v);
         ensureChipGroupMultiSelect();
         setupRecyclerView();
         bindSearchBar();          // ★ 改用自訂搜尋列
+        bindOpenNowChip();
+        bindRadiusChip();
         // 若你想「勾選當下就更新」可打開下一行；目前需求是關閉側欄才更新所以不啟用
         // bindChipImmediateUpdate();
         observeViewModel();
@@ -107,7 +110,7 @@ public class HomeFragment extends Fragment implements PlacesAdapter.OnPlaceClick
             Log.w(TAG, "找不到 DrawerLayout (R.id.drawer_layout)，無法在關閉時套用類別。");
         }
 
-        if (homeViewModel.getPlaces().getValue() == null) {
+        if (homeViewModel.getResultBounds().getValue() == null) {
             homeViewModel.loadPlaces();
         }
 
@@ -121,6 +124,8 @@ public class HomeFragment extends Fragment implements PlacesAdapter.OnPlaceClick
         tvEmpty = view.findViewById(R.id.tvEmpty);
         loadingIndicator = view.findViewById(R.id.loading_indicator);
         chipGroupTags = view.findViewById(R.id.chip_group_tags);
+        chipOpenNow = view.findViewById(R.id.chip_open_now);
+        chipRadius = view.findViewById(R.id.chip_radius);
 
         // 自訂搜尋列
         etHomeSearch = view.findViewById(R.id.et_home_search);
@@ -142,7 +147,7 @@ public class HomeFragment extends Fragment implements PlacesAdapter.OnPlaceClick
 
         ItemTouchHelper itemTouchHelper = new ItemTouchHelper(
                 new SwipeCallback(adapter, (swipeAction, pos) -> {
-                    Place swipedPlace = adapter.getItem(pos);
+                    Place swipedPlace = adapter.placeAt(pos);
                     if (swipedPlace == null) return;
                     homeViewModel.handleSwipeAction(swipeAction, swipedPlace);
 
@@ -192,6 +197,32 @@ public class HomeFragment extends Fragment implements PlacesAdapter.OnPlaceClick
         }
     }
 
+    /** 「營業中」chip：勾選當下就重新篩選 (ViewModel 會到營業時段表查一次) */
+    private void bindOpenNowChip() {
+        if (chipOpenNow == null) return;
+        chipOpenNow.setChecked(Boolean.TRUE.equals(homeViewModel.getOpenNowOnly().getValue()));
+        chipOpenNow.setOnCheckedChangeListener((button, checked) -> homeViewModel.setOpenNowOnly(checked));
+    }
+
+    /** 範圍 chip：每點一次換下一個範圍 (HomeViewModel.RADIUS_OPTIONS_KM)，結果由近到遠排。 */
+    private void bindRadiusChip() {
+        if (chipRadius == null) return;
+        homeViewModel.getRadiusKm().observe(getViewLifecycleOwner(), km -> {
+            boolean limited = km != null && km > 0;
+            chipRadius.setText(limited ? "範圍：" + HomeViewModel.formatKm(km) + " 公里" : "範圍：不限");
+            chipRadius.setChecked(limited);
+        });
+        chipRadius.setOnClickListener(v -> {
+            double[] options = HomeViewModel.RADIUS_OPTIONS_KM;
+            Double cur = homeViewModel.getRadiusKm().getValue();
+            int next = 0;
+            for (int i = 0; i < options.length; i++) {
+                if (cur != null && options[i] == cur) next = (i + 1) % options.length;
+            }
+            homeViewModel.setRadiusKm(options[next]);
+        });
+    }
+
     /**
      * （可選）若你同時也想在「勾選 chip 當下」就更新，打開 onViewCreated 裡的呼叫並保留此方法
      * 目前依你的需求（關閉側欄才刷新），預設不啟用。
@@ -205,26 +236,27 @@ public class HomeFragment extends Fragment implements PlacesAdapter.OnPlaceClick
         });
     }
 
-    /** LiveData observers：以 places 決定可見度；isLoading 只控轉圈圈 */
+    /** LiveData observers：以牌堆的載入狀態決定可見度；isLoading 只控轉圈圈 */
     private void observeViewModel() {
         homeViewModel.getSelectedTags().observe(getViewLifecycleOwner(), tags ->
                 Log.d(TAG, "VM -> 標籤(類別)已更新: " + tags)
         );
 
-        homeViewModel.getPlaces().observe(getViewLifecycleOwner(), places -> {
-            if (places == null) return;
+        // 卡片：分頁資料交給 adapter，它會在背景比對新舊資料，只更新有變的卡片
+        homeViewModel.getDeck().observe(getViewLifecycleOwner(), data ->
+                adapter.submitData(getViewLifecycleOwner().getLifecycle(), data));
 
-            Log.d(TAG, "UI 接到 places 筆數=" + places.size());
-            adapter.submit(places);
-            // 保險：即使 submit() 未用 DiffUtil，也確保刷新
-            adapter.notifyDataSetChanged();
+        // 牌堆讀完一輪 (換條件、滑掉卡片之後) 再決定要顯示卡片還是空白提示
+        adapter.addLoadStateListener(states -> {
+            if (!(states.getRefresh() instanceof LoadState.NotLoading)) return kotlin.Unit.INSTANCE;
 
-            boolean hasItems = !places.isEmpty();
+            boolean hasItems = adapter.getItemCount() > 0;
             rvCards.setVisibility(hasItems ? View.VISIBLE : View.GONE);
             emptyView.setVisibility(hasItems ? View.GONE : View.VISIBLE);
 
             rvCards.bringToFront();
             rvCards.invalidate();
+            return kotlin.Unit.INSTANCE;
         });
 
         homeViewModel.getIsLoading().observe(getViewLifecycleOwner(), isLoading -> {
@@ -265,21 +297,12 @@ public class HomeFragment extends Fragment implements PlacesAdapter.OnPlaceClick
         List<String> vm = homeViewModel.getSelectedTags().getValue();
         if (vm == null) vm = new ArrayList<>();
         Set<String> a = new HashSet<>();
-        for (String s : uiSelected) a.add(norm(s));
+        for (String s : uiSelected) a.add(TextNormalizer.norm(s));
         Set<String> b = new HashSet<>();
-        for (String s : vm) b.add(norm(s));
+        for (String s : vm) b.add(TextNormalizer.norm(s));
         return a.equals(b);
     }
 
-    private static String norm(String s) {
-        if (s == null) return "";
-        String x = s.replace("\ufeff", "")
-                .replace("\u200b", "").replace("\u200c", "").replace("\u200d", "")
-                .trim();
-        x = Normalizer.normalize(x, Normalizer.Form.NFKC);
-        return x.toLowerCase(Locale.ROOT);
-    }
-
     @Override
     public void onResume() {
         super.onResume();
@@ -1,34 +1,49 @@
 package com.example.fmap.ui.home;
 
 import android.app.Application;
-import android.content.Context;
-import android.content.SharedPreferences;
+import android.location.Location;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
 
 import com.example.fmap.BuildConfig;
+import com.example.fmap.data.HomeDeckPagingSource;
 import com.example.fmap.data.StoresRepository;
+import com.example.fmap.data.TrashPagingSource;
+import com.example.fmap.data.UserActionJournal;
+import com.example.fmap.data.local.StoreBounds;
 import com.example.fmap.data.local.StoreEntity;
+import com.example.fmap.data.local.StoreFilter;
+import com.example.fmap.data.local.StoreLocation;
 import com.example.fmap.data.local.StoreMappers;
-import com.example.fmap.model.FavoritesStore;
+import com.example.fmap.data.local.UserActionEntity;
+import com.example.fmap.model.DislikesStore;
 import com.example.fmap.model.Place;
 import com.example.fmap.model.Swipe;
+import com.example.fmap.util.LatestWinsScheduler;
+import com.example.fmap.util.LocationReporter;
 import com.example.fmap.util.OpenAIClient;
 
-import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ExecutorService;
+import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class HomeViewModel extends AndroidViewModel {
 
@@ -39,84 +54,157 @@ public class HomeViewModel extends AndroidViewModel {
 
     public enum TagMatchMode { ANY, ALL }
 
+    // 不分群 (放大到街道) 時，地圖一次最多畫幾家店 (畫面範圍內評分高的優先)
+    private static final int MAX_VIEWPORT_STORES = 300;
+
+    // Home 牌堆翻頁：一頁幾張、離邊界幾張就先載下一頁、記憶體裡最多留幾張 (超過就丟掉離畫面最遠的頁)
+    private static final int DECK_PAGE_SIZE = 20;
+    private static final int DECK_PREFETCH = 10;
+    private static final int DECK_MAX_LOADED = 100;
+
+    // 垃圾桶翻頁
+    private static final int TRASH_PAGE_SIZE = 30;
+    private static final int TRASH_PREFETCH = 15;
+    private static final int TRASH_MAX_LOADED = 150;
+
+    // 篩選條件連續改變 (連點好幾個分類、打字搜尋) 時，停手多久才真的查詢；期間的變更合併成一次
+    private static final long LOAD_DEBOUNCE_MS = 200;
+
+    /** 可以選的「附近」範圍 (公里)；0 = 不限。 */
+    public static final double[] RADIUS_OPTIONS_KM = {0, 1, 3, 5, 10};
+
     // --- UI State LiveData ---
-    private final MutableLiveData<List<Place>> places = new MutableLiveData<>();
+    // Home 卡片牌堆：直接對 stores 下篩選條件一頁一頁讀，只有畫面附近的幾頁會變成 Place
+    private final LiveData<PagingData<Place>> deck;
+    // 目前給 Pager 的牌堆來源 (換篩選條件、滑掉卡片時 invalidate 它，Pager 會再要一個新的)
+    private volatile HomeDeckPagingSource deckSource;
+    // 下一個牌堆來源要不要從第一張開始讀 (篩選條件換了)；滑掉卡片時接著原本的位置
+    private volatile boolean deckFromTop = true;
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> error = new MutableLiveData<>();
     private final MutableLiveData<String> emptyMessage = new MutableLiveData<>("點擊或滑動卡片來探索");
     private final MutableLiveData<List<String>> selectedTags = new MutableLiveData<>(new ArrayList<>());
-    private final MutableLiveData<TagMatchMode> tagMatchMode = new MutableLiveData<>(TagMatchMode.ALL);
+    private final MutableLiveData<TagMatchMode> tagMatchMode = new MutableLiveData<>(TagMatchMode.ANY);
     private final MutableLiveData<String> searchQuery = new MutableLiveData<>("");
-
-    //地圖聚焦事件（詳情頁呼叫 → 地圖頁觀察並置中）
-    private final MutableLiveData<Event<String>> _navigateToMapAndFocusOn = new MutableLiveData<>();
-    public LiveData<Event<String>> getNavigateToMapAndFocusOn() { return _navigateToMapAndFocusOn; }
+    private final MutableLiveData<Boolean> openNowOnly = new MutableLiveData<>(false);
+    private final MutableLiveData<Double> radiusKm = new MutableLiveData<>(0.0);
+    // 上次載入時用來算距離的位置 (沒有位置就是 null)；地圖拿來畫範圍圈
+    private final MutableLiveData<Location> searchCenter = new MutableLiveData<>();
+    // 地圖畫面範圍內、而且符合目前篩選條件的店家群組 / 單一店家 (MapFragment 用)
+    private final MutableLiveData<List<MapCluster>> viewportClusters = new MutableLiveData<>();
+    // 目前篩選條件下、有座標的店家的數量和範圍；每次載入都會 post 一次 (地圖拿來重查畫面範圍、拉鏡頭)
+    private final MutableLiveData<StoreBounds> resultBounds = new MutableLiveData<>();
+    // 目前的篩選條件 (翻成 SQL)，地圖的畫面範圍查詢也用它；第一次載入完之前是 null
+    private volatile StoreFilter homeFilter;
+    // 上一次的畫面範圍 (只在 viewModelExecutor 上讀寫)，滑掉卡片之後用同一個範圍重查
+    private double[] lastViewport;
+    // 目前篩選結果的分群索引，和它是照哪一個 homeFilter 建的 (只在 viewModelExecutor 上讀寫)
+    private GridClusterIndex clusterIndex;
+    private StoreFilter clusterIndexFilter;
+
+    //地圖聚焦事件（詳情頁呼叫 → 地圖頁觀察並置中）；帶著店家座標，地圖不用自己找
+    private final MutableLiveData<Event<StoreLocation>> _navigateToMapAndFocusOn = new MutableLiveData<>();
+    public LiveData<Event<StoreLocation>> getNavigateToMapAndFocusOn() { return _navigateToMapAndFocusOn; }
 
     // --- Trash（不喜歡） ---
-    private final MutableLiveData<List<Place>> dislikedPlaces = new MutableLiveData<>();
-    private final MutableLiveData<Boolean> isLoadingTrash = new MutableLiveData<>(false);
-    private final MutableLiveData<String> trashError = new MutableLiveData<>();
+    // 由新到舊一頁一頁讀 (dislikes JOIN stores)；dislikes 有變動會自己重新整理
+    private final LiveData<PagingData<Place>> trash;
+    private final LiveData<Integer> trashCount;
 
     // --- Services and Dependencies ---
-    private static final String PREFS_NAME = "FmapUserPrefs";
-    private static final String DISLIKED_PLACES_KEY = "disliked_places";
-
-    private final SharedPreferences prefs;
-    private final FavoritesStore favStore;
-    private final ExecutorService viewModelExecutor;
+    private final DislikesStore dislikeStore;
+    private final ScheduledExecutorService viewModelExecutor;
+    // loadPlaces 的排程：最新的條件贏，舊的查詢取消或丟掉結果
+    private final LatestWinsScheduler loadScheduler;
+    // isLoading 的開 / 關要跟世代編號一起判斷，不然舊查詢收尾時可能把新查詢的 loading 關掉
+    private final Object loadingLock = new Object();
     private final OpenAIClient openAIClient;
     private final StoresRepository storeRepo;
+    // 滑卡片 / 還原 / 永久刪除都記進動作日誌，背景批次提交
+    private final UserActionJournal journal;
+    // 還原提交之後重新載入 Home，讓那些店回到牌堆
+    private final UserActionJournal.Listener journalListener = actions -> {
+        if (actions.contains(UserActionEntity.RESTORE)) loadPlaces();
+    };
+    // 觀察 StoresRepository 的 observeForever 要自己拿掉 (onCleared)，不然 ViewModel 被清掉之後還會一直被叫到
+    private final Observer<Boolean> dbReadyObserver;
+    private final Observer<Integer> importProgressObserver;
 
     public HomeViewModel(@NonNull Application app) {
         super(app);
-        prefs = app.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        favStore = FavoritesStore.getInstance(app.getApplicationContext());
-        viewModelExecutor = Executors.newSingleThreadExecutor();
+        dislikeStore = DislikesStore.getInstance(app.getApplicationContext());
+        viewModelExecutor = Executors.newSingleThreadScheduledExecutor();
+        loadScheduler = new LatestWinsScheduler(viewModelExecutor, LOAD_DEBOUNCE_MS);
         openAIClient = new OpenAIClient(BuildConfig.OPENAI_API_KEY);
+        // 垃圾桶 / 收藏頁是分頁讀資料表的，提交完會自己重新整理；Home 只在有還原時要重新載入
+        journal = UserActionJournal.getInstance(app.getApplicationContext());
+        journal.addListener(journalListener);
 
         storeRepo = new StoresRepository(app);
+        Pager<HomeDeckPagingSource.Key, Place> pager = new Pager<>(
+                new PagingConfig(DECK_PAGE_SIZE, DECK_PREFETCH, false, DECK_PAGE_SIZE * 2, DECK_MAX_LOADED),
+                null,
+                this::newDeckSource);
+        deck = PagingLiveData.cachedIn(PagingLiveData.getLiveData(pager), ViewModelKt.getViewModelScope(this));
+        Pager<TrashPagingSource.Key, Place> trashPager = new Pager<>(
+                new PagingConfig(TRASH_PAGE_SIZE, TRASH_PREFETCH, false, TRASH_PAGE_SIZE * 2, TRASH_MAX_LOADED),
+                null,
+                dislikeStore::newTrashPagingSource);
+        trash = PagingLiveData.cachedIn(PagingLiveData.getLiveData(trashPager), ViewModelKt.getViewModelScope(this));
+        trashCount = dislikeStore.observeTrashCount();
         storeRepo.initFromAssets(app);
-        storeRepo.getDbReady().observeForever(ready -> {
+        dbReadyObserver = ready -> {
             if (Boolean.TRUE.equals(ready)) {
                 if (DEBUG_LOG_PLACES) Log.d(TAG, "DB ready → trigger loadPlaces()");
-                if (places.getValue() == null || places.getValue().isEmpty()) {
+                if (homeFilter == null) {
                     loadPlaces();
                 }
             } else {
                 if (DEBUG_LOG_PLACES) Log.d(TAG, "DB not ready yet");
             }
-        });
+        };
+        storeRepo.getDbReady().observeForever(dbReadyObserver);
+        // 首次匯入時顯示進度，讓使用者知道不是卡住
+        importProgressObserver = count -> {
+            if (count == null || count <= 0) return;
+            if (Boolean.TRUE.equals(storeRepo.getDbReady().getValue())) return;
+            emptyMessage.setValue("正在載入店家...（已匯入 " + count + " 家）");
+        };
+        storeRepo.getImportProgress().observeForever(importProgressObserver);
     }
 
     // --- LiveData getters ---
-    public LiveData<List<Place>> getPlaces() { return places; }
+    public LiveData<PagingData<Place>> getDeck() { return deck; }
     public LiveData<Boolean> getIsLoading() { return isLoading; }
     public LiveData<String> getError() { return error; }
     public LiveData<String> getEmptyMessage() { return emptyMessage; }
     public LiveData<List<String>> getSelectedTags() { return selectedTags; }
-    public LiveData<List<Place>> getDislikedPlaces() { return dislikedPlaces; }
-    public LiveData<Boolean> getIsLoadingTrash() { return isLoadingTrash; }
-    public LiveData<String> getTrashError() { return trashError; }
-
-    /** 主邏輯：載入店家並篩選 **/
+    public LiveData<Boolean> getOpenNowOnly() { return openNowOnly; }
+    public LiveData<Double> getRadiusKm() { return radiusKm; }
+    public LiveData<Location> getSearchCenter() { return searchCenter; }
+    public LiveData<List<MapCluster>> getViewportClusters() { return viewportClusters; }
+    public LiveData<StoreBounds> getResultBounds() { return resultBounds; }
+    public LiveData<PagingData<Place>> getTrash() { return trash; }
+    public LiveData<Integer> getTrashCount() { return trashCount; }
+
+    /**
+     * 主邏輯：載入店家並篩選。
+     * 載入中又被呼叫 (條件又變了) 不會被忽略：舊的查詢作廢，用最新的條件重查；
+     * LOAD_DEBOUNCE_MS 內連續呼叫只會真的查一次。條件在「真的開始查」的時候才讀，一定是最新的。
+     */
     public void loadPlaces() {
-        if (Boolean.TRUE.equals(isLoading.getValue())) return;
-        isLoading.postValue(true);
         error.postValue(null);
-
-        List<String> selectedCategories = selectedTags.getValue() != null ? selectedTags.getValue() : Collections.emptyList();
-        String keyword = searchQuery.getValue() != null ? searchQuery.getValue() : "";
-        TagMatchMode mode = tagMatchMode.getValue() != null ? tagMatchMode.getValue() : TagMatchMode.ALL;
-
-        if (DEBUG_LOG_PLACES) {
-            Log.d(TAG, "loadPlaces(): keyword=" + keyword + ", selectedCategories=" + selectedCategories + ", mode=" + mode + ", BYPASS=" + DEBUG_BYPASS_FILTERS);
-        }
         emptyMessage.postValue("正在載入店家...");
-        loadFromLocal(keyword, selectedCategories, mode);
+        synchronized (loadingLock) {
+            loadScheduler.submit(this::loadFromLocal);
+            isLoading.postValue(true);
+        }
     }
 
     public void applyTagFilter(List<String> selected) {
-        selectedTags.postValue(selected != null ? selected : new ArrayList<>());
+        List<String> next = selected != null ? new ArrayList<>(selected) : new ArrayList<>();
+        if (next.equals(selectedTags.getValue())) return;
+        selectedTags.setValue(next);
         loadPlaces();
     }
 
@@ -127,240 +215,237 @@ public class HomeViewModel extends AndroidViewModel {
     }
 
     public void setTagMatchMode(TagMatchMode mode) {
-        tagMatchMode.postValue(mode != null ? mode : TagMatchMode.ALL);
+        TagMatchMode next = mode != null ? mode : TagMatchMode.ANY;
+        if (next == tagMatchMode.getValue()) return;
+        tagMatchMode.setValue(next);
         loadPlaces();
     }
 
-    public void handleSwipeAction(Swipe.Action action, Place place) {
-        if (place == null) return;
-        if (action == Swipe.Action.LIKE) {
-            favStore.add(place);
-        } else if (action == Swipe.Action.NOPE) {
-            addToDislikes(place);
-        }
+    /** 只顯示「現在有營業」的店家 (Home 的「營業中」chip)。 */
+    public void setOpenNowOnly(boolean enabled) {
+        if (Objects.equals(openNowOnly.getValue(), enabled)) return;
+        openNowOnly.setValue(enabled);
         loadPlaces();
     }
 
-    /** ✅ 新增：由 PlaceDetailFragment 呼叫，觸發「讓地圖聚焦到指定店家」 */
-    public void requestFocusOnPlace(String placeId) {
-        if (placeId != null && !placeId.isEmpty()) {
-            _navigateToMapAndFocusOn.setValue(new Event<>(placeId));
-        }
+    /** 只顯示距離上次位置 km 公里以內的店家；0 = 不限 (Home 的範圍 chip)。 */
+    public void setRadiusKm(double km) {
+        if (Objects.equals(radiusKm.getValue(), km)) return;
+        radiusKm.setValue(km);
+        loadPlaces();
     }
 
-    /** 針對 category 是 List<String> 的版本 **/
-    private void loadFromLocal(String keyword, List<String> selectedRaw, TagMatchMode mode) {
-        final Set<String> favoriteIds = new HashSet<>();
-        List<Place> currentFavorites = favStore.getAll();
-        if (currentFavorites != null) {
-            for (Place p : currentFavorites) if (p != null && p.id != null) favoriteIds.add(p.id);
-        }
-
-        final List<String> wantedCats = normalizeStrings(selectedRaw);
-
+    /**
+     * 地圖範圍內、而且符合目前篩選條件 (homeFilter) 的店家，放進 viewportClusters。全部在背景查、在背景算；
+     * - zoom ≤ GridClusterIndex.MAX_CLUSTER_ZOOM：分群。整個篩選結果只讀 id 和座標，建一次 GridClusterIndex
+     *   (見 clusterIndexFor)，之後拖動、縮放地圖只挑出範圍內的格子，不用再查資料庫；
+     *   店家很多時一個區域只畫一個帶數字的圓圈，只有「一格只有一家」的店才讀出完整資料畫圖釘。
+     * - 再放大：不分群，直接對 stores 下範圍查詢 (R*Tree 或 (lat, lng) 索引) + 篩選條件，
+     *   讀出範圍內評分最高的 MAX_VIEWPORT_STORES 家，一家一顆 marker。
+     */
+    public void loadViewport(double south, double west, double north, double east, float zoom) {
         viewModelExecutor.execute(() -> {
-            try {
-                final boolean singleCat = (wantedCats.size() == 1);
-                final String dbCategory = singleCat ? wantedCats.get(0) : "";
-
-                if (DEBUG_LOG_PLACES) {
-                    Log.d(TAG, "loadFromLocal(): query db with keyword=" + keyword + ", dbCategory=" + dbCategory);
-                }
-
-                List<StoreEntity> candidates = storeRepo.searchAdvancedBlocking(
-                        keyword,
-                        dbCategory,
-                        1,
-                        keyword,
-                        ""
-                );
-                if (DEBUG_LOG_PLACES) {
-                    Log.d(TAG, "candidates (raw from DB) size=" + (candidates == null ? 0 : candidates.size()));
-                }
-
-                List<StoreEntity> afterCats = new ArrayList<>();
-                if (wantedCats.isEmpty()) {
-                    afterCats = candidates;
-                } else {
-                    for (StoreEntity e : candidates) {
-                        if (e == null || e.category == null) continue;
-                        Set<String> storeCats = toLowerSet(e.category);
-                        boolean pass = matchesByCategories(storeCats, wantedCats, mode);
-                        if (pass) afterCats.add(e);
-                    }
-                }
+            lastViewport = new double[]{south, west, north, east, zoom};
+            queryViewport(south, west, north, east, zoom);
+        });
+    }
 
-                // DB → UI 模型
-                List<Place> mapped = StoreMappers.toPlaceList(afterCats);
-                if (DEBUG_LOG_PLACES) {
-                    Log.d(TAG, "mapped to Place size=" + (mapped == null ? 0 : mapped.size()));
-                    if (mapped != null && !mapped.isEmpty()) {
-                        int show = Math.min(5, mapped.size());
-                        for (int i = 0; i < show; i++) {
-                            Place p = mapped.get(i);
-                            Log.d(TAG, String.format(Locale.ROOT,
-                                    "mapped[%d] id=%s name=%s lat=%s lng=%s",
-                                    i, p == null ? "null" : p.id,
-                                    p == null ? "null" : p.getName(),
-                                    p == null ? "null" : String.valueOf(p.getLat()),
-                                    p == null ? "null" : String.valueOf(p.getLng())));
-                        }
-                    }
-                }
+    /** 用上一次的畫面範圍重查 (滑掉卡片之後，地圖上也要拿掉那家)。 */
+    private void refreshViewport() {
+        viewModelExecutor.execute(() -> {
+            double[] v = lastViewport;
+            if (v != null) queryViewport(v[0], v[1], v[2], v[3], (float) v[4]);
+        });
+    }
 
-                List<Place> finalResult;
-                if (DEBUG_BYPASS_FILTERS) {
-                    // 直接把 mapped 丟給 UI，協助定位：資料是否有讀到 / 是否含座標
-                    finalResult = mapped != null ? mapped : new ArrayList<>();
-                } else {
-                    // 原本過濾：排除喜歡與不喜歡
-                    Set<String> dislikedIds = getDislikedIds();
-                    finalResult = new ArrayList<>();
-                    if (mapped != null) {
-                        for (Place p : mapped) {
-                            if (p == null || p.id == null) continue;
-                            if (!dislikedIds.contains(p.id) && !favoriteIds.contains(p.id)) {
-                                finalResult.add(p);
-                            }
-                        }
-                    }
+    private void queryViewport(double south, double west, double north, double east, float zoom) {
+        StoreFilter filter = homeFilter;
+        if (filter == null) return; // 篩選條件還沒建好；載入完會 post resultBounds，地圖會再來要一次
+        try {
+            Set<String> pending = journal.pendingSwipeIds();
+            List<MapCluster> visible = new ArrayList<>();
+            int z = (int) Math.floor(zoom);
+            if (z <= GridClusterIndex.MAX_CLUSTER_ZOOM) {
+                List<MapCluster> clusters = clusterIndexFor(filter, pending).clustersIn(z, south, west, north, east);
+                // 一格只有一家的，讀出那幾家的資料換成店家圖釘 (key 就是店家 id)
+                List<String> singleIds = new ArrayList<>();
+                for (MapCluster c : clusters) if (c.count == 1) singleIds.add(c.key);
+                Map<String, Place> byId = new HashMap<>();
+                for (Place p : StoreMappers.toPlaceList(storeRepo.getByIdsBlocking(singleIds))) {
+                    if (p != null && p.id != null) byId.put(p.id, p);
                 }
-
-                if (DEBUG_LOG_PLACES) {
-                    Log.d(TAG, "finalResult size=" + (finalResult == null ? 0 : finalResult.size()));
-                    if (finalResult != null && !finalResult.isEmpty()) {
-                        int show = Math.min(5, finalResult.size());
-                        for (int i = 0; i < show; i++) {
-                            Place p = finalResult.get(i);
-                            Log.d(TAG, String.format(Locale.ROOT,
-                                    "final[%d] id=%s name=%s lat=%s lng=%s",
-                                    i, p == null ? "null" : p.id,
-                                    p == null ? "null" : p.getName(),
-                                    p == null ? "null" : String.valueOf(p.getLat()),
-                                    p == null ? "null" : String.valueOf(p.getLng())));
-                        }
+                for (MapCluster c : clusters) {
+                    if (c.count != 1) {
+                        visible.add(c);
+                    } else {
+                        Place p = byId.get(c.key);
+                        if (p != null) visible.add(MapCluster.of(p));
                     }
                 }
-
-                if (finalResult == null || finalResult.isEmpty()) {
-                    emptyMessage.postValue("找不到符合的店家，試試看調整類別或關鍵字。");
+            } else {
+                StoreFilter visibleFilter = filter.excluding(pending);
+                for (StoreEntity e : storeRepo.getInBoundsBlocking(visibleFilter, south, west, north, east, MAX_VIEWPORT_STORES)) {
+                    Place p = StoreMappers.toPlace(e);
+                    if (p != null && p.id != null) visible.add(MapCluster.of(p));
                 }
-                places.postValue(finalResult);
-
-            } catch (Exception e) {
-                Log.e(TAG, "loadFromLocal error", e);
-                error.postValue("載入資料時發生錯誤");
-            } finally {
-                isLoading.postValue(false);
             }
-        });
+            viewportClusters.postValue(visible);
+        } catch (Exception e) {
+            Log.e(TAG, "loadViewport error", e);
+        }
     }
 
-    // --- 篩選邏輯 ---
-    private boolean matchesByCategories(Set<String> storeCats, List<String> wantedCats, TagMatchMode mode) {
-        if (wantedCats == null || wantedCats.isEmpty()) return true;
-        if (storeCats == null || storeCats.isEmpty()) return false;
-
-        if (mode == TagMatchMode.ALL) {
-            for (String w : wantedCats) if (!storeCats.contains(w)) return false;
-            return true;
-        } else { // ANY
-            for (String w : wantedCats) if (storeCats.contains(w)) return true;
-            return false;
+    /**
+     * filter 這組篩選結果的分群索引：homeFilter 換了 (重新載入、還原之後) 才重讀全部座標重建，
+     * 不然沿用同一個，只把還沒提交的滑動從索引裡拿掉 (提交之後它們也不會再回到這組結果，拿掉的就一直拿掉)。
+     * 索引裡是整個結果每家店的 id 和座標，幾萬家也只有幾 MB。
+     */
+    private GridClusterIndex clusterIndexFor(StoreFilter filter, Set<String> pending) {
+        if (clusterIndex == null || clusterIndexFilter != filter) {
+            clusterIndex = new GridClusterIndex(storeRepo.getLocationsBlocking(filter));
+            clusterIndexFilter = filter;
         }
+        clusterIndex.remove(pending);
+        return clusterIndex;
     }
 
-    // --- Normalization ---
-    private static String norm(String s) {
-        if (s == null) return "";
-        String x = s.replace("\ufeff", "")
-                .replace("\u200b", "").replace("\u200c", "").replace("\u200d", "")
-                .trim();
-        x = Normalizer.normalize(x, Normalizer.Form.NFKC);
-        return x.toLowerCase(Locale.ROOT);
+    /**
+     * 滑掉一張卡：動作記進 UserActionJournal (背景批次提交)，牌堆只重讀畫面附近那一頁
+     * (新的牌堆來源會把還沒提交的滑動排除掉)，地圖用同一個範圍重查。不用重建篩選條件。
+     */
+    public void handleSwipeAction(Swipe.Action action, Place place) {
+        if (place == null || place.id == null) return;
+        journal.swipe(action, place.id);
+        invalidateDeck();
+        refreshViewport();
     }
 
-    private List<String> normalizeStrings(List<String> items) {
-        List<String> out = new ArrayList<>();
-        if (items == null) return out;
-        for (String s : items) {
-            String t = norm(s);
-            if (!t.isEmpty() && !out.contains(t)) out.add(t);
-        }
-        return out;
+    /** 給 Pager 用：目前的篩選條件 + 排除還沒提交的滑動；第一次載入完之前是空的牌堆。 */
+    private HomeDeckPagingSource newDeckSource() {
+        StoreFilter filter = homeFilter;
+        boolean fromTop = deckFromTop;
+        deckFromTop = false;
+        HomeDeckPagingSource source = storeRepo.newDeckPagingSource(
+                filter != null ? filter.excluding(journal.pendingSwipeIds()) : StoreFilter.NONE, fromTop);
+        deckSource = source;
+        return source;
     }
 
-    private Set<String> toLowerSet(List<String> items) {
-        Set<String> out = new HashSet<>();
-        if (items == null) return out;
-        for (String s : items) {
-            String t = norm(s);
-            if (!t.isEmpty()) out.add(t);
-        }
-        return out;
+    private void invalidateDeck() {
+        HomeDeckPagingSource source = deckSource;
+        if (source != null) source.invalidate();
     }
 
-    // --- Dislikes ---
-    public void addToDislikes(Place place) {
-        if (place == null || place.id == null) return;
+    /** ✅ 新增：由 PlaceDetailFragment 呼叫，觸發「讓地圖聚焦到指定店家」(座標在背景查好再送出) */
+    public void requestFocusOnPlace(String placeId) {
+        if (placeId == null || placeId.isEmpty()) return;
         viewModelExecutor.execute(() -> {
-            Set<String> ids = new HashSet<>(prefs.getStringSet(DISLIKED_PLACES_KEY, Collections.emptySet()));
-            if (ids.add(place.id)) {
-                prefs.edit().putStringSet(DISLIKED_PLACES_KEY, ids).apply();
-                loadDislikedPlacesFromPrefs();
+            try {
+                StoreLocation loc = storeRepo.getLocationBlocking(placeId);
+                if (loc != null) _navigateToMapAndFocusOn.postValue(new Event<>(loc));
+            } catch (Exception e) {
+                Log.e(TAG, "requestFocusOnPlace error", e);
             }
         });
     }
 
-    private Set<String> getDislikedIds() {
-        return new HashSet<>(prefs.getStringSet(DISLIKED_PLACES_KEY, Collections.emptySet()));
+    /**
+     * 針對 category 是 List<String> 的版本。在 viewModelExecutor 上由 loadScheduler 呼叫。
+     * 條件翻成 SQL (StoreFilter) 之後就換給牌堆和地圖：牌堆一頁一頁讀、地圖只讀畫面範圍內的，
+     * 符合的店家不會先全部讀出來、解碼、排序。已經有更新的條件就不換上去 (看 ticket)。
+     */
+    private void loadFromLocal(LatestWinsScheduler.Ticket ticket) {
+        // 條件都已經在主執行緒 setValue 過了，這裡讀到的就是最新的
+        List<String> selectedRaw = selectedTags.getValue() != null ? new ArrayList<>(selectedTags.getValue()) : Collections.emptyList();
+        String keyword = searchQuery.getValue() != null ? searchQuery.getValue() : "";
+        TagMatchMode mode = tagMatchMode.getValue() != null ? tagMatchMode.getValue() : TagMatchMode.ANY;
+        boolean openNow = Boolean.TRUE.equals(openNowOnly.getValue());
+        double radius = radiusKm.getValue() != null ? radiusKm.getValue() : 0;
+        try {
+            if (DEBUG_LOG_PLACES) {
+                Log.d(TAG, "loadFromLocal(#" + ticket.generation() + "): keyword=" + keyword + ", categories=" + selectedRaw + ", mode=" + mode + ", openNow=" + openNow + ", radiusKm=" + radius + ", BYPASS=" + DEBUG_BYPASS_FILTERS);
+            }
+
+            // 不喜歡 / 收藏都在查詢裡排除 (NOT EXISTS)，舊版存在 prefs 的不喜歡要先搬進資料表
+            dislikeStore.ensureMigrated();
+            // 距離：有上次的位置就由近到遠排；有選範圍的話只留圈內的
+            Location here = LocationReporter.loadLast(getApplication());
+            searchCenter.postValue(here);
+            if (here == null && radius > 0) Log.w(TAG, "還沒有位置，先不套用距離範圍");
+
+            StoreFilter filter = DEBUG_BYPASS_FILTERS
+                    ? StoreFilter.builder().build() // 不套任何條件，協助定位：資料是否有讀到 / 是否含座標
+                    : storeRepo.homeFilterBlocking(keyword, selectedRaw, mode == TagMatchMode.ALL,
+                            openNow ? Calendar.getInstance() : null, here, radius);
+            StoreBounds bounds = storeRepo.getResultBoundsBlocking(filter.excluding(journal.pendingSwipeIds()));
+
+            // 換上去之前最後確認一次：被取代的查詢不能蓋掉新的條件
+            if (ticket.isStale()) {
+                if (DEBUG_LOG_PLACES) Log.d(TAG, "loadFromLocal(#" + ticket.generation() + ") superseded, drop result");
+                return;
+            }
+            if (DEBUG_LOG_PLACES) {
+                Log.d(TAG, "loadFromLocal(#" + ticket.generation() + ") matches with location=" + bounds.count);
+            }
+            homeFilter = filter;
+            deckFromTop = true;
+            invalidateDeck();
+            // 牌堆是空的時候才看得到 (HomeFragment 依牌堆的載入狀態切換)
+            if (openNow) {
+                emptyMessage.postValue("現在沒有符合的店家營業中，試試看關掉「營業中」或調整類別。");
+            } else if (radius > 0 && here != null) {
+                emptyMessage.postValue(String.format(Locale.ROOT,
+                        "附近 %s 公里內找不到符合的店家，試試看放大範圍。", formatKm(radius)));
+            } else {
+                emptyMessage.postValue("找不到符合的店家，試試看調整類別或關鍵字。");
+            }
+            resultBounds.postValue(bounds);
+
+        } catch (Exception e) {
+            Log.e(TAG, "loadFromLocal error", e);
+            if (!ticket.isStale()) error.postValue("載入資料時發生錯誤");
+        } finally {
+            // 只有最新的那一次可以把 loading 關掉
+            synchronized (loadingLock) {
+                if (!ticket.isStale()) isLoading.postValue(false);
+            }
+        }
+    }
+
+    /** 1.0 → "1"、0.5 → "0.5" */
+    public static String formatKm(double km) {
+        return km == Math.rint(km) ? String.valueOf((long) km) : String.valueOf(km);
     }
 
-    public void loadDislikedPlacesFromPrefs() {
-        isLoadingTrash.postValue(true);
-        trashError.postValue(null);
+    // --- Dislikes ---
+    public void addToDislikes(Place place) {
+        if (place == null || place.id == null) return;
+        journal.swipe(Swipe.Action.NOPE, place.id);
+    }
 
-        viewModelExecutor.execute(() -> {
-            try {
-                Set<String> ids = getDislikedIds();
-                if (ids.isEmpty()) {
-                    dislikedPlaces.postValue(new ArrayList<>());
-                    return;
-                }
-                List<StoreEntity> entities = storeRepo.getByIdsBlocking(new ArrayList<>(ids));
-                List<Place> list = StoreMappers.toPlaceList(entities);
-                dislikedPlaces.postValue(list != null ? list : new ArrayList<>());
-            } catch (Exception e) {
-                Log.e(TAG, "loadDislikedPlacesFromPrefs failed", e);
-                trashError.postValue("讀取垃圾桶失敗：" + e.getMessage());
-            } finally {
-                isLoadingTrash.postValue(false);
-            }
-        });
+    /**
+     * 從垃圾桶還原一批店家：記進動作日誌，提交之後 (journalListener) Home 重新載入讓它們回到牌堆。
+     * 垃圾桶列表會因為 dislikes 變動自己重新整理。
+     */
+    public void restoreFromTrash(List<String> placeIds) {
+        if (placeIds == null || placeIds.isEmpty()) return;
+        journal.recordAll(UserActionEntity.RESTORE, placeIds);
     }
 
-    public void removeFromDislikes(String placeId) {
-        if (placeId == null) return;
-        viewModelExecutor.execute(() -> {
-            try {
-                Set<String> dislikedIds = getDislikedIds();
-                if (dislikedIds.remove(placeId)) {
-                    prefs.edit().putStringSet(DISLIKED_PLACES_KEY, dislikedIds).apply();
-                    loadDislikedPlacesFromPrefs();
-                    loadPlaces();
-                } else {
-                    trashError.postValue("在垃圾桶中找不到該項目，可能已被復原。");
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "removeFromDislikes failed", e);
-                trashError.postValue("復原店家時發生錯誤：" + e.getMessage());
-            }
-        });
+    /** 永久刪除一批 (從垃圾桶拿掉，Home 還是不會出現)：記進動作日誌，跟其他動作一起批次提交。 */
+    public void purgeFromTrash(List<String> placeIds) {
+        if (placeIds == null || placeIds.isEmpty()) return;
+        journal.recordAll(UserActionEntity.PURGE, placeIds);
     }
 
     @Override
     protected void onCleared() {
         super.onCleared();
+        loadScheduler.cancel();
+        storeRepo.getDbReady().removeObserver(dbReadyObserver);
+        storeRepo.getImportProgress().removeObserver(importProgressObserver);
+        journal.removeListener(journalListener);
+        journal.flush(); // 還沒提交的動作先提交 (日誌是整個 App 共用的，不用關)
         viewModelExecutor.shutdown();
     }
 }
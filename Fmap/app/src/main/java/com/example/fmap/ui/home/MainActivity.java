@@ -21,7 +21,6 @@ import androidx.core.view.GravityCompat;
 import androidx.drawerlayout.widget.DrawerLayout;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
-import androidx.fragment.app.FragmentTransaction;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.example.fmap.R;
@@ -51,6 +50,10 @@ public class MainActivity extends AppCompatActivity {
     private long lastTouchDown;
     private static final int CLICK_ACTION_THRESHOLD = ViewConfiguration.getTapTimeout();
     private Toolbar toolbar;
+    // 底部導覽三個分頁：建一次之後只 show / hide
+    private TabNavigator tabs;
+    // openMapWithArgs 時地圖分頁還沒建立：建立時帶上這組參數
+    @Nullable private Bundle pendingMapArgs;
 
     // === 發送到 ChatFragment 用的 debounce ===
     private final Handler handler = new Handler(Looper.getMainLooper());
@@ -82,9 +85,7 @@ public class MainActivity extends AppCompatActivity {
         setupBottomNav();
 
         if (savedInstanceState == null) {
-            getSupportFragmentManager().beginTransaction()
-                    .replace(R.id.fragment_container, new HomeFragment())
-                    .commit();
+            tabs.select(TabNavigator.TAG_HOME);
             bottomNav.setSelectedItemId(R.id.home);
         }
 
@@ -189,14 +190,12 @@ public class MainActivity extends AppCompatActivity {
         int id = item.getItemId();
 
         if (id == R.id.action_trash) {
-            Fragment currentFragment = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
-            if (currentFragment instanceof TrashFragment) {
+            Fragment trash = getSupportFragmentManager().findFragmentByTag("toggle_trash");
+            if (trash instanceof TrashFragment) {
                 getSupportFragmentManager().popBackStack();
             } else {
-                getSupportFragmentManager().beginTransaction()
-                        .replace(R.id.fragment_container, new TrashFragment())
-                        .addToBackStack("toggle_trash")
-                        .commit();
+                // 疊在目前分頁上面 (分頁只是隱藏，返回時原樣回來)
+                tabs.push(new TrashFragment(), "toggle_trash");
             }
             return true;
         } else if (id == android.R.id.home) {
@@ -321,6 +320,16 @@ public class MainActivity extends AppCompatActivity {
     // ====== Bottom Nav ======
     private void setupBottomNav() {
         bottomNav = findViewById(R.id.bottom_nav);
+        tabs = new TabNavigator(getSupportFragmentManager(), R.id.fragment_container, tag -> {
+            if (TabNavigator.TAG_MAP.equals(tag)) {
+                MapFragment map = new MapFragment();
+                if (pendingMapArgs != null) map.setArguments(pendingMapArgs);
+                pendingMapArgs = null;
+                return map;
+            }
+            if (TabNavigator.TAG_FAVORITE.equals(tag)) return new FavoriteFragment();
+            return new HomeFragment();
+        });
 
         bottomNav.setOnItemSelectedListener(item -> {
             // 觀察實際被點到的 id 名稱，方便檢查 bottom_menu.xml 是否一致
@@ -330,33 +339,36 @@ public class MainActivity extends AppCompatActivity {
             } catch (Exception ignore) {}
 
             int id = item.getItemId();
-            Fragment target = null;
-            String tag = null;
+            String tag;
 
             if (id == R.id.home) {
-                target = new HomeFragment();
-                tag = "HomeFragment";
+                tag = TabNavigator.TAG_HOME;
             } else if (id == R.id.map) {
-                target = new MapFragment();
-                tag = "MapFragment";
+                tag = TabNavigator.TAG_MAP;
             } else if (id == R.id.favorite) {
-                target = new FavoriteFragment();
-                tag = "FavoriteFragment";
+                tag = TabNavigator.TAG_FAVORITE;
             } else {
                 // 沒對到任何已知 id，回傳 false 讓系統知道沒處理
                 return false;
             }
 
-            // 切頁
-            getSupportFragmentManager()
-                    .beginTransaction()
-                    .setReorderingAllowed(true)
-                    .replace(R.id.fragment_container, target, tag)
-                    .setTransition(FragmentTransaction.TRANSIT_FRAGMENT_FADE)
-                    .commit();
+            // 切頁 (已經建過的分頁只是重新顯示，不重建)
+            tabs.select(tag);
 
             return true; // 一定要回傳 true，代表這次點擊已處理
         });
+        // 再點一次目前的分頁：如果上面疊著垃圾桶，收掉它回到分頁
+        bottomNav.setOnItemReselectedListener(item -> {
+            if (getSupportFragmentManager().getBackStackEntryCount() > 0) {
+                getSupportFragmentManager().popBackStack();
+            }
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (tabs != null) tabs.onTrimMemory(level);
     }
 
     public void setDrawerEnabled(boolean enabled) {
@@ -385,17 +397,16 @@ public class MainActivity extends AppCompatActivity {
     }
     // ====== 供其他 Fragment 呼叫：切換到地圖頁，並帶座標 ======
     public void openMapWithArgs(@Nullable Bundle args) {
-        MapFragment map = new MapFragment();
-        if (args != null) map.setArguments(args);
-
-        getSupportFragmentManager()
-                .beginTransaction()
-                .setReorderingAllowed(true)
-                .replace(R.id.fragment_container, map, "MapFragment")
-                .addToBackStack("MapFragment")
-                .commit();
+        // 地圖分頁還活著就沿用 (不重建地圖)，直接把目標交給它；不然新建一個帶 args 的
+        Fragment existing = tabs.find(TabNavigator.TAG_MAP);
+        if (existing instanceof MapFragment) {
+            if (args != null) ((MapFragment) existing).showTarget(args);
+        } else {
+            pendingMapArgs = args;
+        }
+        tabs.select(TabNavigator.TAG_MAP);
 
-        // ★ 同步底部導覽顯示「地圖」
+        // ★ 同步底部導覽顯示「地圖」(已經在地圖分頁時 select 不會重複切換)
         if (bottomNav != null) {
             bottomNav.setSelectedItemId(R.id.map); // ← 確認你的 bottom_menu.xml 地圖項目 id 是否叫 map
         }
@@ -0,0 +1,49 @@
+package com.example.fmap.ui.home;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.fmap.model.Place;
+
+/**
+ * 地圖上的一個點：一群店家 (顯示成帶數字的圓圈)，或只有一家店 (顯示成一般的店家圖釘)。
+ * 由 GridClusterIndex 在背景算好，MapFragment / MarkerReconciler 只負責畫。
+ */
+public class MapCluster {
+
+    /**
+     * 比對 marker 用的 key：單一店家就是店家 id (換縮放層級也還是同一顆 marker)，
+     * 群組是「縮放層級 + 格子座標」。
+     */
+    @NonNull public final String key;
+    public final double lat;     // 群組裡店家座標的平均
+    public final double lng;
+    public final int count;      // 店家數
+    // 群組裡店家的範圍 (點群組時把鏡頭拉到這個範圍)
+    public final double south, west, north, east;
+    // 只有一家店時才有
+    @Nullable public final Place place;
+
+    MapCluster(@NonNull String key, double lat, double lng, int count,
+               double south, double west, double north, double east, @Nullable Place place) {
+        this.key = key;
+        this.lat = lat;
+        this.lng = lng;
+        this.count = count;
+        this.south = south;
+        this.west = west;
+        this.north = north;
+        this.east = east;
+        this.place = place;
+    }
+
+    /** 單一店家 (R*Tree 查回來、不需要分群的情況)。 */
+    static MapCluster of(@NonNull Place p) {
+        double lat = p.getLat(), lng = p.getLng();
+        return new MapCluster(p.getId(), lat, lng, 1, lat, lng, lat, lng, p);
+    }
+
+    public boolean isSingle() {
+        return place != null;
+    }
+}
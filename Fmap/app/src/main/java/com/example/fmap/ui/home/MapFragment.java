@@ -2,10 +2,6 @@ package com.example.fmap.ui.home;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.drawable.Drawable;
 import android.location.Address;
 import android.location.Geocoder;
 import android.location.Location;
@@ -28,6 +24,8 @@ import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.example.fmap.R;
+import com.example.fmap.data.local.StoreBounds;
+import com.example.fmap.data.local.StoreLocation;
 import com.example.fmap.model.Place;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
@@ -39,7 +37,6 @@ import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.UiSettings;
-import com.google.android.gms.maps.model.BitmapDescriptor;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.Circle;
 import com.google.android.gms.maps.model.CircleOptions;
@@ -53,10 +50,9 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Executors;
 
 import okhttp3.Call;
@@ -76,20 +72,34 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     private ActivityResultLauncher<String[]> permissionLauncher;
     private HomeViewModel homeViewModel;
 
-    private final Map<String, Marker> markerById = new HashMap<>();
-    private BitmapDescriptor bluePinIcon; // 圖示快取
+    // 店家 marker：跟畫面範圍內的店家清單做增量比對，不整批重畫
+    @Nullable private MarkerReconciler markers;
+    // 找不到店家 marker 時，標出 args 指定座標的紅標 (只放一次)
+    @Nullable private Marker argMarker;
+    // marker 圖示 (分類 / 評分 / 選取狀態、群組數字) 的快取
+    @Nullable private MarkerIconCache iconCache;
+    // 目前選取 (點過 / 聚焦) 的店家，它的圖釘畫大一號
+    @Nullable private String selectedPlaceId;
 
     // ---- 固定相機測試點（不影響店家顯示） ----
     private static final boolean DEV_FIX_LOCATION = true;
     private static final LatLng DEV_POINT = new LatLng(24.1658, 120.6422);
     private static final float DEV_ZOOM = 15f;
 
-    // 顯示範圍圓
-    private static final double SHOW_WITHIN_KM = 0.0;
+    // Home 選了「附近 N 公里」時，在地圖上畫出範圍圈 (圓心是算距離用的位置)
     private Circle rangeCircle;
 
-    // 地圖尚未 ready 時先緩存資料
-    private List<Place> pendingPlaces = new ArrayList<>();
+    // 目前 Home 篩選條件下、有座標的店家的數量和範圍 (資料庫算好的，拉鏡頭到全部結果時用)
+    @Nullable private StoreBounds resultBounds;
+
+    // ---- 畫面範圍載入 ----
+    // 查詢範圍比畫面四周各多出這個比例，小幅拖動地圖不用重查
+    private static final double VIEWPORT_MARGIN = 0.25;
+    // 上次查詢的範圍 (含邊界) 和縮放層級；畫面還在裡面、層級也一樣就不重查
+    @Nullable private LatLngBounds loadedBounds;
+    private int loadedZoom = -1;
+    // 篩選條件改變後，如果畫面範圍內一家都沒有，就把鏡頭拉到全部結果 (只做一次)
+    private boolean fitToResultsPending = true;
 
     private EditText etSearch;
     private ImageButton btnSearch, btnClear;
@@ -98,6 +108,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     @Nullable private LatLng argCenter;
     @Nullable private String argStoreId;
     @Nullable private String argStoreName;
+    private boolean argCameraDone = false;
     @Nullable private Place argFallbackPlace; // 找不到 marker 時直接開詳情
     private boolean autoDetailPending = false; // 只自動開一次
 
@@ -138,9 +149,10 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
         // 1) ViewModel
         homeViewModel = new ViewModelProvider(requireActivity()).get(HomeViewModel.class);
+        iconCache = new MarkerIconCache(requireContext());
 
         // 2) 參數
-        handleArguments();
+        handleArguments(getArguments());
 
         // 3) 檢查 Google Play Services
         if (!checkGooglePlayServices()) return;
@@ -158,8 +170,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
     // ---------------- Helpers (setup/args) ----------------
 
-    private void handleArguments() {
-        Bundle args = getArguments();
+    private void handleArguments(@Nullable Bundle args) {
         if (args == null) return;
 
         double lat = args.getDouble("center_lat", Double.NaN);
@@ -174,6 +185,28 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         autoDetailPending = (argStoreId != null || argStoreName != null || argCenter != null || argFallbackPlace != null);
     }
 
+    /**
+     * 地圖分頁已經在 (切分頁不重建)，詳情頁又要開地圖聚焦某家店時呼叫：
+     * 換成新的目標，鏡頭直接移過去並重新載入該範圍的 marker，載完後 onMarkersSettled 會聚焦 / 開詳情。
+     */
+    public void showTarget(@NonNull Bundle args) {
+        argCenter = null;
+        argStoreId = null;
+        argStoreName = null;
+        argFallbackPlace = null;
+        argCameraDone = false;
+        handleArguments(args);
+        if (argMarker != null) {
+            argMarker.remove();
+            argMarker = null;
+        }
+        if (map == null) return; // 地圖還沒好：onMapReady 會用新的 argCenter 設初始鏡頭
+        if (argCenter != null) {
+            map.moveCamera(CameraUpdateFactory.newLatLngZoom(argCenter, 17f));
+        }
+        requestViewport(true);
+    }
+
     private boolean checkGooglePlayServices() {
         int status = GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(requireContext());
         if (status != ConnectionResult.SUCCESS) {
@@ -245,19 +278,24 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     }
 
     private void observeViewModel() {
-        homeViewModel.getPlaces().observe(getViewLifecycleOwner(), places -> {
-            int n = places == null ? 0 : places.size();
-            Log.d(TAG, "observer getPlaces() size=" + n);
+        // 每次篩選條件載入完都會送來 (連同結果的範圍)：畫面範圍內要顯示的店也跟著變
+        homeViewModel.getResultBounds().observe(getViewLifecycleOwner(), bounds -> {
+            if (bounds == null) return;
+            Log.d(TAG, "observer getResultBounds() count=" + bounds.count);
+            resultBounds = bounds;
+            fitToResultsPending = true;
+            requestViewport(true);
+        });
 
-            pendingPlaces = (places == null) ? new ArrayList<>() : new ArrayList<>(places);
-            if (map != null) renderMarkers(pendingPlaces);
+        // 背景算好的「畫面範圍內」群組 / 店家 → 畫 marker
+        homeViewModel.getViewportClusters().observe(getViewLifecycleOwner(), visible -> {
+            if (visible == null) return;
+            Log.d(TAG, "observer getViewportClusters() size=" + visible.size());
+            if (iconCache != null) iconCache.prewarm(placesOf(visible)); // marker 是分批加的，後面幾批的圖釘先在背景畫好
+            renderMarkers(visible);
         });
 
-        List<Place> cur = homeViewModel.getPlaces().getValue();
-        if (cur != null && !cur.isEmpty()) {
-            pendingPlaces = new ArrayList<>(cur);
-            if (map != null) renderMarkers(pendingPlaces);
-        } else {
+        if (homeViewModel.getResultBounds().getValue() == null) {
             homeViewModel.applySearchQuery("");
         }
 
@@ -272,8 +310,19 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         this.map = googleMap;
         Log.d(TAG, "onMapReady()");
 
-        // 圖示快取（Vector→Bitmap）
-        if (bluePinIcon == null) bluePinIcon = bluePin(R.drawable.ic_store_pin);
+        // marker 增量更新；圖示從 iconCache 拿
+        markers = new MarkerReconciler(this.map, new MarkerReconciler.MarkerFactory() {
+            @NonNull @Override
+            public MarkerOptions optionsFor(@NonNull MapCluster c) {
+                return markerOptionsFor(c);
+            }
+
+            @NonNull @Override
+            public String iconKey(@NonNull MapCluster c) {
+                return c.isSingle() ? MarkerIconCache.pinKey(c.place, c.key.equals(selectedPlaceId))
+                        : MarkerIconCache.clusterKey(c.count);
+            }
+        });
 
         UiSettings ui = this.map.getUiSettings();
         ui.setZoomControlsEnabled(true);
@@ -290,11 +339,11 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
         // 初始鏡頭：argCenter > DEV_POINT > 不動
         if (argCenter != null) {
-            this.map.moveCamera(CameraUpdateFactory.newLatLngZoom(argCenter, 16f));
+            this.map.moveCamera(CameraUpdateFactory.newLatLngZoom(argCenter, 17f)); // 17 以上不分群，才找得到指定店家的 marker
         } else if (DEV_FIX_LOCATION) {
             this.map.moveCamera(CameraUpdateFactory.newLatLngZoom(DEV_POINT, DEV_ZOOM));
-            drawRangeCircle();
         }
+        drawRangeCircle();
 
         // 若先量到 padding 但 map 未就緒，這裡補上
         if (pendingTopPadding >= 0) map.setPadding(0, pendingTopPadding, dp(8), dp(88));
@@ -302,8 +351,11 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         // marker 點擊
         this.map.setOnMarkerClickListener(marker -> {
             Object tag = marker.getTag();
-            if (tag instanceof Place) {
+            if (tag instanceof MapCluster) {
+                expandCluster((MapCluster) tag);
+            } else if (tag instanceof Place) {
                 Place p = (Place) tag;
+                selectPlace(p.getId());
                 PlaceDetailFragment.newInstance(p.getId(), p)
                         .setSource(PlaceDetailFragment.SOURCE_MAP)
                         .show(getChildFragmentManager(), "PlaceDetailFragmentSheet");
@@ -318,84 +370,91 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             return false; // 讓 Google Map 預設鏡頭行為繼續
         });
 
-        // 畫面上畫既有資料
-        if (pendingPlaces != null && !pendingPlaces.isEmpty()) {
-            renderMarkers(pendingPlaces);
-        } else {
-            List<Place> cur2 = homeViewModel.getPlaces().getValue();
-            if (cur2 != null && !cur2.isEmpty()) {
-                pendingPlaces = new ArrayList<>(cur2);
-                renderMarkers(pendingPlaces);
-            }
-        }
+        // 鏡頭停下來 (拖動 / 縮放結束) 就載入畫面範圍內的店家；第一次定位鏡頭後也會觸發一次
+        this.map.setOnCameraIdleListener(() -> requestViewport(false));
     }
 
-    private BitmapDescriptor bluePin(int vectorResId) {
-        Drawable d = ContextCompat.getDrawable(requireContext(), vectorResId);
-        if (d == null) return BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE);
-        d = d.mutate();
-        d.setTint(Color.parseColor("#42A5F5"));
-        int w = Math.max(d.getIntrinsicWidth(), 96);
-        int h = Math.max(d.getIntrinsicHeight(), 96);
-        Bitmap bm = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bm);
-        d.setBounds(0, 0, w, h);
-        d.draw(canvas);
-        return BitmapDescriptorFactory.fromBitmap(bm);
+    /** 群組清單裡的單一店家 (prewarm 用)。 */
+    private static List<Place> placesOf(@NonNull List<MapCluster> clusters) {
+        List<Place> out = new ArrayList<>();
+        for (MapCluster c : clusters) if (c.place != null) out.add(c.place);
+        return out;
     }
 
-    private void renderMarkers(List<Place> places) {
-        if (map == null) return;
-        int n = places == null ? 0 : places.size();
+    private void renderMarkers(List<MapCluster> clusters) {
+        if (map == null || markers == null) return;
+        int n = clusters == null ? 0 : clusters.size();
         Log.d(TAG, "renderMarkers() size=" + n);
 
-        map.clear();
-        markerById.clear();
         drawRangeCircle();
 
         if (n == 0) {
+            markers.submit(null, null);
             if (argCenter != null) {
-                map.animateCamera(CameraUpdateFactory.newLatLngZoom(argCenter, 17f));
+                moveToArgTarget(argCenter);
+            } else {
+                fitToResultsIfPending();
             }
             return;
         }
+        fitToResultsPending = false;
 
-        LatLngBounds.Builder bounds = new LatLngBounds.Builder();
-        int added = 0;
+        // 只增刪改有變的 marker；全部加完之後再處理聚焦
+        markers.submit(clusters, this::onMarkersSettled);
+    }
 
-        for (Place p : places) {
-            if (p == null) continue;
-            Double lat = p.getLat();
-            Double lng = p.getLng();
-            if (lat == null || lng == null) continue;
-            if (lat == 0.0 && lng == 0.0) continue;
+    private MarkerOptions markerOptionsFor(@NonNull MapCluster c) {
+        if (!c.isSingle()) {
+            return new MarkerOptions()
+                    .position(new LatLng(c.lat, c.lng))
+                    .title(c.count + " 家店")
+                    .anchor(0.5f, 0.5f)
+                    .icon(iconCache != null ? iconCache.cluster(c.count)
+                            : BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE));
+        }
+        Place p = c.place;
+        boolean selected = c.key.equals(selectedPlaceId);
+        MarkerOptions opts = new MarkerOptions()
+                .position(new LatLng(c.lat, c.lng))
+                .title(p.getName() != null ? p.getName() : "")
+                .snippet(p.getAddress() != null ? p.getAddress() : "")
+                .zIndex(selected ? 1f : 0f);
+        if (iconCache == null) {
+            return opts.icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE));
+        }
+        return opts.icon(iconCache.pin(p, selected)).anchor(iconCache.pinAnchorU(p, selected), 1f);
+    }
 
-            LatLng pos = new LatLng(lat, lng);
+    /** 換選取的店家：舊的圖釘換回一般圖示，新的換成選取圖示 (只動這兩顆)。 */
+    private void selectPlace(@Nullable String placeId) {
+        if (Objects.equals(selectedPlaceId, placeId)) return;
+        String previous = selectedPlaceId;
+        selectedPlaceId = placeId;
+        if (markers == null) return;
+        markers.refreshIcon(previous);
+        markers.refreshIcon(placeId);
+        Marker m = markers.get(placeId);
+        if (m != null) m.setZIndex(1f);
+        Marker old = markers.get(previous);
+        if (old != null) old.setZIndex(0f);
+    }
 
-            if (DEV_FIX_LOCATION && SHOW_WITHIN_KM > 0) {
-                double km = distanceKm(DEV_POINT.latitude, DEV_POINT.longitude, lat, lng);
-                if (km > SHOW_WITHIN_KM) continue;
-            }
+    /** 點群組：鏡頭拉到剛好看得到群組裡所有店家 (全部在同一點就直接放大兩級)。 */
+    private void expandCluster(@NonNull MapCluster c) {
+        if (map == null) return;
+        if (c.north - c.south < 1e-6 && c.east - c.west < 1e-6) {
+            map.animateCamera(CameraUpdateFactory.newLatLngZoom(
+                    new LatLng(c.lat, c.lng), map.getCameraPosition().zoom + 2));
+            return;
+        }
+        LatLngBounds bounds = new LatLngBounds(new LatLng(c.south, c.west), new LatLng(c.north, c.east));
+        map.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds, dp(48)));
+    }
 
-            String title = p.getName() != null ? p.getName() : "";
-            String addr  = p.getAddress() != null ? p.getAddress() : "";
 
-            MarkerOptions opts = new MarkerOptions()
-                    .position(pos)
-                    .title(title)
-                    .snippet(addr)
-                    .icon(bluePinIcon != null ? bluePinIcon
-                            : BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE));
-
-            Marker m = map.addMarker(opts);
-            if (m != null) {
-                m.setTag(p);
-                if (p.getId() != null)   markerById.put(p.getId(), m);
-                if (p.getName() != null) markerById.put(p.getName(), m);
-                bounds.include(pos);
-                added++;
-            }
-        }
+    /** marker 都加到地圖上之後：處理待聚焦的店家、args 指定的店家。 */
+    private void onMarkersSettled() {
+        if (map == null || markers == null) return;
 
         // 事件聚焦
         if (pendingFocusPlaceId != null) {
@@ -407,11 +466,11 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
         // 用 id/name 聚焦
         Marker focus = null;
-        if (argStoreId != null) focus = markerById.get(argStoreId);
-        if (focus == null && argStoreName != null) focus = markerById.get(argStoreName);
+        if (argStoreId != null) focus = markers.get(argStoreId);
+        if (focus == null && argStoreName != null) focus = markers.get(argStoreName);
         if (focus != null) {
-            focus.showInfoWindow();
-            map.animateCamera(CameraUpdateFactory.newLatLngZoom(focus.getPosition(), 17f));
+            if (!argCameraDone) focus.showInfoWindow(); // 只在第一次聚焦時打開，之後重新載入 marker 不再跳出來
+            moveToArgTarget(focus.getPosition());
             if (autoDetailPending) {
                 autoDetailPending = false;
                 Object tag = focus.getTag();
@@ -429,7 +488,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         if (autoDetailPending && argFallbackPlace != null) {
             autoDetailPending = false;
             if (argCenter != null) {
-                map.animateCamera(CameraUpdateFactory.newLatLngZoom(argCenter, 17f));
+                moveToArgTarget(argCenter);
             }
             PlaceDetailFragment.newInstance(argFallbackPlace.getId(), argFallbackPlace)
                     .setSource(PlaceDetailFragment.SOURCE_MAP)
@@ -438,72 +497,132 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         }
 
         // 沒有 → 若有中心座標，放一顆紅標
-        if (argCenter != null) {
-            Marker temp = map.addMarker(new MarkerOptions()
+        if (argCenter != null && argMarker == null) {
+            argMarker = map.addMarker(new MarkerOptions()
                     .position(argCenter)
                     .title(argStoreName != null ? argStoreName : "目標位置")
                     .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
-            if (temp != null) temp.showInfoWindow();
-            map.animateCamera(CameraUpdateFactory.newLatLngZoom(argCenter, 17f));
+            if (argMarker != null) argMarker.showInfoWindow();
+            moveToArgTarget(argCenter);
+        }
+        // 一般情況：鏡頭不動 (marker 跟著鏡頭載入，這裡再移動鏡頭會一直重查)
+    }
+
+    /** 開地圖時指定的目標 (args) 只移動鏡頭一次；之後使用者拖動地圖重新載入 marker 時不再拉回來。 */
+    private void moveToArgTarget(@NonNull LatLng target) {
+        if (argCameraDone) return;
+        argCameraDone = true;
+        map.animateCamera(CameraUpdateFactory.newLatLngZoom(target, 17f));
+    }
+
+    /**
+     * 載入畫面範圍 (四周多留 VIEWPORT_MARGIN) 內的店家。
+     * 不是 force 時，畫面還在上次查詢的範圍內、而且沒有放大很多，就沿用現有的 marker。
+     */
+    private void requestViewport(boolean force) {
+        if (map == null) return;
+        LatLngBounds visible = map.getProjection().getVisibleRegion().latLngBounds;
+        int zoom = (int) Math.floor(map.getCameraPosition().zoom);
+        if (!force && loadedBounds != null && zoom == loadedZoom
+                && loadedBounds.contains(visible.southwest) && loadedBounds.contains(visible.northeast)
+                && latSpan(visible) * 4 > latSpan(loadedBounds)) {
             return;
         }
+        double latMargin = latSpan(visible) * VIEWPORT_MARGIN;
+        double lngSpan = lngSpan(visible);
+        double south = Math.max(-90, visible.southwest.latitude - latMargin);
+        double north = Math.min(90, visible.northeast.latitude + latMargin);
+        double west, east;
+        if (lngSpan * (1 + 2 * VIEWPORT_MARGIN) >= 360) {
+            west = -180;
+            east = 180;
+        } else {
+            west = wrapLng(visible.southwest.longitude - lngSpan * VIEWPORT_MARGIN);
+            east = wrapLng(visible.northeast.longitude + lngSpan * VIEWPORT_MARGIN);
+        }
+        loadedBounds = new LatLngBounds(new LatLng(south, west), new LatLng(north, east));
+        loadedZoom = zoom;
+        homeViewModel.loadViewport(south, west, north, east, map.getCameraPosition().zoom);
+    }
 
-        // 一般情況：縮到全部可見或回固定點
-        if (added > 0) {
-            map.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds.build(), 80));
+    /** 篩選結果都不在畫面上時，把鏡頭拉到能看到全部結果 (篩選條件改變後只做一次)。 */
+    private void fitToResultsIfPending() {
+        if (!fitToResultsPending || map == null) return;
+        fitToResultsPending = false;
+        StoreBounds b = resultBounds;
+        if (b != null && b.count > 0) {
+            LatLngBounds bounds = new LatLngBounds(new LatLng(b.south, b.west), new LatLng(b.north, b.east));
+            map.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds, 80));
         } else if (DEV_FIX_LOCATION) {
             map.animateCamera(CameraUpdateFactory.newLatLngZoom(DEV_POINT, DEV_ZOOM));
         }
     }
 
+    private static double latSpan(LatLngBounds b) {
+        return b.northeast.latitude - b.southwest.latitude;
+    }
+
+    /** 經度跨度；跨過換日線 (west > east) 時也算對。 */
+    private static double lngSpan(LatLngBounds b) {
+        double span = b.northeast.longitude - b.southwest.longitude;
+        return span >= 0 ? span : span + 360;
+    }
+
+    private static double wrapLng(double lng) {
+        if (lng < -180) return lng + 360;
+        if (lng > 180) return lng - 360;
+        return lng;
+    }
+
     //觀察 ViewModel 的聚焦事件
     private void observeFocusRequests() {
         homeViewModel.getNavigateToMapAndFocusOn().observe(getViewLifecycleOwner(), event -> {
-            String placeIdToFocus = event.getContentIfNotHandled();
-            if (placeIdToFocus == null) return;
-            if (!tryFocusOn(placeIdToFocus)) {
-                pendingFocusPlaceId = placeIdToFocus;
+            StoreLocation target = event.getContentIfNotHandled();
+            if (target == null || target.id == null) return;
+            if (!tryFocusOn(target.id)) {
+                // marker 還沒載入 (不在畫面範圍內)：先把鏡頭移過去，載入後 renderMarkers 會再聚焦
+                pendingFocusPlaceId = target.id;
+                moveCameraTo(target);
             }
         });
     }
 
+    private void moveCameraTo(@NonNull StoreLocation loc) {
+        if (map == null) return;
+        if (loc.lat == 0.0 && loc.lng == 0.0) return; // 沒有座標
+        map.animateCamera(CameraUpdateFactory.newLatLngZoom(new LatLng(loc.lat, loc.lng), 17f));
+    }
+
     // 嘗試聚焦指定 id 的 marker，成功回傳 true
     private boolean tryFocusOn(@NonNull String placeId) {
-        if (map == null) return false;
-        Marker m = markerById.get(placeId);
+        if (map == null || markers == null) return false;
+        Marker m = markers.get(placeId);
         if (m == null) return false;
+        selectPlace(placeId);
         map.animateCamera(CameraUpdateFactory.newLatLngZoom(m.getPosition(), 17f));
         m.showInfoWindow();
         return true;
     }
 
+    /** 範圍篩選 (HomeViewModel.setRadiusKm) 的圈；沒有選範圍或還沒有位置就不畫。 */
     private void drawRangeCircle() {
-        if (!DEV_FIX_LOCATION || map == null) return;
-        if (SHOW_WITHIN_KM <= 0) return;
-
+        if (map == null) return;
         if (rangeCircle != null) {
             rangeCircle.remove();
             rangeCircle = null;
         }
+        Location center = homeViewModel.getSearchCenter().getValue();
+        Double km = homeViewModel.getRadiusKm().getValue();
+        if (center == null || km == null || km <= 0) return;
+
         rangeCircle = map.addCircle(new CircleOptions()
-                .center(DEV_POINT)
-                .radius(SHOW_WITHIN_KM * 1000.0)
+                .center(new LatLng(center.getLatitude(), center.getLongitude()))
+                .radius(km * 1000.0)
                 .strokeWidth(2f)
                 .strokeColor(0xFF4285F4)
                 .fillColor(0x224285F4));
     }
 
-    private static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
-        double R = 6371.0;
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat/2) * Math.sin(dLat/2) +
-                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                        Math.sin(dLon/2) * Math.sin(dLon/2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
-        return R * c;
-    }
-
     /**
      * 只負責：啟用藍點與內建定位按鈕。不自動移動鏡頭。
      */
@@ -588,6 +707,25 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         } catch (Throwable ignored) {}
     }
 
+    @Override
+    public void onDestroyView() {
+        // 地圖跟著 view 一起銷毀；還沒加完的 marker 排程要取消，不然會加到舊地圖上
+        if (markers != null) {
+            markers.clear();
+            markers = null;
+        }
+        argMarker = null;
+        rangeCircle = null;
+        map = null;
+        loadedBounds = null;
+        loadedZoom = -1;
+        if (iconCache != null) {
+            iconCache.release();
+            iconCache = null;
+        }
+        super.onDestroyView();
+    }
+
     private int dp(int dps) {
         return (int) (dps * getResources().getDisplayMetrics().density);
     }
@@ -0,0 +1,302 @@
+package com.example.fmap.ui.home;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.example.fmap.R;
+import com.example.fmap.model.Place;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 地圖 marker 圖示的快取。
+ * 店家圖釘會依「分類 (顏色 + 第一個字)、評分區間、是否選取」畫成不同樣子，群組圓圈依顯示的數字；
+ * 一樣的組合只畫一次，存成 BitmapDescriptor 放在 LruCache (最多 MAX_ICONS 個，不會無限長大)。
+ *
+ * - prewarm：換了篩選結果時，在背景把最常見的組合先畫好，真正加 marker 時幾乎都會命中快取。
+ *   (點陣圖在背景畫，包成 BitmapDescriptor 這一步回主執行緒做)
+ * - 系統記憶體吃緊 (onTrimMemory) 時清掉快取；已經在地圖上的 marker 不受影響，之後要用再重畫。
+ *
+ * 只能在主執行緒呼叫 (prewarm 除外，它自己會切執行緒)。
+ */
+public class MarkerIconCache implements ComponentCallbacks2 {
+
+    // 最多快取幾個圖示 (分類數 × 評分區間 × 選取與否，再加上群組圓圈)
+    private static final int MAX_ICONS = 96;
+    // prewarm 最多先畫幾個 (留一半空間給臨時需要的)
+    private static final int PREWARM_LIMIT = MAX_ICONS / 2;
+
+    // 分類顏色 (同一個分類永遠同一個顏色)
+    private static final int[] PALETTE = {
+            0xFF42A5F5, 0xFFEF5350, 0xFF66BB6A, 0xFFFFA726,
+            0xFFAB47BC, 0xFF26A69A, 0xFF8D6E63, 0xFF5C6BC0,
+    };
+    private static final int NO_CATEGORY_COLOR = 0xFF78909C;
+
+    // 評分區間的下限 (由高到低)；低於最後一個或沒有評分就不畫評分
+    private static final double[] RATING_BUCKETS = {4.5, 4.0, 3.5};
+
+    private final Context appContext;
+    private final float density;
+    private final LruCache<String, BitmapDescriptor> cache = new LruCache<>(MAX_ICONS);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public MarkerIconCache(@NonNull Context context) {
+        this.appContext = context.getApplicationContext();
+        this.density = appContext.getResources().getDisplayMetrics().density;
+        appContext.registerComponentCallbacks(this);
+    }
+
+    /** 不再使用時呼叫：取消註冊記憶體通知、清空快取。 */
+    public void release() {
+        appContext.unregisterComponentCallbacks(this);
+        executor.shutdownNow();
+        mainHandler.removeCallbacksAndMessages(null);
+        cache.evictAll();
+    }
+
+    // ---------------- 取得圖示 ----------------
+
+    /** 店家圖釘。 */
+    @NonNull
+    public BitmapDescriptor pin(@NonNull Place p, boolean selected) {
+        return get(pinKey(p, selected));
+    }
+
+    /** 群組圓圈 (count 家店)。 */
+    @NonNull
+    public BitmapDescriptor cluster(int count) {
+        return get(clusterKey(count));
+    }
+
+    /**
+     * 圖示的 key (一樣的 key 就是一樣的圖)。
+     * MarkerReconciler 用它判斷既有的 marker 需不需要換圖示。
+     */
+    @NonNull
+    public static String pinKey(@NonNull Place p, boolean selected) {
+        return "p|" + categoryOf(p) + "|" + ratingBucket(p.getRating()) + "|" + (selected ? 1 : 0);
+    }
+
+    @NonNull
+    public static String clusterKey(int count) {
+        return "c|" + clusterLabel(count);
+    }
+
+    private BitmapDescriptor get(String key) {
+        BitmapDescriptor icon = cache.get(key);
+        if (icon == null) {
+            icon = BitmapDescriptorFactory.fromBitmap(render(key));
+            cache.put(key, icon);
+        }
+        return icon;
+    }
+
+    /**
+     * 在背景把 places 裡最常見的圖釘組合先畫好 (未選取的)。
+     * 畫完回到主執行緒才放進快取；已經有的就跳過。
+     */
+    public void prewarm(@Nullable List<Place> places) {
+        if (places == null || places.isEmpty()) return;
+        List<Place> snapshot = new ArrayList<>(places);
+        executor.execute(() -> {
+            Map<String, Integer> freq = new HashMap<>();
+            for (Place p : snapshot) {
+                if (p == null) continue;
+                freq.merge(pinKey(p, false), 1, Integer::sum);
+            }
+            List<String> keys = new ArrayList<>(freq.keySet());
+            keys.sort((a, b) -> Integer.compare(freq.get(b), freq.get(a)));
+            if (keys.size() > PREWARM_LIMIT) keys = keys.subList(0, PREWARM_LIMIT);
+
+            for (String key : keys) {
+                if (Thread.currentThread().isInterrupted()) return;
+                Bitmap bm = render(key);
+                mainHandler.post(() -> {
+                    if (cache.get(key) == null) cache.put(key, BitmapDescriptorFactory.fromBitmap(bm));
+                });
+            }
+        });
+    }
+
+    // ---------------- 記憶體 ----------------
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // 畫面已經不在前景 (或系統很缺記憶體)：全部放掉，回來再重畫
+            cache.evictAll();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(MAX_ICONS / 4);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        cache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) { }
+
+    // ---------------- 畫圖 ----------------
+
+    private Bitmap render(String key) {
+        String[] parts = key.split("\\|", -1);
+        if ("c".equals(parts[0])) return renderCluster(parts[1]);
+        return renderPin(parts[1], Integer.parseInt(parts[2]), "1".equals(parts[3]));
+    }
+
+    /** 圖釘：分類顏色的水滴 + 白色圓圈裡寫分類的第一個字；評分高的右上角加一個評分小標。 */
+    private Bitmap renderPin(String category, int bucket, boolean selected) {
+        int pinH = dp(selected ? 48 : 38);
+        int pinW = pinH;
+        int badgeW = bucket >= 0 ? dp(26) : 0;
+        int w = pinW + badgeW / 2;
+        Bitmap bm = Bitmap.createBitmap(w, pinH, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bm);
+        int color = category.isEmpty() ? NO_CATEGORY_COLOR : PALETTE[Math.floorMod(category.hashCode(), PALETTE.length)];
+
+        // 水滴 (圖釘本體) 靠左畫，右邊留給評分小標；尖端的位置見 pinAnchorU
+        Drawable d = ContextCompat.getDrawable(appContext, R.drawable.ic_store_pin);
+        if (d != null) {
+            d = d.mutate();
+            d.setTint(selected ? darker(color) : color);
+            d.setBounds(0, 0, pinW, pinH);
+            d.draw(canvas);
+        }
+
+        // 圖釘頭 (向量圖裡中心在 (12, 9)/24) 蓋一個白圓，寫分類的第一個字
+        float cx = pinW / 2f, cy = pinH * 9f / 24f, r = pinW * 5.2f / 24f;
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.WHITE);
+        canvas.drawCircle(cx, cy, r, paint);
+        if (!category.isEmpty()) {
+            String glyph = new String(Character.toChars(category.codePointAt(0)));
+            paint.setColor(color);
+            paint.setTextAlign(Paint.Align.CENTER);
+            paint.setTextSize(r * 1.3f);
+            paint.setFakeBoldText(true);
+            canvas.drawText(glyph, cx, cy - (paint.descent() + paint.ascent()) / 2f, paint);
+        }
+
+        // 評分小標
+        if (bucket >= 0) {
+            String label = String.format(Locale.ROOT, "%.1f", RATING_BUCKETS[bucket]);
+            RectF box = new RectF(w - badgeW, 0, w, dp(14));
+            paint.setColor(0xFFFFB300);
+            canvas.drawRoundRect(box, dp(7), dp(7), paint);
+            paint.setColor(Color.WHITE);
+            paint.setTextAlign(Paint.Align.CENTER);
+            paint.setTextSize(dp(10));
+            paint.setFakeBoldText(true);
+            canvas.drawText(label, box.centerX(), box.centerY() - (paint.descent() + paint.ascent()) / 2f, paint);
+        }
+        return bm;
+    }
+
+    /** 群組圓圈：數字越大圈越大。 */
+    private Bitmap renderCluster(String label) {
+        int count = parseLeadingInt(label);
+        int size = dp(count < 10 ? 36 : count < 100 ? 44 : count < 1000 ? 52 : 60);
+        Bitmap bm = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bm);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.WHITE);
+        canvas.drawCircle(size / 2f, size / 2f, size / 2f, paint);
+        paint.setColor(Color.parseColor("#42A5F5"));
+        canvas.drawCircle(size / 2f, size / 2f, size / 2f - dp(3), paint);
+        paint.setColor(Color.WHITE);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTextSize(dp(label.length() > 3 ? 12 : 14));
+        paint.setFakeBoldText(true);
+        float baseline = size / 2f - (paint.descent() + paint.ascent()) / 2f;
+        canvas.drawText(label, size / 2f, baseline, paint);
+        return bm;
+    }
+
+    /**
+     * 圖釘尖端在圖裡的水平位置 (0..1)。有評分小標時圖比較寬，尖端不在正中間。
+     * MarkerOptions.anchor 要用這個值，marker 才會剛好指在店家座標上。
+     */
+    public float pinAnchorU(@NonNull Place p, boolean selected) {
+        if (ratingBucket(p.getRating()) < 0) return 0.5f;
+        int pinW = dp(selected ? 48 : 38);
+        int badgeW = dp(26);
+        return (pinW / 2f) / (pinW + badgeW / 2f);
+    }
+
+    // ---------------- key 的組成 ----------------
+
+    /** 店家的主要分類 (Place.tagsTop3 放的是分類)；沒有就是空字串。 */
+    private static String categoryOf(Place p) {
+        List<String> cats = p.getTagsTop3();
+        if (cats != null) {
+            for (String c : cats) {
+                if (c != null && !c.trim().isEmpty()) return c.trim().replace("|", "");
+            }
+        }
+        return "";
+    }
+
+    /** 評分 → RATING_BUCKETS 的 index；太低或沒有評分回傳 -1。 */
+    private static int ratingBucket(@Nullable Double rating) {
+        if (rating == null) return -1;
+        for (int i = 0; i < RATING_BUCKETS.length; i++) {
+            if (rating >= RATING_BUCKETS[i]) return i;
+        }
+        return -1;
+    }
+
+    /** 7 → "7"、63 → "50+"、1234 → "1000+"：數字大時只顯示大概，圖示也能共用。 */
+    private static String clusterLabel(int count) {
+        if (count < 10) return String.valueOf(count);
+        int[] steps = {10000, 5000, 2000, 1000, 500, 200, 100, 50, 20, 10};
+        for (int step : steps) {
+            if (count >= step) return step + "+";
+        }
+        return String.valueOf(count);
+    }
+
+    private static int parseLeadingInt(String label) {
+        int n = 0;
+        for (int i = 0; i < label.length() && Character.isDigit(label.charAt(i)); i++) {
+            n = n * 10 + (label.charAt(i) - '0');
+        }
+        return n;
+    }
+
+    private static int darker(int color) {
+        float[] hsv = new float[3];
+        Color.colorToHSV(color, hsv);
+        hsv[2] *= 0.75f;
+        return Color.HSVToColor(Color.alpha(color), hsv);
+    }
+
+    private int dp(int dps) {
+        return Math.round(dps * density);
+    }
+}
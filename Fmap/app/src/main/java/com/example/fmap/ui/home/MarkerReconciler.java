@@ -0,0 +1,212 @@
+package com.example.fmap.ui.home;
+
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.fmap.model.Place;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 地圖 marker 的增量更新：拿新的 MapCluster 清單跟地圖上現有的 marker 用 key (店家 id / 群組格子) 比對，
+ * 只移除不見的、更新有變的、新增多出來的，不再每次 map.clear() 之後全部重畫 (會閃，也會卡主執行緒)。
+ *
+ * 新增的 marker 很多時 (例如第一次載入、大幅移動地圖)，每一個畫面 (frame) 只加 ADDS_PER_FRAME 個，
+ * 剩下的排到下一個 frame，避免一次 addMarker 幾百次造成掉幀。
+ * 還沒加完就又 submit 新清單時，舊的排程直接作廢，以新清單為準。
+ *
+ * 只能在主執行緒使用。
+ */
+public class MarkerReconciler {
+
+    /** 每個 frame 最多新增幾個 marker。 */
+    private static final int ADDS_PER_FRAME = 40;
+
+    /** 決定一個店家 / 群組的 marker 長什麼樣子 (位置、標題、圖示)。 */
+    public interface MarkerFactory {
+        @NonNull MarkerOptions optionsFor(@NonNull MapCluster cluster);
+
+        /** 圖示的 key：跟上次不一樣才換圖示 (setIcon 很貴，不要每次都換)。 */
+        @NonNull String iconKey(@NonNull MapCluster cluster);
+    }
+
+    private final GoogleMap map;
+    private final MarkerFactory factory;
+
+    // key → marker (地圖上目前有的)，以及它現在代表的店家 / 群組
+    private final Map<String, Marker> byId = new HashMap<>();
+    private final Map<String, MapCluster> shown = new HashMap<>();
+    private final Map<String, String> iconKeys = new HashMap<>();
+    // 店名 → marker (舊的聚焦參數可能只帶店名)
+    private final Map<String, Marker> byName = new HashMap<>();
+
+    // 還沒加到地圖上的店家 / 群組 (分批新增中)
+    private final ArrayDeque<MapCluster> pendingAdds = new ArrayDeque<>();
+    @Nullable private Runnable onSettled;
+    private boolean frameScheduled = false;
+
+    private final Choreographer.FrameCallback addBatch = frameTimeNanos -> {
+        frameScheduled = false;
+        drainAdds();
+    };
+
+    public MarkerReconciler(@NonNull GoogleMap map, @NonNull MarkerFactory factory) {
+        this.map = map;
+        this.factory = factory;
+    }
+
+    /**
+     * 讓地圖上的 marker 跟 clusters 一致。
+     * @param onSettled 全部 marker 都加完之後呼叫 (可以在這裡聚焦 / 開詳情)；清單不大時會直接同步呼叫
+     */
+    public void submit(@Nullable List<MapCluster> clusters, @Nullable Runnable onSettled) {
+        // 新清單 (以 key 去重)
+        Map<String, MapCluster> wanted = new LinkedHashMap<>();
+        if (clusters != null) {
+            for (MapCluster c : clusters) {
+                if (c != null) wanted.put(c.key, c);
+            }
+        }
+
+        // 上一輪還沒加完的全部作廢，以這一輪為準
+        pendingAdds.clear();
+
+        // 1) 新清單沒有的 → 移除
+        Iterator<Map.Entry<String, Marker>> it = byId.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Marker> e = it.next();
+            if (wanted.containsKey(e.getKey())) continue;
+            Marker m = e.getValue();
+            unindexName(m);
+            m.remove();
+            it.remove();
+            shown.remove(e.getKey());
+            iconKeys.remove(e.getKey());
+        }
+
+        // 2) 已經有的 → 只更新有變的屬性；3) 沒有的 → 排進新增佇列
+        for (MapCluster c : wanted.values()) {
+            Marker m = byId.get(c.key);
+            if (m == null) {
+                pendingAdds.add(c);
+            } else {
+                update(m, c);
+            }
+        }
+
+        this.onSettled = onSettled;
+        drainAdds();
+    }
+
+    /** 用店家 id (或店名) 找單一店家的 marker；還沒加到地圖上 (或被分在群組裡) 就回傳 null。 */
+    @Nullable
+    public Marker get(@Nullable String idOrName) {
+        if (idOrName == null) return null;
+        Marker m = byId.get(idOrName);
+        return m != null ? m : byName.get(idOrName);
+    }
+
+    /** 重新檢查某個 key 的 marker 圖示 (例如選取狀態變了)；不在地圖上就什麼都不做。 */
+    public void refreshIcon(@Nullable String key) {
+        if (key == null) return;
+        Marker m = byId.get(key);
+        MapCluster c = shown.get(key);
+        if (m == null || c == null) return;
+        String iconKey = factory.iconKey(c);
+        if (iconKey.equals(iconKeys.get(key))) return;
+        MarkerOptions want = factory.optionsFor(c);
+        m.setIcon(want.getIcon());
+        m.setAnchor(want.getAnchorU(), want.getAnchorV());
+        iconKeys.put(key, iconKey);
+    }
+
+    /** 移除全部 marker、取消還沒加完的排程 (地圖要被銷毀時呼叫)。 */
+    public void clear() {
+        pendingAdds.clear();
+        onSettled = null;
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(addBatch);
+            frameScheduled = false;
+        }
+        for (Marker m : byId.values()) m.remove();
+        byId.clear();
+        shown.clear();
+        iconKeys.clear();
+        byName.clear();
+    }
+
+    private void drainAdds() {
+        int added = 0;
+        while (!pendingAdds.isEmpty() && added < ADDS_PER_FRAME) {
+            MapCluster c = pendingAdds.poll();
+            Marker m = map.addMarker(factory.optionsFor(c));
+            if (m == null) continue;
+            m.setTag(tagOf(c));
+            byId.put(c.key, m);
+            shown.put(c.key, c);
+            iconKeys.put(c.key, factory.iconKey(c));
+            indexName(c, m);
+            added++;
+        }
+        if (!pendingAdds.isEmpty()) {
+            if (!frameScheduled) {
+                frameScheduled = true;
+                Choreographer.getInstance().postFrameCallback(addBatch);
+            }
+            return;
+        }
+        Runnable done = onSettled;
+        onSettled = null;
+        if (done != null) done.run();
+    }
+
+    /** 已經在地圖上的 marker：位置 / 標題 / 地址 / 圖示有變才去動它 (每個 setter 都會重畫這顆 marker)。 */
+    private void update(Marker m, MapCluster c) {
+        MarkerOptions want = factory.optionsFor(c);
+        LatLng pos = want.getPosition();
+        if (!pos.equals(m.getPosition())) m.setPosition(pos);
+        if (!Objects.equals(want.getTitle(), m.getTitle())) {
+            unindexName(m);
+            m.setTitle(want.getTitle());
+        }
+        if (!Objects.equals(want.getSnippet(), m.getSnippet())) m.setSnippet(want.getSnippet());
+        String iconKey = factory.iconKey(c);
+        if (!iconKey.equals(iconKeys.get(c.key))) {
+            m.setIcon(want.getIcon());
+            m.setAnchor(want.getAnchorU(), want.getAnchorV());
+            iconKeys.put(c.key, iconKey);
+        }
+        m.setTag(tagOf(c));
+        shown.put(c.key, c);
+        indexName(c, m);
+    }
+
+    /** marker 的 tag：單一店家放 Place (點了開詳情)，群組放 MapCluster (點了展開)。 */
+    private static Object tagOf(MapCluster c) {
+        return c.isSingle() ? c.place : c;
+    }
+
+    private void indexName(MapCluster c, Marker m) {
+        if (c.place != null && c.place.getName() != null) byName.put(c.place.getName(), m);
+    }
+
+    private void unindexName(Marker m) {
+        Object tag = m.getTag();
+        if (tag instanceof Place) {
+            String name = ((Place) tag).getName();
+            if (name != null && byName.get(name) == m) byName.remove(name);
+        }
+    }
+}
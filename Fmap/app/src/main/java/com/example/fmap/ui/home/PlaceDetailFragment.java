@@ -28,9 +28,12 @@ import androidx.lifecycle.ViewModelProvider;
 import com.bumptech.glide.Glide;
 import com.example.fmap.R;
 import com.example.fmap.data.StoresRepository;
+import com.example.fmap.data.UserActionJournal;
+import com.example.fmap.data.local.UserActionEntity;
 import com.example.fmap.model.FavoritesStore;
 import com.example.fmap.model.Place;
 import com.example.fmap.model.TimeRange;
+import com.example.fmap.util.WeekTime;
 import com.google.android.material.bottomsheet.BottomSheetBehavior;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
@@ -38,8 +41,6 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
@@ -49,7 +50,7 @@ import java.util.Map;
 
 /**
  * 店家詳情（本機資料版）
- * - FavoritesStore（SharedPreferences）
+ * - FavoritesStore（Room 的 favorites 資料表）
  * - StoreRepository（ui.home wrapper -> data.StoresRepository）
  * - 營業時間支援「今天摘要 + 展開/收合」
  * - 地圖按鈕行為依來源切換：
@@ -139,10 +140,15 @@ public class PlaceDetailFragment extends BottomSheetDialogFragment {
         // 先顯示備援（如果有帶 Place 進來，讓 UI 先有畫面）
         if (currentPlace != null) {
             bindPlaceToViews(currentPlace);
-            if (currentPlace.getId() != null) {
-                isCurrentlyFavorite = favoritesStore.contains(currentPlace.getId());
+        }
+        // 收藏狀態跟著記憶體快照：收藏 / 取消收藏 (不管在哪裡改的) 一記下就更新愛心，不查資料表
+        String favId = placeId != null && !placeId.isEmpty() ? placeId
+                : (currentPlace != null ? currentPlace.getId() : null);
+        if (favId != null) {
+            favoritesStore.observeContains(favId).observe(getViewLifecycleOwner(), fav -> {
+                isCurrentlyFavorite = Boolean.TRUE.equals(fav);
                 updateHeartButtonUI();
-            }
+            });
         }
 
         // 沒有 id 就只用備援；有 id 才去查資料庫
@@ -226,10 +232,6 @@ public class PlaceDetailFragment extends BottomSheetDialogFragment {
                     }
 
                     currentPlace = mapped;
-                    if (currentPlace.getId() != null) {
-                        isCurrentlyFavorite = favoritesStore.contains(currentPlace.getId());
-                    }
-                    updateHeartButtonUI();
                     bindPlaceToViews(currentPlace);
                 });
 
@@ -329,7 +331,7 @@ public class PlaceDetailFragment extends BottomSheetDialogFragment {
     }
 
     // ====== 營業時間（摘要 + 展開明細） ======
-    private static final String[] WEEK_CN = {"星期一","星期二","星期三","星期四","星期五","星期六","星期日"};
+    // 星期名稱在匯入時已經統一成 WeekTime.DAY_NAMES 的寫法 (StoreMappers.formatBusinessHours)，這裡直接取值
 
     private void bindBusinessHours(Place p) {
         Map<String, List<TimeRange>> map = p.getBusinessHours();
@@ -340,84 +342,38 @@ public class PlaceDetailFragment extends BottomSheetDialogFragment {
         }
         rowHoursHeader.setVisibility(View.VISIBLE);
 
-        Calendar cal = Calendar.getInstance();
-        int idx = (cal.get(Calendar.DAY_OF_WEEK) + 5) % 7; // Mon=0 … Sun=6
-        String todayKey = WEEK_CN[idx];
-        List<TimeRange> today = findByAliases(map, todayKey);
+        String todayKey = WeekTime.DAY_NAMES[WeekTime.dayIndexOf(Calendar.getInstance())];
+        List<TimeRange> today = map.get(todayKey);
         tvHoursSummary.setText((today == null || today.isEmpty())
                 ? "今天：公休"
-                : "今天：" + joinRangesAny(today));
+                : "今天：" + joinRanges(today));
 
         hoursContainer.removeAllViews();
-        for (String k : WEEK_CN) {
-            List<TimeRange> ranges = findByAliases(map, k);
+        for (String k : WeekTime.DAY_NAMES) {
+            List<TimeRange> ranges = map.get(k);
             TextView tv = new TextView(getContext());
             tv.setTextSize(TypedValue.COMPLEX_UNIT_SP, 14);
             tv.setTextColor(ContextCompat.getColor(requireContext(), R.color.black));
             tv.setPadding(0, dp(4), 0, dp(4));
-            tv.setText((ranges == null || ranges.isEmpty()) ? (k + "　公休") : (k + "　" + joinRangesAny(ranges)));
+            tv.setText((ranges == null || ranges.isEmpty()) ? (k + "　公休") : (k + "　" + joinRanges(ranges)));
             hoursContainer.addView(tv);
         }
     }
 
-    private List<TimeRange> findByAliases(Map<String, List<TimeRange>> map, String keyCn) {
-        String[] aliases = aliasesOf(keyCn);
-        for (String a : aliases) {
-            if (map.containsKey(a)) return map.get(a);
-            if (map.containsKey(a.toLowerCase())) return map.get(a.toLowerCase());
-            if (map.containsKey(a.toUpperCase())) return map.get(a.toUpperCase());
-            String noSpace = a.replace(" ", "");
-            if (map.containsKey(noSpace)) return map.get(noSpace);
-        }
-        return null;
-    }
-
-    private String[] aliasesOf(String cn) {
-        switch (cn) {
-            case "星期一": return new String[]{"星期一","週一","周一","Mon","MON","Monday"};
-            case "星期二": return new String[]{"星期二","週二","周二","Tue","TUE","Tuesday"};
-            case "星期三": return new String[]{"星期三","週三","周三","Wed","WED","Wednesday"};
-            case "星期四": return new String[]{"星期四","週四","周四","Thu","THU","Thursday"};
-            case "星期五": return new String[]{"星期五","週五","周五","Fri","FRI","Friday"};
-            case "星期六": return new String[]{"星期六","週六","周六","Sat","SAT","Saturday"};
-            default:       return new String[]{"星期日","週日","周日","Sun","SUN","Sunday"};
-        }
-    }
-
-    /** 將一日內多段時間組成字串（兼容任何 TimeRange 結構：有 getter 或只有欄位都可） */
-    private String joinRangesAny(List<?> ranges) {
+    /** 將一日內多段時間組成字串 */
+    private String joinRanges(List<TimeRange> ranges) {
         List<String> parts = new ArrayList<>();
-        if (ranges != null) {
-            for (Object r : ranges) {
-                String open  = getTimeFieldAny(r, "getOpen",  "open");
-                String close = getTimeFieldAny(r, "getClose", "close");
-                if (!TextUtils.isEmpty(open) && !TextUtils.isEmpty(close)) {
-                    parts.add(open + "–" + close);
-                }
+        for (TimeRange r : ranges) {
+            if (r == null) continue;
+            String open = r.open == null ? "" : r.open.trim();
+            String close = r.close == null ? "" : r.close.trim();
+            if (!TextUtils.isEmpty(open) && !TextUtils.isEmpty(close)) {
+                parts.add(open + "–" + close);
             }
         }
         return parts.isEmpty() ? "公休" : TextUtils.join("、", parts);
     }
 
-    /** 先找 getter，沒有就讀欄位（通用版） */
-    private String getTimeFieldAny(Object r, String getter, String fieldName) {
-        if (r == null) return "";
-        try {
-            Method m = r.getClass().getMethod(getter);
-            Object v = m.invoke(r);
-            return v == null ? "" : v.toString().trim();
-        } catch (Exception ignore) {
-            try {
-                Field f = r.getClass().getDeclaredField(fieldName);
-                f.setAccessible(true);
-                Object v = f.get(r);
-                return v == null ? "" : v.toString().trim();
-            } catch (Exception e) {
-                return "";
-            }
-        }
-    }
-
     private void toggleHoursVisibility() {
         boolean expand = hoursContainer.getVisibility() != View.VISIBLE;
         hoursContainer.setVisibility(expand ? View.VISIBLE : View.GONE);
@@ -458,11 +414,14 @@ public class PlaceDetailFragment extends BottomSheetDialogFragment {
     private void toggleFavoriteStatus() {
         if (currentPlace == null || currentPlace.getId() == null) return;
         isCurrentlyFavorite = !isCurrentlyFavorite;
+        // 記進動作日誌 (背景批次提交)；快照當下就改了，observeContains 會把愛心設成一樣的狀態
+        // (提交失敗時快照重讀，愛心也會跟著改回來)
+        final UserActionJournal journal = UserActionJournal.getInstance(requireContext());
         if (isCurrentlyFavorite) {
-            favoritesStore.add(currentPlace);
+            journal.record(UserActionEntity.LIKE, currentPlace.getId());
             Toast.makeText(getContext(), "已收藏", Toast.LENGTH_SHORT).show();
         } else {
-            favoritesStore.removeById(currentPlace.getId());
+            journal.record(UserActionEntity.UNFAVORITE, currentPlace.getId());
             Toast.makeText(getContext(), "已取消收藏", Toast.LENGTH_SHORT).show();
         }
         updateHeartButtonUI();
@@ -0,0 +1,33 @@
+package com.example.fmap.ui.home;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.example.fmap.model.Place;
+
+import java.util.Objects;
+
+/**
+ * 店家清單 (卡片牌堆、收藏、垃圾桶) 共用的比對規則：
+ * 同一個 id 就是同一張卡；名稱、評分、地址、標籤、封面都一樣才算內容沒變 (不用重新綁定、不用重載圖片)。
+ */
+final class PlaceDiff {
+
+    static final DiffUtil.ItemCallback<Place> ITEM = new DiffUtil.ItemCallback<Place>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Place a, @NonNull Place b) {
+            return Objects.equals(a.id, b.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Place a, @NonNull Place b) {
+            return Objects.equals(a.getName(), b.getName())
+                    && Objects.equals(a.getRating(), b.getRating())
+                    && Objects.equals(a.getAddress(), b.getAddress())
+                    && Objects.equals(a.getTagsTop3(), b.getTagsTop3())
+                    && Objects.equals(a.getCoverImage(), b.getCoverImage());
+        }
+    };
+
+    private PlaceDiff() {}
+}
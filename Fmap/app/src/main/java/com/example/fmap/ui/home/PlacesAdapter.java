@@ -12,21 +12,24 @@ import android.widget.TextView;
 import android.graphics.Color;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.PagingDataAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.example.fmap.R;
 import com.example.fmap.model.Place;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 
-public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.VH> {
+/**
+ * Home 的卡片牌堆。資料是 HomeViewModel.getDeck() 的分頁 (PagingData)：
+ * 順序由資料庫決定 (見 HomeDeckPagingSource)，新舊資料的比對在背景執行緒做 (PlaceDiff)，只更新有變的卡片。
+ * PagingDataAdapter 不支援 setHasStableIds，卡片的身分由 PlaceDiff 用店家 id 比對。
+ */
+public class PlacesAdapter extends PagingDataAdapter<Place, PlacesAdapter.VH> {
 
-    private final List<Place> data = new ArrayList<>();
     private final Context context;
     private final OnPlaceClickListener clickListener;
 
@@ -35,35 +38,15 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.VH> {
     }
 
     public PlacesAdapter(Context context, OnPlaceClickListener listener) {
+        super(PlaceDiff.ITEM);
         this.context = context.getApplicationContext();
         this.clickListener = listener;
     }
 
-    public void submit(List<Place> list) {
-        data.clear();
-        if (list != null && !list.isEmpty()) {
-            Collections.sort(list, new Comparator<Place>() {
-                @Override
-                public int compare(Place p1, Place p2) {
-                    Double r1 = (p1 != null && p1.getRating() != null) ? p1.getRating() : 0.0;
-                    Double r2 = (p2 != null && p2.getRating() != null) ? p2.getRating() : 0.0;
-                    return Double.compare(r2, r1);
-                }
-            });
-            data.addAll(list); // 加入排序好的資料
-        }
-        notifyDataSetChanged(); // 通知畫面更新
-    }
-
-    public Place getItem(int pos) {
-        return (pos >= 0 && pos < data.size()) ? data.get(pos) : null;
-    }
-
-    public void removeAt(int pos) {
-        if (pos >= 0 && pos < data.size()) {
-            data.remove(pos);
-            notifyItemRemoved(pos);
-        }
+    /** 已經載入的第 pos 張卡 (不會觸發載入)；超出範圍或還沒載入就回傳 null。 */
+    @Nullable
+    public Place placeAt(int pos) {
+        return (pos >= 0 && pos < getItemCount()) ? peek(pos) : null;
     }
 
     @NonNull
@@ -76,15 +59,10 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.VH> {
 
     @Override
     public void onBindViewHolder(@NonNull VH h, int position) {
-        Place item = getItem(position);
+        Place item = getItem(position); // 同時告訴 Paging 畫面讀到哪了 (該載下一頁了沒)
         if (item != null) h.bind(item, context);
     }
 
-    @Override
-    public int getItemCount() {
-        return data.size();
-    }
-
     /** 取前三個 tag，沒有就回空字串（或可改回 address 當備援） */
     private static String buildTagsPreferTagsFirst(Place p) {
         if (p == null) return "";
@@ -166,7 +144,7 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.VH> {
             itemView.setOnClickListener(v -> {
                 int pos = getBindingAdapterPosition();
                 if (pos != RecyclerView.NO_POSITION && listener != null) {
-                    Place clicked = ((PlacesAdapter) getBindingAdapter()).getItem(pos);
+                    Place clicked = ((PlacesAdapter) getBindingAdapter()).placeAt(pos);
                     if (clicked != null) listener.onPlaceClick(clicked);
                 }
             });
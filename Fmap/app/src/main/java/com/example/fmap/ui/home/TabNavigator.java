@@ -0,0 +1,144 @@
+package com.example.fmap.ui.home;
+
+import android.content.ComponentCallbacks2;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
+import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.Lifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 底部導覽三個分頁 (Home / Map / Favorite) 的切換：每個分頁只建一次，之後切換只是 show / hide，
+ * 地圖的鏡頭、marker、清單捲動位置都留著，切回來不用重新載入。
+ *
+ * - 隱藏的分頁用 setMaxLifecycle 壓在 STARTED：會走 onPause (地圖停止繪製、抽屜圖示照舊切換)，
+ *   但 view 不會被銷毀；顯示的分頁才放到 RESUMED。
+ * - 分頁總共只有三個，平常三個都留著，不另外設上限；
+ *   唯一會丟掉分頁的時機是記憶體吃緊 (onTrimMemory)：只留目前的分頁和地圖 (地圖重建最貴)。
+ *
+ * 只能在主執行緒使用。
+ */
+public class TabNavigator {
+
+    public static final String TAG_HOME = "HomeFragment";
+    public static final String TAG_MAP = "MapFragment";
+    public static final String TAG_FAVORITE = "FavoriteFragment";
+
+    /** 第一次切到某個分頁時，建立它的 Fragment。 */
+    public interface TabFactory {
+        @NonNull Fragment create(@NonNull String tag);
+    }
+
+    private final FragmentManager fm;
+    private final int containerId;
+    private final TabFactory factory;
+
+    // 還活著的分頁，最近用過的在最後面 (onTrimMemory 靠它知道要丟哪些)
+    private final List<String> recent = new ArrayList<>();
+    @Nullable private String current;
+
+    public TabNavigator(@NonNull FragmentManager fm, int containerId, @NonNull TabFactory factory) {
+        this.fm = fm;
+        this.containerId = containerId;
+        this.factory = factory;
+        restore();
+    }
+
+    /** Activity 重建後 FragmentManager 會自己把分頁加回來，這裡只要重新認得它們。 */
+    private void restore() {
+        for (String tag : new String[]{TAG_HOME, TAG_MAP, TAG_FAVORITE}) {
+            Fragment f = fm.findFragmentByTag(tag);
+            if (f == null) continue;
+            if (f.isHidden()) {
+                recent.add(0, tag);
+            } else {
+                recent.add(tag);
+                current = tag;
+            }
+        }
+    }
+
+    /** 目前顯示的分頁 tag；還沒選過就是 null。 */
+    @Nullable
+    public String current() {
+        return current;
+    }
+
+    /** 已經建立 (還活著) 的分頁；沒有就回傳 null。 */
+    @Nullable
+    public Fragment find(@NonNull String tag) {
+        return fm.findFragmentByTag(tag);
+    }
+
+    /** 切到 tag 這個分頁：沒有就建立，有就直接顯示；其他分頁隱藏並降到 STARTED。 */
+    public void select(@NonNull String tag) {
+        // 垃圾桶之類疊在分頁上面的頁面先收掉，不然切過去還是被蓋住
+        if (fm.getBackStackEntryCount() > 0) {
+            fm.popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+        }
+        if (tag.equals(current) && fm.findFragmentByTag(tag) != null) return;
+
+        FragmentTransaction tx = fm.beginTransaction().setReorderingAllowed(true);
+
+        // 先把其他分頁降下來 (onPause 先跑，再輪到新分頁 onResume)；
+        // 已經隱藏的也照做，因為上面 pop 的疊頁還沒倒回去，倒回去時會把原本的分頁重新顯示
+        for (String other : recent) {
+            if (other.equals(tag)) continue;
+            Fragment f = fm.findFragmentByTag(other);
+            if (f == null) continue;
+            tx.hide(f).setMaxLifecycle(f, Lifecycle.State.STARTED);
+        }
+
+        Fragment target = fm.findFragmentByTag(tag);
+        if (target == null) {
+            target = factory.create(tag);
+            tx.add(containerId, target, tag);
+        } else {
+            tx.show(target);
+        }
+        tx.setMaxLifecycle(target, Lifecycle.State.RESUMED);
+
+        recent.remove(tag);
+        recent.add(tag);
+        current = tag;
+
+        tx.setTransition(FragmentTransaction.TRANSIT_FRAGMENT_FADE).commit();
+    }
+
+    /**
+     * 在目前的分頁上面疊一頁 (例如垃圾桶)，按返回鍵就回到原本的分頁。
+     * 原本的分頁只是隱藏 + 降到 STARTED，返回時整個交易倒回去，分頁原封不動。
+     */
+    public void push(@NonNull Fragment page, @NonNull String tag) {
+        FragmentTransaction tx = fm.beginTransaction().setReorderingAllowed(true);
+        Fragment cur = current != null ? fm.findFragmentByTag(current) : null;
+        if (cur != null) tx.hide(cur).setMaxLifecycle(cur, Lifecycle.State.STARTED);
+        tx.add(containerId, page, tag)
+                .addToBackStack(tag)
+                .commit();
+    }
+
+    /** 記憶體吃緊：隱藏的分頁除了地圖都先丟掉，之後切回去再重建。 */
+    public void onTrimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) return;
+        // 返回堆疊裡的交易還記著這些分頁，有疊頁時不動
+        if (fm.isStateSaved() || fm.getBackStackEntryCount() > 0) return;
+        List<String> drop = new ArrayList<>();
+        for (String tag : recent) {
+            if (!tag.equals(current) && !tag.equals(TAG_MAP)) drop.add(tag);
+        }
+        if (drop.isEmpty()) return;
+        FragmentTransaction tx = fm.beginTransaction().setReorderingAllowed(true);
+        for (String tag : drop) {
+            Fragment f = fm.findFragmentByTag(tag);
+            if (f != null) tx.remove(f);
+            recent.remove(tag);
+        }
+        tx.commit();
+    }
+}
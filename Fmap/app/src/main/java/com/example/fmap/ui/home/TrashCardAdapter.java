@@ -10,6 +10,7 @@ import android.widget.RatingBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
@@ -17,40 +18,29 @@ import com.example.fmap.R;
 import com.example.fmap.model.Place;
 import com.google.android.material.button.MaterialButton;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
-public class TrashCardAdapter extends RecyclerView.Adapter<TrashCardAdapter.VH> {
+/**
+ * 垃圾桶 (不喜歡清單) 的卡片。資料是 HomeViewModel.getTrash() 的分頁 (見 TrashPagingSource)：
+ * 只有畫面附近的幾頁會讀出來，新舊資料在背景執行緒比對 (PlaceDiff)，只有變動的卡片會重新綁定。
+ * 還原 / 永久刪除不用自己從列表拿掉，資料表一變 Paging 就會重讀畫面附近那一頁。
+ */
+public class TrashCardAdapter extends PagingDataAdapter<Place, TrashCardAdapter.VH> {
 
     public interface OnTrashActionListener {
         void onRestore(@NonNull Place place, int position);
+        void onPurge(@NonNull Place place, int position);
     }
 
-    private final List<Place> data = new ArrayList<>();
     private final Context context;
     private final OnTrashActionListener listener;
 
     public TrashCardAdapter(@NonNull Context ctx, @NonNull OnTrashActionListener l) {
+        super(PlaceDiff.ITEM);
         this.context = ctx.getApplicationContext();
         this.listener = l;
-    }
-
-    public void submit(List<Place> list) {
-        data.clear();
-        if (list != null) data.addAll(list);
-        notifyDataSetChanged();
-    }
-
-    public void removeAt(int pos) {
-        if (pos >= 0 && pos < data.size()) {
-            data.remove(pos);
-            notifyItemRemoved(pos);
-        }
-    }
-
-    public Place getItem(int pos) {
-        return (pos >= 0 && pos < data.size()) ? data.get(pos) : null;
+        // PagingDataAdapter 不支援 setHasStableIds，卡片的身分由 PlaceDiff 用店家 id 比對
     }
 
     @NonNull
@@ -67,14 +57,11 @@ public class TrashCardAdapter extends RecyclerView.Adapter<TrashCardAdapter.VH>
         if (p != null) holder.bind(p, context);
     }
 
-    @Override
-    public int getItemCount() { return data.size(); }
-
     static class VH extends RecyclerView.ViewHolder {
         ImageView imgThumb;
         RatingBar ratingBar;
         TextView tvName, tvRating, tvTags;
-        MaterialButton btnRestore;
+        MaterialButton btnRestore, btnDelete;
 
         private final OnTrashActionListener listener;
 
@@ -87,6 +74,7 @@ public class TrashCardAdapter extends RecyclerView.Adapter<TrashCardAdapter.VH>
             tvRating = v.findViewById(R.id.tvRating);
             tvTags   = v.findViewById(R.id.tvTags);
             btnRestore = v.findViewById(R.id.btnRestore);
+            btnDelete = v.findViewById(R.id.btnDelete);
         }
 
         void bind(@NonNull Place p, @NonNull Context ctx) {
@@ -140,6 +128,14 @@ public class TrashCardAdapter extends RecyclerView.Adapter<TrashCardAdapter.VH>
                     if (pos != RecyclerView.NO_POSITION) listener.onRestore(p, pos);
                 }
             });
+            if (btnDelete != null) {
+                btnDelete.setOnClickListener(v -> {
+                    if (listener != null) {
+                        int pos = getBindingAdapterPosition();
+                        if (pos != RecyclerView.NO_POSITION) listener.onPurge(p, pos);
+                    }
+                });
+            }
         }
     }
 }
@@ -12,15 +12,16 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.LoadState;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.fmap.R;
 import com.example.fmap.model.Place;
 
-import java.util.List;
+import java.util.Collections;
 
-/** 垃圾桶頁（不喜歡清單），純本機版（容錯 ProgressBar id） */
+/** 垃圾桶頁（不喜歡清單，由新到舊分頁讀），純本機版（容錯 ProgressBar id） */
 public class TrashFragment extends Fragment implements TrashCardAdapter.OnTrashActionListener {
 
     private RecyclerView rvTrash;
@@ -53,8 +54,6 @@ public class TrashFragment extends Fragment implements TrashCardAdapter.OnTrashA
 
         viewModel = new ViewModelProvider(requireActivity()).get(HomeViewModel.class);
         observeViewModel();
-
-        viewModel.loadDislikedPlacesFromPrefs(); // 載入一次
     }
 
     /** 嘗試找 ProgressBar（容錯） */
@@ -79,28 +78,24 @@ public class TrashFragment extends Fragment implements TrashCardAdapter.OnTrashA
 
     /** 監聽 VM 狀態 */
     private void observeViewModel() {
-        viewModel.getIsLoadingTrash().observe(getViewLifecycleOwner(), loading -> {
-            boolean show = loading != null && loading;
-            if (progress != null) progress.setVisibility(show ? View.VISIBLE : View.GONE);
-            if (show) {
-                rvTrash.setVisibility(View.GONE);
-                tvEmpty.setVisibility(View.GONE);
-            }
-        });
+        // 列表一頁一頁在背景讀；還原 / 刪除後資料表一變就自動更新，不用重新載入
+        viewModel.getTrash().observe(getViewLifecycleOwner(), data ->
+                adapter.submitData(getViewLifecycleOwner().getLifecycle(), data));
 
-        viewModel.getTrashError().observe(getViewLifecycleOwner(), err -> {
-            if (err != null && !err.isEmpty()) {
-                Toast.makeText(getContext(), err, Toast.LENGTH_LONG).show();
-            }
+        // 第一次讀的時候轉圈圈 (之後翻頁、重新整理不擋畫面)
+        adapter.addLoadStateListener(states -> {
+            boolean show = states.getRefresh() instanceof LoadState.Loading && adapter.getItemCount() == 0;
+            if (progress != null) progress.setVisibility(show ? View.VISIBLE : View.GONE);
+            return kotlin.Unit.INSTANCE;
         });
 
-        viewModel.getDislikedPlaces().observe(getViewLifecycleOwner(), this::renderList);
+        viewModel.getTrashCount().observe(getViewLifecycleOwner(), this::renderEmpty);
     }
 
-    /** 更新列表畫面 */
-    private void renderList(List<Place> list) {
-        adapter.submit(list);
-        boolean has = list != null && !list.isEmpty();
+    /** 有沒有東西決定顯示列表還是空白提示 */
+    private void renderEmpty(@Nullable Integer count) {
+        if (count == null) return;
+        boolean has = count > 0;
         rvTrash.setVisibility(has ? View.VISIBLE : View.GONE);
         tvEmpty.setVisibility(has ? View.GONE : View.VISIBLE);
     }
@@ -109,12 +104,22 @@ public class TrashFragment extends Fragment implements TrashCardAdapter.OnTrashA
     @Override
     public void onRestore(@NonNull Place place, int position) {
         if (place.getId() == null) return;
-        viewModel.removeFromDislikes(place.getId());
+        viewModel.restoreFromTrash(Collections.singletonList(place.getId()));
         Toast.makeText(getContext(),
                 "已還原：「" + (place.getName() != null ? place.getName() : "") + "」",
                 Toast.LENGTH_SHORT).show();
     }
 
+    /** 永久刪除一項 (不會回到垃圾桶，Home 也不會再出現) */
+    @Override
+    public void onPurge(@NonNull Place place, int position) {
+        if (place.getId() == null) return;
+        viewModel.purgeFromTrash(Collections.singletonList(place.getId()));
+        Toast.makeText(getContext(),
+                "已永久刪除：「" + (place.getName() != null ? place.getName() : "") + "」",
+                Toast.LENGTH_SHORT).show();
+    }
+
     /** 進入頁面時讓 Drawer 漢堡變暗＆無法開啟 */
     @Override
     public void onResume() {
@@ -0,0 +1,109 @@
+package com.example.fmap.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Geohash 小工具：把 (緯度, 經度) 編成一串 base32 字元，距離近的點通常有相同的前綴。
+ * 店家的 geohash 在匯入時算好存進 stores.geohash (有索引)，
+ * 「附近 N 公里」先用幾個前綴做索引範圍查詢拿候選，再用 distanceKm 算實際距離篩掉圓外的。
+ *
+ * 不依賴 Android，CatalogCompiler (建置時) 也會用到。
+ */
+public final class GeoHash {
+
+    /** 存進資料庫的長度：9 個字元 ≈ 5 公尺見方，比座標本身的誤差還小。 */
+    public static final int PRECISION = 9;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    /** 緯度 1 度大約幾公里 (經度要再乘 cos(緯度))。 */
+    public static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180.0;
+
+    private GeoHash() {}
+
+    /** (緯度, 經度) → geohash 字串 (長度 precision)。 */
+    public static String encode(double lat, double lng, int precision) {
+        double latLo = -90, latHi = 90, lngLo = -180, lngHi = 180;
+        StringBuilder sb = new StringBuilder(precision);
+        boolean even = true; // 第 0、2、4... 個位元切經度，其餘切緯度
+        int bit = 0, ch = 0;
+        while (sb.length() < precision) {
+            if (even) {
+                double mid = (lngLo + lngHi) / 2;
+                if (lng >= mid) { ch = (ch << 1) | 1; lngLo = mid; } else { ch <<= 1; lngHi = mid; }
+            } else {
+                double mid = (latLo + latHi) / 2;
+                if (lat >= mid) { ch = (ch << 1) | 1; latLo = mid; } else { ch <<= 1; latHi = mid; }
+            }
+            even = !even;
+            if (++bit == 5) {
+                sb.append(BASE32[ch]);
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 蓋住「以 (lat, lng) 為中心、半徑 radiusKm 的圓」的 geohash 前綴 (最多 9 個)。
+     * 選一個格子邊長不小於半徑的長度，中心格子加上周圍 8 格就一定蓋得住整個圓；
+     * 格子越小候選越少，所以取符合條件的最長前綴。
+     * 半徑大到連 1 個字元的格子都不夠時回傳 [""] (等於不限範圍)。
+     */
+    public static List<String> coverPrefixes(double lat, double lng, double radiusKm) {
+        int precision = 0;
+        double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 1e-6);
+        for (int p = 1; p <= PRECISION; p++) {
+            double heightKm = cellLatDegrees(p) * KM_PER_DEGREE;
+            double widthKm = cellLngDegrees(p) * KM_PER_DEGREE * cosLat;
+            if (heightKm < radiusKm || widthKm < radiusKm) break;
+            precision = p;
+        }
+        List<String> out = new ArrayList<>();
+        if (precision == 0) {
+            out.add("");
+            return out;
+        }
+        double dLat = cellLatDegrees(precision), dLng = cellLngDegrees(precision);
+        Set<String> cells = new LinkedHashSet<>();
+        for (int i = -1; i <= 1; i++) {
+            double cellLat = lat + i * dLat;
+            if (cellLat > 90 || cellLat < -90) continue; // 超過極點就沒有格子了
+            for (int j = -1; j <= 1; j++) {
+                cells.add(encode(cellLat, wrapLng(lng + j * dLng), precision));
+            }
+        }
+        out.addAll(cells);
+        return out;
+    }
+
+    /** 兩點的大圓距離 (公里，haversine)。 */
+    public static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /** 長度 p 的格子高幾度 (緯度分到 floor(5p/2) 個位元)。 */
+    private static double cellLatDegrees(int p) {
+        return 180.0 / (1L << (5 * p / 2));
+    }
+
+    /** 長度 p 的格子寬幾度 (經度分到 ceil(5p/2) 個位元)。 */
+    private static double cellLngDegrees(int p) {
+        return 360.0 / (1L << ((5 * p + 1) / 2));
+    }
+
+    private static double wrapLng(double lng) {
+        if (lng >= 180) return lng - 360;
+        if (lng < -180) return lng + 360;
+        return lng;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.fmap.util;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 「最新的請求贏」的排程器：同一種查詢連續被要求很多次時，只有最後一次的結果算數。
+ *
+ * - 每次 submit 都拿到一個新的世代編號 (generation)；比它舊的工作一律作廢。
+ * - 還沒開始跑的舊工作直接取消；已經在跑的，工作本身要在各個階段之間問 ticket.isStale()，
+ *   過期就提早結束，不要再 post 結果 (不然畫面會被舊結果蓋掉)。
+ * - 開始前先等 debounceMs：這段時間內又有新的 submit，就只跑最新那一次 (一連串的條件變更合併成一次查詢)。
+ *
+ * 工作都在傳進來的 executor 上跑；executor 是單一執行緒時，同時間只會有一個查詢在跑。
+ * 不依賴 Android。
+ */
+public final class LatestWinsScheduler {
+
+    /** 一次排程的憑證：工作用它判斷自己是不是已經被更新的請求取代了。 */
+    public final class Ticket {
+        private final long generation;
+
+        private Ticket(long generation) {
+            this.generation = generation;
+        }
+
+        /** 已經有更新的 submit (或 cancel)，這次的結果不要了。 */
+        public boolean isStale() {
+            return generation != current.get();
+        }
+
+        public long generation() {
+            return generation;
+        }
+    }
+
+    /** 要排程的工作。 */
+    public interface Job {
+        void run(Ticket ticket);
+    }
+
+    private final ScheduledExecutorService executor;
+    private final long debounceMs;
+    private final AtomicLong current = new AtomicLong();
+    private ScheduledFuture<?> pending; // 還在等 debounce 的那一個 (guarded by this)
+
+    public LatestWinsScheduler(ScheduledExecutorService executor, long debounceMs) {
+        this.executor = executor;
+        this.debounceMs = debounceMs;
+    }
+
+    /** 排一個新的工作，之前排的 (還沒跑的取消，跑到一半的作廢)。 */
+    public synchronized Ticket submit(Job job) {
+        Ticket ticket = new Ticket(current.incrementAndGet());
+        if (pending != null) pending.cancel(false);
+        pending = executor.schedule(() -> {
+            if (ticket.isStale()) return;
+            job.run(ticket);
+        }, debounceMs, TimeUnit.MILLISECONDS);
+        return ticket;
+    }
+
+    /** 作廢所有已排的工作 (不排新的)。 */
+    public synchronized void cancel() {
+        current.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+}
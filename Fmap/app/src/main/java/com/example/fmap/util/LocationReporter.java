@@ -68,7 +68,8 @@ public class LocationReporter {
                 .putString(K_LNG, String.valueOf(loc.getLongitude()))
                 .apply();
     }
-    private static Location loadLast(@NonNull Context ctx){
+    /** 上次存下來的座標 (沒有就是 null)。HomeViewModel 用它做「附近」篩選和由近到遠排序。 */
+    public static Location loadLast(@NonNull Context ctx){
         var sp = ctx.getSharedPreferences(PREF, 0);
         if(!sp.contains(K_LAT) || !sp.contains(K_LNG)) return null;
         Location loc = new Location("cached");
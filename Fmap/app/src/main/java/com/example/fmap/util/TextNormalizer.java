@@ -0,0 +1,148 @@
+package com.example.fmap.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 文字正規化 + 斷詞的共用工具。
+ * 以前 StoresRepository、HomeViewModel 各自有一份 norm()，現在統一放這裡，
+ * 建索引 (寫入資料庫) 和查詢 (使用者輸入) 都要走同一套規則，兩邊才對得起來。
+ *
+ * 斷詞規則 (給 FTS 全文檢索用)：
+ * - 英數字：連續的一串當一個詞，例如 "Peroni" → "peroni"
+ * - 中文 (以及其他非 ASCII 的文字)：切成「兩兩一組」的 bigram，
+ *   例如 "拉麵店" → "拉麵"、"麵店"，再加上最後一個字 "店" (讓單字查詢也找得到)。
+ *   SQLite 內建的斷詞器不會切中文，所以這裡先切好、用空白隔開再存進去。
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {}
+
+    /** 去掉 BOM / 零寬字元、NFKC 正規化 (全形 → 半形)、轉小寫。 */
+    public static String norm(String s) {
+        if (s == null) return "";
+        String x = s.replace("\ufeff", "")
+                .replace("\u200b", "").replace("\u200c", "").replace("\u200d", "")
+                .trim();
+        x = Normalizer.normalize(x, Normalizer.Form.NFKC);
+        return x.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 建索引用：把文字切成 FTS 要存的詞 (英數單字 + 中文 bigram + 每段中文的最後一個字)。
+     * 重複的詞只留一個。
+     */
+    public static List<String> indexTokens(String text) {
+        Set<String> out = new LinkedHashSet<>();
+        for (Run run : runs(norm(text))) {
+            if (run.ascii || run.length() == 1) {
+                out.add(run.text);
+                continue;
+            }
+            out.addAll(bigrams(run.text));
+            out.add(lastChar(run.text)); // 單字查詢 ("麵*") 才找得到只出現在結尾的字
+        }
+        return new ArrayList<>(out);
+    }
+
+    /** 把好幾段文字一起斷詞，用空白串成一個字串 (直接存進 FTS 欄位)。 */
+    public static String indexText(Iterable<String> texts) {
+        if (texts == null) return "";
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String t : texts) tokens.addAll(indexTokens(t));
+        return String.join(" ", tokens);
+    }
+
+    /**
+     * 查詢用：把使用者輸入轉成 FTS 的 MATCH 語法 (所有詞都要出現 = AND)。
+     * - 英數字用前綴比對 ("pero" → pero*)
+     * - 兩個字以上的中文用 bigram 精確比對
+     * - 只有一個中文字就用前綴比對 ("麵" → 麵*)
+     * 只會輸出英數字和文字，不會把 FTS 的特殊符號 (引號、括號、NEAR...) 帶進去。
+     * @return MATCH 字串；沒有可搜尋的內容就回傳空字串
+     */
+    public static String ftsQuery(String keyword) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (Run run : runs(norm(keyword))) {
+            if (run.ascii || run.length() == 1) {
+                terms.add(run.text + "*");
+            } else {
+                terms.addAll(bigrams(run.text));
+            }
+        }
+        return String.join(" ", terms);
+    }
+
+    /**
+     * 前綴查詢的上界：把最後一個字的 code point +1 ("麵屋" → "麵层")。
+     * 搭配 {@code col >= prefix AND col < upper} 就能用索引做範圍掃描，
+     * SQLite 的 BINARY 比較 (UTF-8 位元組順序) 跟 code point 順序一致，所以結果正確。
+     * @param prefix 已經正規化過的前綴，不可為空字串
+     */
+    public static String prefixUpperBound(String prefix) {
+        int last = prefix.codePointBefore(prefix.length());
+        int next = last + 1;
+        if (next >= Character.MIN_SURROGATE && next <= Character.MAX_SURROGATE) {
+            next = Character.MAX_SURROGATE + 1; // 跳過代理字元區，不是合法的字
+        }
+        return prefix.substring(0, prefix.length() - Character.charCount(last))
+                + new String(Character.toChars(next));
+    }
+
+    /** "拉麵店" → ["拉麵", "麵店"] (以 code point 計算，罕用字也不會被切壞)。 */
+    public static List<String> bigrams(String run) {
+        List<String> out = new ArrayList<>();
+        int[] cps = run.codePoints().toArray();
+        for (int i = 0; i + 1 < cps.length; i++) {
+            out.add(new String(cps, i, 2));
+        }
+        return out;
+    }
+
+    private static String lastChar(String s) {
+        return new String(Character.toChars(s.codePointBefore(s.length())));
+    }
+
+    /** 一段連續的「英數字」或「其他文字」。 */
+    private static final class Run {
+        final String text;
+        final boolean ascii;
+
+        Run(String text, boolean ascii) {
+            this.text = text;
+            this.ascii = ascii;
+        }
+
+        /** 字數 (以 code point 計算)。 */
+        int length() {
+            return text.codePointCount(0, text.length());
+        }
+    }
+
+    /** 依字元種類切段：英數字一段、其他文字一段，標點 / 空白當分隔。 */
+    private static List<Run> runs(String s) {
+        List<Run> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean curAscii = false;
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            i += Character.charCount(cp);
+            boolean ascii = cp < 0x80 && Character.isLetterOrDigit(cp);
+            boolean word = ascii || Character.isLetterOrDigit(cp);
+            if (!word || (cur.length() > 0 && ascii != curAscii)) {
+                if (cur.length() > 0) out.add(new Run(cur.toString(), curAscii));
+                cur.setLength(0);
+            }
+            if (word) {
+                cur.appendCodePoint(cp);
+                curAscii = ascii;
+            }
+        }
+        if (cur.length() > 0) out.add(new Run(cur.toString(), curAscii));
+        return out;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.fmap.util;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 「一週中的第幾分鐘」小工具：星期一 00:00 = 0，星期日 23:59 = 10079。
+ * 營業時間在匯入時就換算成這種分鐘數存進 store_hours，查「現在有沒有開」只要比大小。
+ *
+ * 星期名稱的各種寫法 (星期一 / 週一 / Mon / Monday...) 也統一在這裡對應，只在匯入時查一次。
+ * 不依賴 Android，CatalogCompiler (建置時) 也會用到。
+ */
+public final class WeekTime {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    /** 標準的星期名稱 (index 0 = 星期一)，UI 顯示和資料庫裡的 key 都用這個。 */
+    public static final String[] DAY_NAMES = {"星期一", "星期二", "星期三", "星期四", "星期五", "星期六", "星期日"};
+
+    private static final String[][] ALIASES = {
+            {"星期一", "週一", "周一", "禮拜一", "mon", "monday"},
+            {"星期二", "週二", "周二", "禮拜二", "tue", "tuesday"},
+            {"星期三", "週三", "周三", "禮拜三", "wed", "wednesday"},
+            {"星期四", "週四", "周四", "禮拜四", "thu", "thursday"},
+            {"星期五", "週五", "周五", "禮拜五", "fri", "friday"},
+            {"星期六", "週六", "周六", "禮拜六", "sat", "saturday"},
+            {"星期日", "週日", "周日", "禮拜日", "星期天", "sun", "sunday"},
+    };
+    private static final Map<String, Integer> DAY_INDEX = new HashMap<>();
+    static {
+        for (int d = 0; d < ALIASES.length; d++) {
+            for (String a : ALIASES[d]) DAY_INDEX.put(a, d);
+        }
+    }
+
+    private WeekTime() {}
+
+    /** 星期名稱 → 0 (星期一) ~ 6 (星期日)；認不得就回傳 -1。忽略大小寫和空白。 */
+    public static int dayIndex(String name) {
+        if (name == null) return -1;
+        Integer d = DAY_INDEX.get(name.replace(" ", "").toLowerCase(Locale.ROOT));
+        return d != null ? d : -1;
+    }
+
+    /** 任何寫法的星期名稱 → 標準名稱 ("Mon" → "星期一")；認不得就原樣回傳。 */
+    public static String canonicalDay(String name) {
+        int d = dayIndex(name);
+        return d >= 0 ? DAY_NAMES[d] : name;
+    }
+
+    /** "11:30" → 690 (當天第幾分鐘)；"24:00" 也接受 (= 1440)。格式不對就回傳 -1。 */
+    public static int parseTime(String hhmm) {
+        if (hhmm == null) return -1;
+        String s = hhmm.trim();
+        int colon = s.indexOf(':');
+        if (colon <= 0) return -1;
+        try {
+            int h = Integer.parseInt(s.substring(0, colon));
+            int m = Integer.parseInt(s.substring(colon + 1));
+            if (h < 0 || m < 0 || m >= 60 || h * 60 + m > MINUTES_PER_DAY) return -1;
+            return h * 60 + m;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Calendar 是星期幾 → 0 (星期一) ~ 6 (星期日)。 */
+    public static int dayIndexOf(Calendar cal) {
+        return (cal.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+    }
+
+    /** Calendar 的時間 → 一週中的第幾分鐘。 */
+    public static int minuteOfWeek(Calendar cal) {
+        return dayIndexOf(cal) * MINUTES_PER_DAY + cal.get(Calendar.HOUR_OF_DAY) * 60 + cal.get(Calendar.MINUTE);
+    }
+}
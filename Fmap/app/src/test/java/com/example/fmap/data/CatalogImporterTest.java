@@ -0,0 +1,134 @@
+package com.example.fmap.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.fmap.data.local.CatalogMetaEntity;
+import com.example.fmap.data.local.StoreDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CatalogImporter 的失敗收尾測試 (in-memory Room)：讀檔讀到一半出錯時，
+ * transaction 要整個還原、而且要確實結束，之後別的執行緒照樣寫得進資料庫，再同步一次也會成功。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class CatalogImporterTest {
+
+    // 讀檔在第幾筆之後壞掉 (剛好跨過幾個批次)
+    private static final int GOOD_STORES = CatalogImporter.BATCH_SIZE * 3 + 20;
+
+    private StoreDatabase db;
+
+    @Before
+    public void setUp() {
+        Context ctx = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(ctx, StoreDatabase.class)
+                .allowMainThreadQueries() // Robolectric 的測試執行緒就是主執行緒
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test(timeout = 30_000)
+    public void readerFailureRollsBackAndReleasesTheDatabase() throws Exception {
+        byte[] full = catalog(GOOD_STORES * 2);
+        byte[] head = catalog(GOOD_STORES);
+        // 只給得出「前面幾批 + 陣列還沒結束」的位元組，之後就丟 IOException
+        InputStream broken = new FailingStream(full, head.length - 1);
+
+        try {
+            new CatalogImporter(db).sync(broken, "v1", null);
+            fail("讀檔失敗應該要丟出來");
+        } catch (IOException expected) {
+            // 預期中
+        }
+
+        // 別的執行緒寫得進去：代表 transaction 已經結束，沒有卡在關掉的寫入執行緒上
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            other.submit(() -> {
+                CatalogMetaEntity meta = new CatalogMetaEntity();
+                meta.key = "probe";
+                meta.value = "ok";
+                db.catalogMetaDao().put(meta);
+            }).get(5, TimeUnit.SECONDS);
+        } finally {
+            other.shutdownNow();
+        }
+
+        // 前面已經寫進去的批次全部還原，版本也沒被記下
+        assertEquals(0, db.storeDao().count());
+        assertNull(db.catalogMetaDao().get(CatalogMetaEntity.KEY_CATALOG_VERSION));
+
+        // 再同步一次完整的檔案就正常
+        CatalogImporter.Result result = new CatalogImporter(db).sync(new ByteArrayInputStream(full), "v2", null);
+        assertNotNull(result);
+        assertEquals(GOOD_STORES * 2, result.scanned);
+        assertEquals(GOOD_STORES * 2, db.storeDao().count());
+        assertEquals("v2", db.catalogMetaDao().get(CatalogMetaEntity.KEY_CATALOG_VERSION));
+    }
+
+    /** n 家店的 JSON 目錄 (店名不重複，id 就是店名)。 */
+    private static byte[] catalog(int n) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"store_name\":\"s").append(i)
+                    .append("\",\"rating\":4.0,\"lat\":25.0,\"lng\":121.5}");
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** 讀到第 limit 個位元組之後就丟 IOException 的輸入流。 */
+    private static final class FailingStream extends InputStream {
+        private final byte[] data;
+        private final int limit;
+        private int pos;
+
+        FailingStream(byte[] data, int limit) {
+            this.data = data;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos >= limit) throw new IOException("磁碟讀取失敗 (測試)");
+            return data[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (pos >= limit) throw new IOException("磁碟讀取失敗 (測試)");
+            int n = Math.min(len, limit - pos);
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+}
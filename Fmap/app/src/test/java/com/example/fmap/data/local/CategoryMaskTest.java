@@ -0,0 +1,157 @@
+package com.example.fmap.data.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.example.fmap.util.TextNormalizer;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 分類遮罩的行為測試：同樣的條件用遮罩 (CategoryMask.matches) 篩，
+ * 跟舊作法 (每家店建一個正規化字串集合再比對) 篩出來的店家要一家不差，ANY / ALL 都一樣。
+ *
+ * 另外附 1 萬、10 萬家店的手動效能比較 (benchmark_*，平常 @Ignore)：只印出時間，不判斷誰快。
+ */
+public class CategoryMaskTest {
+
+    private static final String[] CATEGORIES = {
+            "日式", "韓式", "泰式", "中式", "西式", "美式", "義式", "甜點", "咖啡", "早午餐",
+            "火鍋", "燒肉", "拉麵", "麵食", "炸物", "清淡", "素食", "飲料", "小吃"
+    };
+    private static final int STORES = 2_000;
+    private static final int BENCH_ROUNDS = 7;
+
+    @Test
+    public void maskMatchesStringSets_any() {
+        assertSameMatches(false);
+    }
+
+    @Test
+    public void maskMatchesStringSets_all() {
+        assertSameMatches(true);
+    }
+
+    @Test
+    public void maskOfRejectsIdsThatDoNotFit() {
+        assertEquals(Long.valueOf(CategoryMask.bit(0) | CategoryMask.bit(63)), CategoryMask.maskOf(Arrays.asList(0, 63)));
+        assertNull(CategoryMask.maskOf(Arrays.asList(1, CategoryMask.CAPACITY)));
+        assertNull(CategoryMask.maskOf(Collections.singletonList(null)));
+    }
+
+    @Ignore("手動跑的效能比較，只印時間")
+    @Test
+    public void benchmark_10k() {
+        runBenchmark(10_000);
+    }
+
+    @Ignore("手動跑的效能比較，只印時間")
+    @Test
+    public void benchmark_100k() {
+        runBenchmark(100_000);
+    }
+
+    /** 字串集合 vs 遮罩，各跑幾輪取最快的一次印出來。 */
+    private void runBenchmark(int storeCount) {
+        List<StoreEntity> stores = randomStores(storeCount, new Random(42));
+        TermDictionary dict = new TermDictionary(null);
+        dict.apply(stores);
+        long[] masks = new long[stores.size()];
+        for (int i = 0; i < masks.length; i++) masks[i] = stores.get(i).categoryMask;
+
+        List<String> wanted = Arrays.asList("日式", "拉麵");
+        List<String> wantedNorm = new ArrayList<>();
+        List<Integer> wantedIds = new ArrayList<>();
+        for (String w : wanted) {
+            wantedNorm.add(TextNormalizer.norm(w));
+            wantedIds.add(dict.assign(StoreTermEntity.KIND_CATEGORY, w));
+        }
+        long wantedMask = CategoryMask.maskOf(wantedIds);
+
+        for (boolean matchAll : new boolean[]{true, false}) {
+            long oldBest = Long.MAX_VALUE, newBest = Long.MAX_VALUE;
+            int oldCount = -1, newCount = -1;
+            for (int r = 0; r < BENCH_ROUNDS; r++) {
+                long t0 = System.nanoTime();
+                oldCount = 0;
+                for (StoreEntity e : stores) if (matchesWithStringSet(e, wantedNorm, matchAll)) oldCount++;
+                long t1 = System.nanoTime();
+                newCount = 0;
+                for (long m : masks) if (CategoryMask.matches(m, wantedMask, matchAll)) newCount++;
+                long t2 = System.nanoTime();
+                oldBest = Math.min(oldBest, t1 - t0);
+                newBest = Math.min(newBest, t2 - t1);
+            }
+            System.out.printf("stores=%d mode=%s stringSets=%.2fms mask=%.3fms (%.0fx) matches=%d/%d%n",
+                    storeCount, matchAll ? "ALL" : "ANY", oldBest / 1e6, newBest / 1e6,
+                    (double) oldBest / Math.max(1, newBest), oldCount, newCount);
+        }
+    }
+
+    private void assertSameMatches(boolean matchAll) {
+        List<StoreEntity> stores = randomStores(STORES, new Random(42));
+        // 「匯入時」做一次：分配字典 id、算好每家店的遮罩
+        TermDictionary dict = new TermDictionary(null);
+        dict.apply(stores);
+
+        List<List<String>> cases = Arrays.asList(
+                Collections.singletonList("日式"),
+                Arrays.asList("日式", "拉麵"),
+                Arrays.asList("咖啡", "甜點", "早午餐"),
+                // 正規化前後寫法不同也要當成同一個分類
+                Arrays.asList(" 火鍋 ", "燒肉"));
+        for (List<String> wanted : cases) {
+            List<String> wantedNorm = new ArrayList<>();
+            List<Integer> wantedIds = new ArrayList<>();
+            for (String w : wanted) {
+                wantedNorm.add(TextNormalizer.norm(w));
+                wantedIds.add(dict.assign(StoreTermEntity.KIND_CATEGORY, w));
+            }
+            Long wantedMask = CategoryMask.maskOf(wantedIds);
+            assertNotNull("分類不到 64 個，應該都放得進遮罩", wantedMask);
+
+            List<String> expected = new ArrayList<>(), actual = new ArrayList<>();
+            for (StoreEntity e : stores) {
+                if (matchesWithStringSet(e, wantedNorm, matchAll)) expected.add(e.id);
+                if (CategoryMask.matches(e.categoryMask, wantedMask, matchAll)) actual.add(e.id);
+            }
+            assertEquals((matchAll ? "ALL " : "ANY ") + wanted, expected, actual);
+        }
+    }
+
+    /** 舊作法：把店家的分類正規化成一個 HashSet，再逐一比對。 */
+    private static boolean matchesWithStringSet(StoreEntity e, List<String> wanted, boolean matchAll) {
+        Set<String> cats = new HashSet<>();
+        for (String c : e.category) {
+            String t = TextNormalizer.norm(c);
+            if (!t.isEmpty()) cats.add(t);
+        }
+        if (matchAll) return cats.containsAll(wanted);
+        for (String w : wanted) if (cats.contains(w)) return true;
+        return false;
+    }
+
+    private static List<StoreEntity> randomStores(int n, Random rnd) {
+        List<StoreEntity> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            StoreEntity e = new StoreEntity();
+            e.id = "store_" + i;
+            int k = 1 + rnd.nextInt(4);
+            List<String> cats = new ArrayList<>(k);
+            for (int j = 0; j < k; j++) cats.add(CATEGORIES[rnd.nextInt(CATEGORIES.length)]);
+            e.category = cats;
+            out.add(e);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.fmap.data.local;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Converters 的正確性測試：店家的欄位 (分類、標籤、菜單、價位、營業時間) 用二進位 (BinaryCodec) 存進去再讀出來
+ * 要一模一樣，解出來的內容要跟舊作法 (Gson JSON) 相同，升級前留下的舊 JSON 資料也讀得懂。
+ *
+ * 另外附一個手動跑的解碼效能比較 (decodeBenchmark_10k，平常 @Ignore)：只印出時間，不判斷誰快
+ * (單元測試機器的時間不穩，拿來當測試條件會亂失敗)。
+ */
+public class ConvertersTest {
+
+    private static final String[] DAYS = {"星期一", "星期二", "星期三", "星期四", "星期五", "星期六", "星期日"};
+    private static final int BENCH_STORES = 10_000;
+    private static final int BENCH_ROUNDS = 7;
+    private static final Gson gson = new Gson();
+
+    @Test
+    public void binaryRoundTripMatchesJson() {
+        Random rnd = new Random(7);
+        for (int i = 0; i < 50; i++) {
+            Row row = randomRow(rnd);
+            assertEquals(row.category, Converters.toStringList(Converters.fromStringList(row.category)));
+            assertEquals(row.tags, Converters.toStringList(Converters.fromStringList(row.tags)));
+            assertEquals(row.menu, Converters.toStringList(Converters.fromStringList(row.menu)));
+            assertEquals(row.hours, Converters.toMap(Converters.fromMap(row.hours)));
+            assertEquals(row.price, Converters.toMap(Converters.fromMap(row.price)));
+            // 二進位解出來的結果要跟舊的 JSON 解出來的一樣 (數字一律是 Double、Map 保留順序)
+            assertEquals(legacyMap(gson.toJson(row.hours)), Converters.toMap(Converters.fromMap(row.hours)));
+            assertEquals(legacyMap(gson.toJson(row.price)), Converters.toMap(Converters.fromMap(row.price)));
+        }
+    }
+
+    @Test
+    public void legacyJsonRowsStillDecode() {
+        byte[] listJson = "[\"拉麵\",\"日式\"]".getBytes(StandardCharsets.UTF_8);
+        byte[] mapJson = "{\"text\":\"$200-400\",\"level\":2}".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("拉麵", "日式"), Converters.toStringList(listJson));
+        Map<String, Object> price = Converters.toMap(mapJson);
+        assertEquals("$200-400", price.get("text"));
+        assertEquals(2.0, price.get("level"));
+        // 存成 TEXT 的舊資料用 getBlob 讀出來會多一個結尾的 \0
+        byte[] listText = "[\"拉麵\"]\0".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("拉麵"), Converters.toStringList(listText));
+    }
+
+    /**
+     * 舊作法 (Gson JSON 文字 + 每次 new TypeToken) vs 二進位 (BinaryCodec) 的解碼時間。
+     * 模擬「SELECT * 讀出一萬家店」時要解碼的欄位，各跑幾輪取最快的一次印出來。
+     * 要看數字時拿掉 @Ignore 跑這一個就好。
+     */
+    @Ignore("手動跑的效能比較，只印時間")
+    @Test
+    public void decodeBenchmark_10k() {
+        Random rnd = new Random(42);
+        List<String[]> json = new ArrayList<>(BENCH_STORES);
+        List<byte[][]> binary = new ArrayList<>(BENCH_STORES);
+        for (int i = 0; i < BENCH_STORES; i++) {
+            Row r = randomRow(rnd);
+            json.add(new String[]{
+                    gson.toJson(r.category), gson.toJson(r.tags), gson.toJson(r.menu),
+                    gson.toJson(r.price), gson.toJson(r.hours)});
+            binary.add(new byte[][]{
+                    Converters.fromStringList(r.category), Converters.fromStringList(r.tags),
+                    Converters.fromStringList(r.menu), Converters.fromMap(r.price), Converters.fromMap(r.hours)});
+        }
+
+        long jsonBest = Long.MAX_VALUE, binaryBest = Long.MAX_VALUE;
+        int jsonSize = -1, binarySize = -1;
+        for (int round = 0; round < BENCH_ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            jsonSize = decodeJson(json);
+            long t1 = System.nanoTime();
+            binarySize = decodeBinary(binary);
+            long t2 = System.nanoTime();
+            jsonBest = Math.min(jsonBest, t1 - t0);
+            binaryBest = Math.min(binaryBest, t2 - t1);
+        }
+        System.out.printf("stores=%d json=%.2fms binary=%.2fms (%.1fx) items json=%d binary=%d%n",
+                BENCH_STORES, jsonBest / 1e6, binaryBest / 1e6, (double) jsonBest / Math.max(1, binaryBest),
+                jsonSize, binarySize);
+    }
+
+    /** 舊作法：跟以前的 Converters 一樣，每次解碼都建立新的 TypeToken。 */
+    private static int decodeJson(List<String[]> rows) {
+        int n = 0;
+        for (String[] r : rows) {
+            for (int i = 0; i < 3; i++) {
+                Type listType = new TypeToken<List<String>>() {}.getType();
+                List<String> list = gson.fromJson(r[i], listType);
+                n += list.size();
+            }
+            n += legacyMap(r[3]).size();
+            n += legacyMap(r[4]).size();
+        }
+        return n;
+    }
+
+    private static int decodeBinary(List<byte[][]> rows) {
+        int n = 0;
+        for (byte[][] r : rows) {
+            for (int i = 0; i < 3; i++) n += Converters.toStringList(r[i]).size();
+            n += Converters.toMap(r[3]).size();
+            n += Converters.toMap(r[4]).size();
+        }
+        return n;
+    }
+
+    private static Map<String, Object> legacyMap(String json) {
+        Type mapType = new TypeToken<Map<String, Object>>() {}.getType();
+        return gson.fromJson(json, mapType);
+    }
+
+    private static final class Row {
+        List<String> category;
+        List<String> tags;
+        List<String> menu;
+        Map<String, Object> price;
+        Map<String, Object> hours;
+    }
+
+    private static Row randomRow(Random rnd) {
+        Row r = new Row();
+        r.category = words(rnd, 1 + rnd.nextInt(3), "分類");
+        r.tags = words(rnd, 5 + rnd.nextInt(10), "標籤");
+        r.menu = words(rnd, 10 + rnd.nextInt(30), "菜單品項");
+        r.price = new LinkedHashMap<>();
+        r.price.put("text", "$" + (100 + rnd.nextInt(300)) + "–" + (400 + rnd.nextInt(600)));
+        r.price.put("level", (double) (1 + rnd.nextInt(4)));
+        r.hours = new LinkedHashMap<>();
+        for (String day : DAYS) {
+            List<Object> ranges = new ArrayList<>();
+            for (int i = 0; i < 1 + rnd.nextInt(2); i++) {
+                Map<String, Object> range = new LinkedHashMap<>();
+                range.put("open", String.format("%02d:00", 8 + rnd.nextInt(6)));
+                range.put("close", String.format("%02d:30", 14 + rnd.nextInt(10)));
+                ranges.add(range);
+            }
+            r.hours.put(day, ranges);
+        }
+        return r;
+    }
+
+    private static List<String> words(Random rnd, int n, String prefix) {
+        List<String> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(prefix + rnd.nextInt(500));
+        return out;
+    }
+}
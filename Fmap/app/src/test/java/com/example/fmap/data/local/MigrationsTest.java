@@ -0,0 +1,121 @@
+package com.example.fmap.data.local;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 升級測試：照 schemas/ 裡 v6 的結構建一個舊資料庫，放一家 List / Map 欄位還是 JSON 文字的店，
+ * 用 Migrations.ALL 一路升到最新版 (Room 升完會照 Entity 檢查結構)，再用 Converters 讀回來要一模一樣。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MigrationsTest {
+
+    private static final String DB_NAME = "migration-test.db";
+    // Gradle 跑單元測試時的工作目錄是 app/
+    private static final File SCHEMAS = new File("schemas/" + StoreDatabase.class.getName());
+
+    private Context ctx;
+    private StoreDatabase db;
+
+    @Before
+    public void setUp() {
+        ctx = ApplicationProvider.getApplicationContext();
+        ctx.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) db.close();
+        ctx.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void legacyJsonColumnsSurviveUpgradeFrom6() throws IOException {
+        SQLiteDatabase v6 = SQLiteDatabase.openOrCreateDatabase(ctx.getDatabasePath(DB_NAME), null);
+        try {
+            createSchema(v6, 6);
+            v6.execSQL("INSERT INTO stores (id, store_name, rating, lat, lng, category, tags, services, "
+                            + "category_mask, menuItems, menu_groups, price_range, business_hours) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, ?, ?, ?, ?)",
+                    new Object[]{"s1", "一蘭拉麵", 4.5, 25.04, 121.55,
+                            "[\"日式\",\"拉麵\"]", "[\"可外帶\"]", "[]",
+                            "[\"豚骨拉麵\"]", "{\"主餐\":[\"豚骨拉麵\"]}",
+                            "{\"text\":\"$200-400\",\"level\":2}", "{\"星期一\":\"11:00–22:00\"}"});
+        } finally {
+            v6.close();
+        }
+
+        db = Room.databaseBuilder(ctx, StoreDatabase.class, DB_NAME)
+                .addMigrations(Migrations.ALL)
+                .allowMainThreadQueries() // Robolectric 的測試執行緒就是主執行緒
+                .build();
+        List<StoreEntity> rows = db.storeDao().getByIdsBlocking(Collections.singletonList("s1"));
+        assertEquals(1, rows.size());
+        StoreEntity s = rows.get(0);
+        assertEquals(Arrays.asList("日式", "拉麵"), s.category);
+        assertEquals(Collections.singletonList("可外帶"), s.tags);
+        assertEquals(Collections.emptyList(), s.services);
+        assertEquals(Collections.singletonList("豚骨拉麵"), s.menuItems);
+        assertEquals(Collections.singletonList("豚骨拉麵"), s.menuGroups.get("主餐"));
+        assertEquals("$200-400", s.priceRange.get("text"));
+        assertEquals(2.0, s.priceRange.get("level"));
+        assertEquals(Map.of("星期一", "11:00–22:00"), s.businessHours);
+
+        // 複製過來的值要真的是 BLOB (不是 TEXT 套上 BLOB 欄位)
+        try (Cursor c = db.getOpenHelper().getReadableDatabase()
+                .query("SELECT typeof(tags), typeof(price_range) FROM stores WHERE id = 's1'")) {
+            c.moveToFirst();
+            assertEquals("blob", c.getString(0));
+            assertEquals("blob", c.getString(1));
+        }
+    }
+
+    /** 照 Room 匯出的 schema JSON 建表 (跟 Room 自己建的一樣，含 room_master_table 的 identity hash)。 */
+    private static void createSchema(SQLiteDatabase db, int version) throws IOException {
+        File file = new File(SCHEMAS, version + ".json");
+        JsonObject database = JsonParser.parseString(new String(Files.readAllBytes(file.toPath()),
+                StandardCharsets.UTF_8)).getAsJsonObject().getAsJsonObject("database");
+        for (JsonElement e : database.getAsJsonArray("entities")) {
+            JsonObject entity = e.getAsJsonObject();
+            String table = entity.get("tableName").getAsString();
+            db.execSQL(entity.get("createSql").getAsString().replace("${TABLE_NAME}", table));
+            JsonArray indices = entity.getAsJsonArray("indices");
+            if (indices == null) continue;
+            for (JsonElement i : indices) {
+                db.execSQL(i.getAsJsonObject().get("createSql").getAsString().replace("${TABLE_NAME}", table));
+            }
+        }
+        for (JsonElement q : database.getAsJsonArray("setupQueries")) {
+            db.execSQL(q.getAsString());
+        }
+        db.setVersion(version);
+    }
+}
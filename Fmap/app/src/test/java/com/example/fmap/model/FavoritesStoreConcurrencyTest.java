@@ -0,0 +1,228 @@
+package com.example.fmap.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.fmap.data.local.FavoriteEntity;
+import com.example.fmap.data.local.StoreDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * FavoritesStore 的並行測試 (in-memory Room)：讀的人走真正的 contains / getIds，
+ * 寫的人照 UserActionJournal 的做法在交易裡 addIds / removeIds。
+ * 確認：快照讀完之前 contains 是 false、不會等資料庫；寫的人拿著交易 (資料庫被鎖住) 的時候讀的人照樣在讀，
+ * 讀到的每一版都是完整的；最後快照跟資料表一筆不差。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class FavoritesStoreConcurrencyTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int ADDS_PER_WRITER = 100;
+
+    private StoreDatabase db;
+    private Context ctx;
+
+    @Before
+    public void setUp() {
+        ctx = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(ctx, StoreDatabase.class)
+                .allowMainThreadQueries() // Robolectric 的測試執行緒就是主執行緒
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void withAddedKeepsOrderAndSkipsDuplicates() {
+        FavoritesSnapshot s = FavoritesSnapshot.of(Arrays.asList("a", "b", "a", null));
+        assertEquals(Arrays.asList("a", "b"), s.ordered());
+
+        FavoritesSnapshot next = s.withAdded(Arrays.asList("b", "c", "c", "d"));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), next.ordered());
+        // 舊的那份不會被改到
+        assertEquals(Arrays.asList("a", "b"), s.ordered());
+        assertFalse(s.contains("c"));
+
+        assertSame(next, next.withAdded(Collections.singletonList("a")));
+        assertSame(next, next.withRemoved(Collections.singletonList("x")));
+        assertEquals(Arrays.asList("a", "d"), next.withRemoved(Arrays.asList("b", "c")).ordered());
+        assertNull(FavoritesSnapshot.update(new AtomicReference<>(), x -> x.withAdded(Collections.singletonList("a"))));
+    }
+
+    @Test(timeout = 10_000)
+    public void containsIsFalseUntilLoadedAndDoesNotWait() throws Exception {
+        db.favoriteDao().insertIgnore(Collections.singletonList(new FavoriteEntity("old", 1)));
+
+        // 別的執行緒拿著交易：啟動時的背景讀取卡在資料庫上
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdTransaction(locked, release, null);
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        try {
+            FavoritesStore store = new FavoritesStore(ctx, db);
+            ExecutorService reader = Executors.newSingleThreadExecutor();
+            try {
+                Future<Boolean> read = reader.submit(() -> store.contains("old") || !store.getIds().isEmpty());
+                assertFalse("還沒讀完要當成沒有收藏，而且馬上回來", read.get(1, TimeUnit.SECONDS));
+            } finally {
+                reader.shutdownNow();
+            }
+            release.countDown();
+            holder.join();
+            awaitContains(store, "old");
+            assertEquals(Collections.singleton("old"), store.getIds());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void readsDoNotWaitForWriterTransaction() throws Exception {
+        FavoritesStore store = loadedStore();
+
+        // 寫的人：在交易裡加一筆收藏 (快照跟著換)，然後拿著交易不放，直到測試放行
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread writer = holdTransaction(locked, release, () -> store.addIds(Collections.singletonList("a")));
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        // 資料庫還被鎖著：讀的人照樣馬上讀到，而且已經看得到新的收藏
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> read = reader.submit(() -> store.contains("a") && store.getIds().contains("a"));
+            assertTrue(read.get(1, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            writer.join();
+            reader.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void concurrentWritersAndReaders() throws Exception {
+        FavoritesStore store = loadedStore();
+        AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            writers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ADDS_PER_WRITER; i++) {
+                        String id = "w" + writer + "-" + i;
+                        db.runInTransaction(() -> store.addIds(Collections.singletonList(id)));
+                        // 每十筆取消一筆，確認加 / 刪混在一起也不會弄丟別人的寫入
+                        if (i % 10 == 9) {
+                            db.runInTransaction(() -> store.removeIds(Collections.singletonList(id)));
+                        }
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    int most = 0;
+                    while (!done.get()) {
+                        FavoritesSnapshot s = store.snapshot();
+                        // 每一版都是完整的：集合跟清單一致
+                        if (s.size() != s.ids().size()) throw new AssertionError("torn snapshot");
+                        if (store.contains("w0-0") && !store.getIds().contains("w0-0")) {
+                            throw new AssertionError("w0-0 disappeared");
+                        }
+                        // 加的比刪的多很多，不會倒退太多 (每個寫的人一次最多刪掉一筆)
+                        if (s.size() < most - WRITERS) throw new AssertionError("went back " + most + " → " + s.size());
+                        most = Math.max(most, s.size());
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+
+        for (Thread t : writers) t.start();
+        for (Thread t : readers) t.start();
+        start.countDown();
+        for (Thread t : writers) t.join();
+        done.set(true);
+        for (Thread t : readers) t.join();
+
+        if (!failures.isEmpty()) throw new AssertionError(failures.get(0));
+
+        int expected = WRITERS * (ADDS_PER_WRITER - ADDS_PER_WRITER / 10);
+        assertEquals(expected, store.getIds().size());
+        // 快照跟資料表一樣
+        assertEquals(new HashSet<>(db.favoriteDao().getIds()), store.getIds());
+        for (int w = 0; w < WRITERS; w++) {
+            assertTrue(store.contains("w" + w + "-0"));
+            assertFalse(store.contains("w" + w + "-9"));
+        }
+    }
+
+    /** 建一個 store 並等啟動時的背景讀取完成 (先放一筆收藏當作「讀完了」的記號)。 */
+    private FavoritesStore loadedStore() throws InterruptedException {
+        db.favoriteDao().insertIgnore(Collections.singletonList(new FavoriteEntity("seed", 0)));
+        FavoritesStore store = new FavoritesStore(ctx, db);
+        awaitContains(store, "seed");
+        return store;
+    }
+
+    private static void awaitContains(FavoritesStore store, String id) throws InterruptedException {
+        while (!store.contains(id)) Thread.sleep(5);
+    }
+
+    /** 開一條執行緒：開交易、做 inside (可以是 null)、通知 locked，然後拿著交易等到 release。 */
+    private Thread holdTransaction(CountDownLatch locked, CountDownLatch release, Runnable inside) {
+        Thread t = new Thread(() -> db.runInTransaction(() -> {
+            if (inside != null) inside.run();
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        t.start();
+        return t;
+    }
+}